@@ -0,0 +1,116 @@
+package CSCI485ClassProject.bench;
+
+import CSCI485ClassProject.DBEngine;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.Record;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BenchmarkTables creates and loads the tables the benchmarks run against.
+ */
+public class BenchmarkTables {
+
+  public static String BenchTableName = "Bench";
+  public static String Id = "Id";
+  public static String Salary = "Salary";
+  public static String Name = "Name";
+
+  public static String[] BenchTablePKAttributes = new String[]{Id};
+
+  // Salary values repeat every SALARY_CARDINALITY records, so a predicate on it selects a fixed share of the table
+  public static int SALARY_CARDINALITY = 100;
+
+  public static String getAttrName(int i) {
+    return "Attr" + i;
+  }
+
+  public static String getName(long i) {
+    return "Name" + i;
+  }
+
+  public static long getSalary(long i) {
+    return i % SALARY_CARDINALITY;
+  }
+
+  /**
+   * Drop every table and create the benchmark table with Id as primary key and rowWidth attributes besides it.
+   * The first two attributes are Salary and Name, the others are VARCHAR columns.
+   */
+  public static void createTable(DBEngine engine, int rowWidth) {
+    engine.getTableManager().dropAllTables();
+
+    String[] attrNames = new String[rowWidth + 1];
+    AttributeType[] attrTypes = new AttributeType[rowWidth + 1];
+    attrNames[0] = Id;
+    attrTypes[0] = AttributeType.INT;
+    for (int i = 1; i <= rowWidth; i++) {
+      attrNames[i] = getColumnName(i - 1);
+      attrTypes[i] = i == 1 ? AttributeType.INT : AttributeType.VARCHAR;
+    }
+    check(engine.getTableManager().createTable(BenchTableName, attrNames, attrTypes, BenchTablePKAttributes));
+  }
+
+  /**
+   * Get the non primary key attribute names of a table of the given width.
+   */
+  public static String[] getAttrNames(int rowWidth) {
+    String[] attrNames = new String[rowWidth];
+    for (int i = 0; i < rowWidth; i++) {
+      attrNames[i] = getColumnName(i);
+    }
+    return attrNames;
+  }
+
+  /**
+   * Get the non primary key attribute values of the record with the given id.
+   */
+  public static Object[] getAttrValues(long id, int rowWidth) {
+    Object[] attrValues = new Object[rowWidth];
+    for (int i = 0; i < rowWidth; i++) {
+      if (i == 0) {
+        attrValues[i] = getSalary(id);
+      } else if (i == 1) {
+        attrValues[i] = getName(id);
+      } else {
+        attrValues[i] = "ABCDEFGHIJKLMNOPQRSTUVWXYZ" + id;
+      }
+    }
+    return attrValues;
+  }
+
+  /**
+   * Insert the records with ids [0, recordCount) into the benchmark table.
+   */
+  public static void loadRecords(DBEngine engine, long recordCount, int rowWidth) {
+    String[] attrNames = getAttrNames(rowWidth);
+    List<Record> records = new ArrayList<>();
+    for (long id = 0; id < recordCount; id++) {
+      Record record = new Record();
+      record.setAttrNameAndValue(Id, id);
+      Object[] attrValues = getAttrValues(id, rowWidth);
+      for (int i = 0; i < rowWidth; i++) {
+        record.setAttrNameAndValue(attrNames[i], attrValues[i]);
+      }
+      records.add(record);
+    }
+    check(engine.getRecords().insertRecords(BenchTableName, records));
+  }
+
+  public static void check(StatusCode status) {
+    if (status != StatusCode.SUCCESS) {
+      throw new IllegalStateException("benchmark setup failed: " + status);
+    }
+  }
+
+  private static String getColumnName(int i) {
+    if (i == 0) {
+      return Salary;
+    } else if (i == 1) {
+      return Name;
+    }
+    return getAttrName(i);
+  }
+}
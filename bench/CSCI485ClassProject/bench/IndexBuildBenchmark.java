@@ -0,0 +1,70 @@
+package CSCI485ClassProject.bench;
+
+import CSCI485ClassProject.DBEngine;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.models.IndexType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static CSCI485ClassProject.bench.BenchmarkTables.BenchTableName;
+import static CSCI485ClassProject.bench.BenchmarkTables.Salary;
+
+/**
+ * The time createIndex takes to build an index over a loaded table. Every invocation builds the index from scratch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IndexBuildBenchmark {
+
+  @Param({"10000", "100000"})
+  public long recordCount;
+
+  @Param({"8"})
+  public int rowWidth;
+
+  @Param({"NON_CLUSTERED_B_PLUS_TREE_INDEX", "NON_CLUSTERED_HASH_INDEX"})
+  public IndexType indexType;
+
+  private DBEngine engine;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    engine = new DBEngine();
+    BenchmarkTables.createTable(engine, rowWidth);
+    BenchmarkTables.loadRecords(engine, recordCount, rowWidth);
+  }
+
+  @Setup(Level.Invocation)
+  public void dropIndex() {
+    // the first invocation has no index to drop
+    engine.getIndexes().dropIndex(BenchTableName, Salary);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    engine.getTableManager().dropAllTables();
+    engine.close();
+  }
+
+  @Benchmark
+  public StatusCode createIndex() {
+    return engine.getIndexes().createIndex(BenchTableName, Salary, indexType);
+  }
+}
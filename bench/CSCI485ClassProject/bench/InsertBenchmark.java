@@ -0,0 +1,67 @@
+package CSCI485ClassProject.bench;
+
+import CSCI485ClassProject.DBEngine;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.StatusCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static CSCI485ClassProject.bench.BenchmarkTables.BenchTableName;
+import static CSCI485ClassProject.bench.BenchmarkTables.BenchTablePKAttributes;
+
+/**
+ * Single record inserts into a table of rowWidth attributes besides the primary key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InsertBenchmark {
+
+  @Param({"1", "8", "32"})
+  public int rowWidth;
+
+  private DBEngine engine;
+  private Records records;
+  private String[] attrNames;
+
+  // ids are never reused, every insertion creates a new record
+  private final AtomicLong nextId = new AtomicLong();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    engine = new DBEngine();
+    records = engine.getRecords();
+    BenchmarkTables.createTable(engine, rowWidth);
+    attrNames = BenchmarkTables.getAttrNames(rowWidth);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    engine.getTableManager().dropAllTables();
+    engine.close();
+  }
+
+  @Benchmark
+  public StatusCode insertRecord() {
+    long id = nextId.getAndIncrement();
+    return records.insertRecord(BenchTableName, BenchTablePKAttributes, new Object[]{id},
+        attrNames, BenchmarkTables.getAttrValues(id, rowWidth));
+  }
+}
@@ -0,0 +1,104 @@
+package CSCI485ClassProject.bench;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.DBEngine;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static CSCI485ClassProject.bench.BenchmarkTables.BenchTableName;
+import static CSCI485ClassProject.bench.BenchmarkTables.Salary;
+
+/**
+ * Full table scans in both directions, and predicate scans on Salary with and without its index.
+ * The predicate Salary < selectedSalaries selects selectedSalaries% of the records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ScanBenchmark {
+
+  @Param({"10000"})
+  public long recordCount;
+
+  @Param({"8"})
+  public int rowWidth;
+
+  @Param({"1", "10"})
+  public long selectedSalaries;
+
+  private DBEngine engine;
+  private Records records;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    engine = new DBEngine();
+    records = engine.getRecords();
+    BenchmarkTables.createTable(engine, rowWidth);
+    BenchmarkTables.loadRecords(engine, recordCount, rowWidth);
+    BenchmarkTables.check(engine.getIndexes().createIndex(BenchTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    engine.getTableManager().dropAllTables();
+    engine.close();
+  }
+
+  @Benchmark
+  public void scanForward(Blackhole blackhole) {
+    Cursor cursor = records.openCursor(BenchTableName, Cursor.Mode.READ);
+    for (Record record = records.getFirst(cursor); record != null; record = records.getNext(cursor)) {
+      blackhole.consume(record);
+    }
+    records.commitCursor(cursor);
+  }
+
+  @Benchmark
+  public void scanReverse(Blackhole blackhole) {
+    Cursor cursor = records.openCursor(BenchTableName, Cursor.Mode.READ);
+    for (Record record = records.getLast(cursor); record != null; record = records.getPrevious(cursor)) {
+      blackhole.consume(record);
+    }
+    records.commitCursor(cursor);
+  }
+
+  @Benchmark
+  public void predicateScan(Blackhole blackhole) {
+    scanPredicate(blackhole, false);
+  }
+
+  @Benchmark
+  public void predicateScanUsingIndex(Blackhole blackhole) {
+    scanPredicate(blackhole, true);
+  }
+
+  private void scanPredicate(Blackhole blackhole, boolean isUsingIndex) {
+    Cursor cursor = records.openCursor(BenchTableName, Salary, selectedSalaries, ComparisonOperator.LESS_THAN,
+        Cursor.Mode.READ, isUsingIndex);
+    for (Record record = records.getFirst(cursor); record != null; record = records.getNext(cursor)) {
+      blackhole.consume(record);
+    }
+    records.commitCursor(cursor);
+  }
+}
@@ -0,0 +1,126 @@
+package CSCI485ClassProject.bench;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.DBEngine;
+import CSCI485ClassProject.Predicate;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.ScanHint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static CSCI485ClassProject.bench.BenchmarkTables.BenchTableName;
+import static CSCI485ClassProject.bench.BenchmarkTables.BenchTablePKAttributes;
+import static CSCI485ClassProject.bench.BenchmarkTables.Id;
+import static CSCI485ClassProject.bench.BenchmarkTables.Name;
+import static CSCI485ClassProject.bench.BenchmarkTables.Salary;
+
+/**
+ * Updates and deletes of one record through a READ_WRITE cursor positioned by a primary key predicate,
+ * on a table with an index on Salary that both operations maintain. An EQUAL_TO predicate reads only the record's
+ * keys, the RANGE predicate selecting the same record scans the table, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UpdateDeleteBenchmark {
+
+  @Param({"10000"})
+  public long recordCount;
+
+  @Param({"8"})
+  public int rowWidth;
+
+  @Param({"EQUAL_TO", "RANGE"})
+  public String pointPredicate;
+
+  private DBEngine engine;
+  private Records records;
+  private String[] attrNames;
+  private final Random random = new Random(30);
+  private long updateCount = 0;
+
+  // ids of the records inserted for deleteRecord follow the loaded ones
+  private long nextDeletedId;
+
+  /**
+   * The record the next deleteRecord invocation deletes, inserted before the invocation.
+   */
+  @State(Scope.Thread)
+  public static class DeletedRecord {
+    private long id;
+
+    @Setup(Level.Invocation)
+    public void insert(UpdateDeleteBenchmark bench) {
+      id = ++bench.nextDeletedId;
+      BenchmarkTables.check(bench.records.insertRecord(BenchTableName, BenchTablePKAttributes, new Object[]{id},
+          bench.attrNames, BenchmarkTables.getAttrValues(id, bench.rowWidth)));
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    engine = new DBEngine();
+    records = engine.getRecords();
+    BenchmarkTables.createTable(engine, rowWidth);
+    BenchmarkTables.loadRecords(engine, recordCount, rowWidth);
+    BenchmarkTables.check(engine.getIndexes().createIndex(BenchTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+    attrNames = BenchmarkTables.getAttrNames(rowWidth);
+    nextDeletedId = recordCount;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    engine.getTableManager().dropAllTables();
+    engine.close();
+  }
+
+  @Benchmark
+  public StatusCode updateRecord() {
+    long id = Math.floorMod(random.nextLong(), recordCount);
+    Cursor cursor = openPointCursor(id);
+    records.getFirst(cursor);
+    // a new value every time, an update to the same values would write nothing
+    long value = ++updateCount;
+    StatusCode status = records.updateRecord(cursor, new String[]{Salary, Name},
+        new Object[]{BenchmarkTables.getSalary(value), BenchmarkTables.getName(value)});
+    records.commitCursor(cursor);
+    return status;
+  }
+
+  @Benchmark
+  public StatusCode deleteRecord(DeletedRecord deletedRecord) {
+    Cursor cursor = openPointCursor(deletedRecord.id);
+    records.getFirst(cursor);
+    StatusCode status = records.deleteRecord(cursor);
+    records.commitCursor(cursor);
+    return status;
+  }
+
+  private Cursor openPointCursor(long id) {
+    Predicate predicate = pointPredicate.equals("EQUAL_TO")
+        ? Predicate.compare(Id, ComparisonOperator.EQUAL_TO, id)
+        : Predicate.and(Predicate.compare(Id, ComparisonOperator.GREATER_THAN_OR_EQUAL_TO, id),
+            Predicate.compare(Id, ComparisonOperator.LESS_THAN_OR_EQUAL_TO, id));
+    return records.openCursor(BenchTableName, predicate, Cursor.Mode.READ_WRITE, ScanHint.POINT_LOOKUP, 1);
+  }
+}
@@ -0,0 +1,194 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.fdb.FDBHelper;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.Record;
+import com.apple.foundationdb.Database;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.async.AsyncIterator;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.apple.foundationdb.tuple.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * AsyncCursor reads the records of a table in primary key order without blocking a thread on the storage.
+ *
+ * Every call to next() returns a future completed by FDB's client once the next qualified record is read, so one
+ * thread can drive many cursors. A cursor only reads, at a snapshot, and resumes in a new transaction when the scan
+ * outlives FDB's transaction time limit. Call next() again only after the previous future completed.
+ */
+public class AsyncCursor implements AutoCloseable {
+
+  private final Database db;
+
+  private final RecordsTransformer recordsTransformer;
+
+  // null if no record was ever inserted into the table
+  private final DirectorySubspace recordsSubspace;
+
+  // used by predicate, null attribute name for no predicate
+  private final String predicateAttributeName;
+  private final Record.Value predicateAttributeValue;
+  private final ComparisonOperator predicateOperator;
+
+  private Transaction tx;
+
+  private AsyncIterator<KeyValue> iterator = null;
+
+  // the keys read of the record not complete yet
+  private List<KeyValue> pendingKVs = new ArrayList<>();
+  private Tuple pendingPrimaryKey = null;
+
+  // the record completed by the last key read
+  private Record completedRecord = null;
+
+  // where a new transaction resumes the scan when there is no pending record
+  private byte[] resumeKey = null;
+
+  private boolean isExhausted = false;
+
+  AsyncCursor(Database db, Transaction tx, String tableName, CatalogCache.TableEntry tableEntry,
+              String predicateAttributeName, Record.Value predicateAttributeValue, ComparisonOperator predicateOperator) {
+    this.db = db;
+    this.tx = tx;
+    this.recordsTransformer = new RecordsTransformer(tableName, tableEntry.getTableMetadata());
+    this.recordsSubspace = tableEntry.getRecordsSubspace();
+    this.predicateAttributeName = predicateAttributeName;
+    this.predicateAttributeValue = predicateAttributeValue;
+    this.predicateOperator = predicateOperator;
+    if (recordsSubspace == null) {
+      isExhausted = true;
+    } else {
+      resumeKey = recordsSubspace.range().begin;
+      iterator = tx.snapshot().getRange(resumeKey, recordsSubspace.range().end).iterator();
+    }
+  }
+
+  /**
+   * Read the next record satisfying the predicate.
+   * @return a future of the record, or of null once the scan reached the end of the table
+   */
+  public CompletableFuture<Record> next() {
+    if (tx == null) {
+      return CompletableFuture.failedFuture(new IllegalStateException("the cursor is closed"));
+    }
+    Record[] result = new Record[1];
+    return AsyncUtil.whileTrue(() -> nextRecord().thenApply(record -> {
+      if (record == null || doesRecordMatchPredicate(record)) {
+        result[0] = record;
+        return false;
+      }
+      return true;
+    })).thenApply(v -> result[0]);
+  }
+
+  /**
+   * Cancel the scan and close the transaction. Closing twice does nothing.
+   */
+  @Override
+  public void close() {
+    if (iterator != null) {
+      iterator.cancel();
+      iterator = null;
+    }
+    if (tx != null) {
+      FDBHelper.abortTransaction(tx);
+      tx = null;
+    }
+  }
+
+  private boolean doesRecordMatchPredicate(Record record) {
+    if (predicateAttributeName == null) {
+      return true;
+    }
+    return Predicate.compareValue(record.getValueForGivenAttrName(predicateAttributeName),
+        predicateAttributeValue, predicateOperator);
+  }
+
+  /**
+   * Read keys until a record is complete.
+   */
+  private CompletableFuture<Record> nextRecord() {
+    if (isExhausted) {
+      return CompletableFuture.completedFuture(takePendingRecord());
+    }
+    return AsyncUtil.whileTrue(this::readKeyValue).thenApply(v -> {
+      if (completedRecord != null) {
+        Record record = completedRecord;
+        completedRecord = null;
+        return record;
+      }
+      return takePendingRecord();
+    });
+  }
+
+  /**
+   * Read one key into the pending record.
+   * @return a future of true if more keys are needed to complete a record
+   */
+  private CompletableFuture<Boolean> readKeyValue() {
+    return iterator.onHasNext().handle((hasNext, e) -> {
+      if (e != null) {
+        if (!FDBHelper.isTransactionTooOld(e)) {
+          throw new CompletionException(e);
+        }
+        reopenTransaction();
+        return true;
+      }
+      if (!hasNext) {
+        isExhausted = true;
+        return false;
+      }
+
+      KeyValue kv = iterator.next();
+      if (recordsTransformer.isRowPacked()) {
+        // a packed row is one key
+        completedRecord = recordsTransformer.convertBackToRecords(recordsSubspace, List.of(kv)).get(0);
+        resumeKey = ByteArrayUtil.keyAfter(kv.getKey());
+        return false;
+      }
+
+      Tuple primaryKey = recordsTransformer.getPrimaryKeyValTupleOfKey(recordsSubspace.unpack(kv.getKey()));
+      boolean isRecordComplete = pendingPrimaryKey != null && !primaryKey.equals(pendingPrimaryKey);
+      if (isRecordComplete) {
+        completedRecord = recordsTransformer.convertBackToRecords(recordsSubspace, pendingKVs).get(0);
+        pendingKVs = new ArrayList<>();
+      }
+      pendingKVs.add(kv);
+      pendingPrimaryKey = primaryKey;
+      return !isRecordComplete;
+    });
+  }
+
+  private Record takePendingRecord() {
+    if (pendingKVs.isEmpty()) {
+      return null;
+    }
+    Record record = recordsTransformer.convertBackToRecords(recordsSubspace, pendingKVs).get(0);
+    pendingKVs = new ArrayList<>();
+    pendingPrimaryKey = null;
+    return record;
+  }
+
+  /**
+   * Continue the scan in a new transaction from the first key of the pending record, which is read again.
+   */
+  private void reopenTransaction() {
+    if (pendingPrimaryKey != null) {
+      resumeKey = recordsSubspace.pack(pendingPrimaryKey);
+    }
+    pendingKVs = new ArrayList<>();
+    pendingPrimaryKey = null;
+
+    FDBHelper.abortTransaction(tx);
+    tx = FDBHelper.openTransaction(db);
+    iterator = tx.snapshot().getRange(resumeKey, recordsSubspace.range().end).iterator();
+  }
+}
@@ -0,0 +1,44 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.models.ComparisonOperator;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AsyncRecords is the non-blocking counterpart of Records. The operations return futures completed by FDB's client,
+ * so the calling thread is never parked on a storage round trip and can keep many operations in flight.
+ */
+public interface AsyncRecords {
+
+  /**
+   * Insert a new row into the table, with the same rules and status codes as Records.insertRecord.
+   *
+   * @param tableName the target tableName
+   * @param primaryKeys primary keys
+   * @param primaryKeysValues corresponding values of primary keys
+   * @param attrNames attribute names(doesn't contain primary keys)
+   * @param attrValues attribute values(doesn't contain primary key values)
+   * @return a future of the StatusCode
+   */
+  CompletableFuture<StatusCode> insertRecordAsync(String tableName, String[] primaryKeys, Object[] primaryKeysValues,
+                                                  String[] attrNames, Object[] attrValues);
+
+  /**
+   * Open a read-only cursor iterating all records of a table in primary key order.
+   *
+   * @param tableName the target table's name
+   * @return a future of the cursor, or of null if the table does not exist
+   */
+  CompletableFuture<AsyncCursor> openCursorAsync(String tableName);
+
+  /**
+   * Open a read-only cursor iterating the records of a table satisfying a predicate, in primary key order.
+   *
+   * @param tableName the target tableName
+   * @param attrName the target attribute Name
+   * @param attrValue the attribute value for the predicate
+   * @param operator the operator used by the predicate
+   * @return a future of the cursor, or of null if the table or the attribute does not exist
+   */
+  CompletableFuture<AsyncCursor> openCursorAsync(String tableName, String attrName, Object attrValue, ComparisonOperator operator);
+}
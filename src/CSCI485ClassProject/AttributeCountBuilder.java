@@ -0,0 +1,151 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.fdb.FDBHelper;
+import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.TableMetadata;
+import com.apple.foundationdb.Database;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.MutationType;
+import com.apple.foundationdb.Range;
+import com.apple.foundationdb.StreamingMode;
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.apple.foundationdb.tuple.Tuple;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AttributeCountBuilder counts the attributes of the records of a table created before the attribute counts existed.
+ *
+ * The records are scanned in batches, each committing the counts of the records it scanned together with the
+ * progress, the records key the next batch resumes from, so an interrupted build resumes where it stopped. A batch
+ * reads the records it counts, so it conflicts with their concurrent insertion or deletion, which count the record
+ * only if the progress is past it. The counts are marked complete once every record is counted.
+ */
+public class AttributeCountBuilder {
+
+  private final Database db;
+
+  private final String tableName;
+
+  private final RecordsTransformer recordsTransformer;
+
+  public AttributeCountBuilder(Database db, String tableName, TableMetadata tableMetadata) {
+    this.db = db;
+    this.tableName = tableName;
+    this.recordsTransformer = new RecordsTransformer(tableName, tableMetadata);
+  }
+
+  /**
+   * Count the records, resuming where a previous build stopped.
+   * @return StatusCode
+   */
+  public StatusCode build() {
+    List<String> tablePath = Collections.singletonList(tableName);
+    boolean[] isDone = new boolean[1];
+    while (!isDone[0]) {
+      StatusCode status = FDBHelper.runTransaction(db, tx -> {
+        isDone[0] = false;
+        if (!FDBHelper.doesSubdirectoryExists(tx, tablePath)) {
+          return StatusCode.TABLE_NOT_FOUND;
+        }
+        DirectorySubspace tableDir = FDBHelper.openSubspace(tx, tablePath);
+        if (AttributeCounter.isReady(tx, tableDir)) {
+          isDone[0] = true;
+          return StatusCode.SUCCESS;
+        }
+        DirectorySubspace recordsSubspace = null;
+        if (FDBHelper.doesSubdirectoryExists(tx, recordsTransformer.getTableRecordPath())) {
+          recordsSubspace = FDBHelper.openSubspace(tx, recordsTransformer.getTableRecordPath());
+        }
+        isDone[0] = buildBatch(tx, tableDir, recordsSubspace);
+        return StatusCode.SUCCESS;
+      });
+      if (status != StatusCode.SUCCESS) {
+        return status;
+      }
+    }
+    return StatusCode.SUCCESS;
+  }
+
+  /**
+   * Count the records of one batch from the progress on, the first batch replacing the counts kept so far.
+   * @return true if the counts are complete
+   */
+  private boolean buildBatch(Transaction tx, DirectorySubspace tableDir, DirectorySubspace recordsSubspace) {
+    byte[] progressKey = tableDir.pack(AttributeCounter.getCountProgressKeyTuple());
+    byte[] progress = tx.get(progressKey).join();
+    if (progress == null) {
+      tx.clear(tableDir.range(AttributeCounter.getCountPrefixTuple()));
+    }
+    if (recordsSubspace == null) {
+      return finish(tx, tableDir, progressKey);
+    }
+    Range recordsRange = recordsSubspace.range();
+    byte[] begin = progress == null ? recordsRange.begin : progress;
+    List<KeyValue> kvs = tx.getRange(begin, recordsRange.end, DBConf.ATTRIBUTE_COUNT_BATCH_KEYS, false,
+        StreamingMode.WANT_ALL).asList().join();
+
+    // the last record of a full batch may continue in the next batch, leave it to the next batch
+    byte[] nextProgress = null;
+    if (kvs.size() == DBConf.ATTRIBUTE_COUNT_BATCH_KEYS) {
+      KeyValue lastKV = kvs.get(kvs.size() - 1);
+      if (recordsTransformer.isRowPacked()) {
+        nextProgress = ByteArrayUtil.keyAfter(lastKV.getKey());
+      } else {
+        byte[] lastRecordBegin = recordsSubspace.pack(recordsTransformer.getPrimaryKeyValTupleOfKey(recordsSubspace.unpack(lastKV.getKey())));
+        int completeCount = 0;
+        while (ByteArrayUtil.compareUnsigned(kvs.get(completeCount).getKey(), lastRecordBegin) < 0) {
+          completeCount++;
+        }
+        if (completeCount > 0) {
+          kvs = kvs.subList(0, completeCount);
+          nextProgress = lastRecordBegin;
+        } else {
+          // a single record fills the whole batch, read all of its keys
+          Range lastRecordRange = Range.startsWith(lastRecordBegin);
+          kvs = tx.getRange(lastRecordRange).asList().join();
+          nextProgress = lastRecordRange.end;
+        }
+      }
+    }
+
+    Map<String, Long> counts = new HashMap<>();
+    for (KeyValue kv : kvs) {
+      Tuple keyTuple = recordsSubspace.unpack(kv.getKey());
+      if (recordsTransformer.isRowPacked()) {
+        Record record = recordsTransformer.convertBackToRecord(keyTuple, Tuple.fromBytes(kv.getValue()));
+        for (String attrName : record.getMapAttrNameToValue().keySet()) {
+          counts.merge(attrName, 1L, Long::sum);
+        }
+      } else {
+        counts.merge(RecordsTransformer.getAttributeNameFromTuples(keyTuple, null), 1L, Long::sum);
+      }
+    }
+    counts.keySet().removeAll(recordsTransformer.getPrimaryKeys());
+    for (Map.Entry<String, Long> entry : counts.entrySet()) {
+      tx.mutate(MutationType.ADD, tableDir.pack(AttributeCounter.getCountKeyTuple(entry.getKey())),
+          AttributeCounter.encodeCount(entry.getValue()));
+    }
+
+    if (nextProgress == null || ByteArrayUtil.compareUnsigned(nextProgress, recordsRange.end) >= 0) {
+      return finish(tx, tableDir, progressKey);
+    }
+    tx.set(progressKey, nextProgress);
+    return false;
+  }
+
+  /**
+   * Mark the counts complete. The catalog changes, so that the cached tables know the counts are ready.
+   */
+  private static boolean finish(Transaction tx, DirectorySubspace tableDir, byte[] progressKey) {
+    tx.clear(progressKey);
+    AttributeCounter.initialize(tx, tableDir);
+    CatalogCache.bumpVersion(tx);
+    return true;
+  }
+}
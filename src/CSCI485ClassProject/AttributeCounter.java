@@ -0,0 +1,146 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.models.Record;
+import com.apple.foundationdb.MutationType;
+import com.apple.foundationdb.ReadTransaction;
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.apple.foundationdb.tuple.Tuple;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AttributeCounter keeps, for every non-primary-key attribute of a table, the number of records having it.
+ *
+ * The counts live in the table's directory subspace under keys (attrCount, attrName), as 8-byte little-endian
+ * integers changed with atomic adds, so concurrent inserts never conflict on them. A deletion finds the attributes
+ * no longer used by any record by reading the counts of the deleted record's attributes only.
+ *
+ * Tables created before the counts existed are counted by the AttributeCountBuilder before their records are deleted.
+ * While it runs, only the records before its progress are counted, and deletions drop no attribute.
+ */
+public class AttributeCounter {
+
+  public static Tuple getCountKeyTuple(String attrName) {
+    return new Tuple().add(DBConf.ATTRIBUTE_COUNT_KEY).add(attrName);
+  }
+
+  public static Tuple getCountPrefixTuple() {
+    return new Tuple().add(DBConf.ATTRIBUTE_COUNT_KEY);
+  }
+
+  public static Tuple getCountReadyKeyTuple() {
+    return new Tuple().add(DBConf.ATTRIBUTE_COUNT_READY_KEY);
+  }
+
+  public static Tuple getCountProgressKeyTuple() {
+    return new Tuple().add(DBConf.ATTRIBUTE_COUNT_PROGRESS_KEY);
+  }
+
+  public static byte[] encodeCount(long count) {
+    return ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(count).array();
+  }
+
+  private static long decodeCount(byte[] bytes) {
+    if (bytes == null) {
+      return 0;
+    }
+    return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getLong();
+  }
+
+  /**
+   * Mark the counts of a newly created table as complete.
+   */
+  public static void initialize(Transaction tx, DirectorySubspace tableDir) {
+    tx.set(tableDir.pack(getCountReadyKeyTuple()), new Tuple().pack());
+  }
+
+  /**
+   * Check if the counts of the table are complete.
+   */
+  public static boolean isReady(ReadTransaction tx, DirectorySubspace tableDir) {
+    return tx.get(tableDir.pack(getCountReadyKeyTuple())).join() != null;
+  }
+
+  /**
+   * Check if the backfill of the table's counts has already counted the record.
+   */
+  public static boolean isCountedByBackfill(Transaction tx, DirectorySubspace tableDir, DirectorySubspace recordsSubspace,
+                                             Tuple primaryKeyTuple) {
+    byte[] progress = tx.get(tableDir.pack(getCountProgressKeyTuple())).join();
+    return progress != null && ByteArrayUtil.compareUnsigned(recordsSubspace.pack(primaryKeyTuple), progress) < 0;
+  }
+
+  public static void addRecord(Transaction tx, DirectorySubspace tableDir, boolean isCountReady, DirectorySubspace recordsSubspace,
+                               Record record, Tuple primaryKeyTuple, Collection<String> primaryKeys) {
+    if (!isCountReady && !isCountedByBackfill(tx, tableDir, recordsSubspace, primaryKeyTuple)) {
+      // the backfill counts the record once it reaches it
+      return;
+    }
+    for (String attrName : record.getMapAttrNameToValue().keySet()) {
+      if (!primaryKeys.contains(attrName)) {
+        tx.mutate(MutationType.ADD, tableDir.pack(getCountKeyTuple(attrName)), encodeCount(1));
+      }
+    }
+  }
+
+  /**
+   * Remove the count of an attribute dropped from the table.
+   */
+  public static void removeAttribute(Transaction tx, DirectorySubspace tableDir, String attrName) {
+    tx.clear(tableDir.pack(getCountKeyTuple(attrName)));
+  }
+
+  /**
+   * Take the record, which must still be stored, out of the counts.
+   *
+   * The counts are read at a snapshot, so concurrent deletions of records sharing an attribute do not conflict. Only
+   * the counts found to be zero are added to the read conflict range, so that an attribute is not dropped while a
+   * concurrent transaction adds a record having it.
+   * @return the attributes of the record that no other record of the table has, none while the counts are backfilled
+   */
+  public static Set<String> removeRecord(Transaction tx, DirectorySubspace tableDir, DirectorySubspace recordsSubspace,
+                                         boolean isCountReady, RecordsTransformer recordsTransformer, Record record) {
+    if (!isCountReady) {
+      if (isCountedByBackfill(tx, tableDir, recordsSubspace, recordsTransformer.getPrimaryKeyValTuple(record))) {
+        for (String attrName : record.getMapAttrNameToValue().keySet()) {
+          if (!recordsTransformer.getPrimaryKeys().contains(attrName)) {
+            tx.mutate(MutationType.ADD, tableDir.pack(getCountKeyTuple(attrName)), encodeCount(-1));
+          }
+        }
+      }
+      return Collections.emptySet();
+    }
+
+    List<String> primaryKeys = recordsTransformer.getPrimaryKeys();
+    Map<String, CompletableFuture<byte[]>> counts = new HashMap<>();
+    for (String attrName : record.getMapAttrNameToValue().keySet()) {
+      if (!primaryKeys.contains(attrName)) {
+        byte[] countKey = tableDir.pack(getCountKeyTuple(attrName));
+        tx.mutate(MutationType.ADD, countKey, encodeCount(-1));
+        counts.put(attrName, tx.snapshot().get(countKey));
+      }
+    }
+
+    Set<String> unusedAttrNames = new HashSet<>();
+    for (Map.Entry<String, CompletableFuture<byte[]>> entry : counts.entrySet()) {
+      if (decodeCount(entry.getValue().join()) <= 0) {
+        byte[] countKey = tableDir.pack(getCountKeyTuple(entry.getKey()));
+        tx.addReadConflictKey(countKey);
+        unusedAttrNames.add(entry.getKey());
+        removeAttribute(tx, tableDir, entry.getKey());
+      }
+    }
+    return unusedAttrNames;
+  }
+}
@@ -0,0 +1,309 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.fdb.FDBHelper;
+import CSCI485ClassProject.fdb.FDBKVPair;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.TableMetadata;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.MutationType;
+import com.apple.foundationdb.Range;
+import com.apple.foundationdb.ReadTransaction;
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.Versionstamp;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * CatalogCache caches the directory subspaces and the schema of tables across operations.
+ *
+ * Every operation that changes a table's schema, directories or indexes bumps the catalog version, a key written with a
+ * versionstamped value. Operations read the version in their own transaction, and the cached entries are only used
+ * while the version is unchanged, so the hot paths do no directory reads while the catalog is stable.
+ */
+public class CatalogCache {
+
+  private static final byte[] CATALOG_VERSION_KEY = new Tuple().add(DBConf.CATALOG_VERSION_KEY).pack();
+
+  /**
+   * An index on one attribute of a table.
+   */
+  public static class IndexEntry {
+    private final IndexTransformer indexTransformer;
+    private final DirectorySubspace indexSubspace;
+    private final boolean isReadable;
+
+    public IndexEntry(IndexTransformer indexTransformer, DirectorySubspace indexSubspace, boolean isReadable) {
+      this.indexTransformer = indexTransformer;
+      this.indexSubspace = indexSubspace;
+      this.isReadable = isReadable;
+    }
+
+    public IndexTransformer getIndexTransformer() {
+      return indexTransformer;
+    }
+
+    public DirectorySubspace getIndexSubspace() {
+      return indexSubspace;
+    }
+
+    public boolean isReadable() {
+      return isReadable;
+    }
+  }
+
+  /**
+   * The subspaces and the schema of a table. The TableMetadata is shared, copy it before changing it.
+   */
+  public static class TableEntry {
+    private final TableMetadata tableMetadata;
+    private final DirectorySubspace tableSubspace;
+    private final DirectorySubspace schemaSubspace;
+    private volatile DirectorySubspace recordsSubspace;
+    private final Map<String, IndexEntry> indexes;
+    private final boolean isAttributeCountReady;
+    private final Set<String> droppedAttrNames;
+
+    public TableEntry(TableMetadata tableMetadata, DirectorySubspace tableSubspace, DirectorySubspace schemaSubspace,
+                      DirectorySubspace recordsSubspace, Map<String, IndexEntry> indexes, boolean isAttributeCountReady,
+                      Set<String> droppedAttrNames) {
+      this.tableMetadata = tableMetadata;
+      this.tableSubspace = tableSubspace;
+      this.schemaSubspace = schemaSubspace;
+      this.recordsSubspace = recordsSubspace;
+      this.indexes = indexes;
+      this.isAttributeCountReady = isAttributeCountReady;
+      this.droppedAttrNames = droppedAttrNames;
+    }
+
+    public TableMetadata getTableMetadata() {
+      return tableMetadata;
+    }
+
+    public DirectorySubspace getTableSubspace() {
+      return tableSubspace;
+    }
+
+    public DirectorySubspace getSchemaSubspace() {
+      return schemaSubspace;
+    }
+
+    /**
+     * Get the records subspace, or null if no record has ever been inserted into the table.
+     */
+    public DirectorySubspace getRecordsSubspace() {
+      return recordsSubspace;
+    }
+
+    public Map<String, IndexEntry> getIndexes() {
+      return indexes;
+    }
+
+    /**
+     * Get the index on the attribute, or null if there is none.
+     */
+    public IndexEntry getIndex(String attrName) {
+      return indexes.get(attrName);
+    }
+
+    /**
+     * Check if the attribute counts of the table are complete, false while they are backfilled.
+     */
+    public boolean isAttributeCountReady() {
+      return isAttributeCountReady;
+    }
+
+    /**
+     * Get the dropped attributes whose stored values are not cleared yet. They cannot be added again until they are.
+     */
+    public Set<String> getDroppedAttrNames() {
+      return droppedAttrNames;
+    }
+
+    /**
+     * Get the entry of the table once the indexes on the given attributes are dropped.
+     */
+    public TableEntry withoutIndexes(Set<String> attrNames) {
+      Map<String, IndexEntry> remainingIndexes = new HashMap<>(indexes);
+      remainingIndexes.keySet().removeAll(attrNames);
+      return new TableEntry(tableMetadata, tableSubspace, schemaSubspace, recordsSubspace, remainingIndexes,
+          isAttributeCountReady, droppedAttrNames);
+    }
+  }
+
+  // absent tables are cached as well, the map does not allow null entries
+  private static final TableEntry TABLE_NOT_FOUND = new TableEntry(null, null, null, null, Collections.emptyMap(), true,
+      Collections.emptySet());
+
+  /**
+   * The entries loaded at one catalog version. A map is only filled at its own version, so an entry loaded at an older
+   * version never lands in a newer map.
+   */
+  private static class CachedTables {
+    private final byte[] version;
+    private final Map<String, TableEntry> tables = new ConcurrentHashMap<>();
+
+    private CachedTables(byte[] version) {
+      this.version = version;
+    }
+  }
+
+  // only replaced by a newer version
+  private volatile CachedTables cachedTables = null;
+
+  /**
+   * Bump the catalog version. Must be called by every transaction changing a table's schema, directories or indexes.
+   */
+  public static void bumpVersion(Transaction tx) {
+    tx.mutate(MutationType.SET_VERSIONSTAMPED_VALUE, CATALOG_VERSION_KEY,
+        new Tuple().add(Versionstamp.incomplete()).packWithVersionstamp());
+  }
+
+  /**
+   * Get the cached entry of the table, loading it in the transaction if the catalog changed since it was cached.
+   * Read-only operations may pass a snapshot, so that the catalog reads do not conflict with concurrent DDL.
+   * @return the entry, or null if the table does not exist
+   */
+  public TableEntry getTable(ReadTransaction tx, String tableName) {
+    return getTable(tx, tableName, getVersion(tx.get(CATALOG_VERSION_KEY).join()));
+  }
+
+  /**
+   * Get the entry of the table without blocking while the catalog is stable. On a cache miss the directories are
+   * read by the executor, as the directory helpers block.
+   * @return the entry, or null if the table does not exist
+   */
+  public CompletableFuture<TableEntry> getTableAsync(ReadTransaction tx, String tableName, Executor executor) {
+    return tx.get(CATALOG_VERSION_KEY).thenCompose(versionBytes -> {
+      byte[] version = getVersion(versionBytes);
+      TableEntry entry = getCachedTable(tableName, version);
+      if (entry == TABLE_NOT_FOUND) {
+        return CompletableFuture.completedFuture(null);
+      }
+      if (entry != null && entry.recordsSubspace != null) {
+        return CompletableFuture.completedFuture(entry);
+      }
+      return CompletableFuture.supplyAsync(() -> getTable(tx, tableName, version), executor);
+    });
+  }
+
+  /**
+   * Get the entry of the table as cached, without checking the catalog version. It may be outdated.
+   * @return the entry, or null if the table is not cached or does not exist
+   */
+  public TableEntry peekTable(String tableName) {
+    CachedTables cached = cachedTables;
+    TableEntry entry = cached == null ? null : cached.tables.get(tableName);
+    return entry == TABLE_NOT_FOUND ? null : entry;
+  }
+
+  private static byte[] getVersion(byte[] versionBytes) {
+    // the version key was never written or has been cleared with the whole database
+    return versionBytes == null ? new byte[0] : versionBytes;
+  }
+
+  /**
+   * Get the entries cached at the catalog version, dropping the entries of an older version. Null if the version is
+   * older than the cached one, e.g. the version read by a transaction that started before the last DDL.
+   */
+  private CachedTables getCachedTables(byte[] version) {
+    CachedTables cached = cachedTables;
+    if (cached != null && Arrays.equals(version, cached.version)) {
+      return cached;
+    }
+    synchronized (this) {
+      cached = cachedTables;
+      // versionstamps only grow, the version of a database that was never changed is empty and the oldest
+      int order = cached == null ? 1 : ByteArrayUtil.compareUnsigned(version, cached.version);
+      if (order > 0) {
+        cached = new CachedTables(version);
+        cachedTables = cached;
+      }
+      return order < 0 ? null : cached;
+    }
+  }
+
+  private TableEntry getCachedTable(String tableName, byte[] version) {
+    CachedTables cached = getCachedTables(version);
+    return cached == null ? null : cached.tables.get(tableName);
+  }
+
+  private TableEntry getTable(ReadTransaction tx, String tableName, byte[] version) {
+    CachedTables cached = getCachedTables(version);
+    TableEntry entry = cached == null ? null : cached.tables.get(tableName);
+    if (entry == null) {
+      entry = loadTable(tx, tableName);
+      if (cached != null) {
+        cached.tables.putIfAbsent(tableName, entry);
+      }
+    }
+
+    if (entry == TABLE_NOT_FOUND) {
+      return null;
+    }
+    if (entry.recordsSubspace == null) {
+      // records directories are created by the first insertion without a catalog change
+      List<String> recordsPath = new RecordsTransformer(tableName, entry.tableMetadata).getTableRecordPath();
+      if (FDBHelper.doesSubdirectoryExists(tx, recordsPath)) {
+        entry.recordsSubspace = FDBHelper.openSubspace(tx, recordsPath);
+      }
+    }
+    return entry;
+  }
+
+  private TableEntry loadTable(ReadTransaction tx, String tableName) {
+    if (!FDBHelper.doesSubdirectoryExists(tx, Collections.singletonList(tableName))) {
+      return TABLE_NOT_FOUND;
+    }
+
+    DirectorySubspace tableSubspace = FDBHelper.openSubspace(tx, Collections.singletonList(tableName));
+    TableMetadataTransformer tblMetadataTransformer = new TableMetadataTransformer(tableName);
+    List<String> schemaPath = tblMetadataTransformer.getTableAttributeStorePath();
+    DirectorySubspace schemaSubspace = FDBHelper.openSubspace(tx, schemaPath);
+    List<FDBKVPair> kvPairs = FDBHelper.getAllKeyValuePairsOfSubdirectory(tx, schemaPath);
+    TableMetadata tblMetadata = tblMetadataTransformer.convertBackToTableMetadata(kvPairs);
+
+    List<String> recordsPath = new RecordsTransformer(tableName, tblMetadata).getTableRecordPath();
+    DirectorySubspace recordsSubspace = null;
+    if (FDBHelper.doesSubdirectoryExists(tx, recordsPath)) {
+      recordsSubspace = FDBHelper.openSubspace(tx, recordsPath);
+    }
+
+    // indexes are the attribute directories holding an index store
+    Map<String, IndexEntry> indexes = new HashMap<>();
+    for (String subspaceName : FDBHelper.getAllDirectSubspaceName(tx, Collections.singletonList(tableName))) {
+      if (!tblMetadata.doesAttributeExist(subspaceName)) {
+        continue;
+      }
+      List<String> indexPath = IndexTransformer.getIndexPath(tableName, subspaceName);
+      for (String storeName : FDBHelper.getAllDirectSubspaceName(tx, indexPath)) {
+        IndexType indexType = IndexTransformer.getIndexTypeFromStoreName(storeName);
+        if (indexType != null) {
+          IndexTransformer indexTransformer = new IndexTransformer(tableName, subspaceName, indexType);
+          DirectorySubspace indexSubspace = FDBHelper.openSubspace(tx, indexTransformer.getIndexStorePath());
+          indexes.put(subspaceName, new IndexEntry(indexTransformer, indexSubspace, IndexTransformer.isIndexReadable(tx, indexPath)));
+        }
+      }
+    }
+
+    Set<String> droppedAttrNames = new HashSet<>();
+    Range droppedAttrRange = Range.startsWith(tableSubspace.pack(TableMetadataTransformer.getDroppedAttributesKeyTuple()));
+    for (KeyValue kv : tx.getRange(droppedAttrRange).asList().join()) {
+      droppedAttrNames.add(tableSubspace.unpack(kv.getKey()).getString(1));
+    }
+
+    return new TableEntry(tblMetadata, tableSubspace, schemaSubspace, recordsSubspace, indexes,
+        AttributeCounter.isReady(tx, tableSubspace), droppedAttrNames);
+  }
+}
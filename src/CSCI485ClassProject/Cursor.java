@@ -2,22 +2,28 @@ package CSCI485ClassProject;
 
 import CSCI485ClassProject.fdb.FDBHelper;
 import CSCI485ClassProject.fdb.FDBKVPair;
+import CSCI485ClassProject.metrics.Metrics;
+import CSCI485ClassProject.metrics.TraceSpan;
 import CSCI485ClassProject.models.*;
 import CSCI485ClassProject.models.Record;
-import CSCI485ClassProject.utils.ComparisonUtils;
 import com.apple.foundationdb.*;
 import com.apple.foundationdb.async.AsyncIterable;
 import com.apple.foundationdb.async.AsyncIterator;
+import com.apple.foundationdb.async.AsyncUtil;
 import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
 import com.apple.foundationdb.tuple.Tuple;
 
-import java.sql.Array;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
-import static CSCI485ClassProject.RecordsTransformer.getPrimaryKeyValTuple;
+import java.util.concurrent.CompletableFuture;
 
 public class Cursor {
   public enum Mode {
@@ -27,10 +33,19 @@ public class Cursor {
 
   // used by predicate
   private boolean isPredicateEnabled = false;
+  private Predicate predicate;
+
+  // the comparison narrowing an index scan, one of the predicate's conjuncts on the indexed attribute
   private String predicateAttributeName;
   private Record.Value predicateAttributeValue;
   private ComparisonOperator predicateOperator;
 
+  // the attributes of the returned records, null for all of them
+  private Set<String> projection = null;
+
+  // the attributes an index cursor reads of every record, null for all of them
+  private Set<String> readAttrNames = null;
+
   // Table Schema Info
   private String tableName;
   private TableMetadata tableMetadata;
@@ -51,12 +66,65 @@ public class Cursor {
 
   private DirectorySubspace directorySubspace;
   private DirectorySubspace indexSubspace;
-  private boolean isMoved = false;
-  private FDBKVPair currentKVPair = null;
+  // the first key of the next record, read while looking for the end of the current one
+  private KeyValue nextRecordKV = null;
+
+  // assembles the records stored one attribute per key
+  private RecordAssembler recordAssembler = null;
+
+  // the column slots of the table, and the compact record the next record is decoded into
+  private CompactRecord.Layout layout = null;
+  private CompactRecord row = null;
+  // the slots the predicate reads, and the slots of the returned records, null for all of them
+  private boolean[] predicateSlots = null;
+  private boolean[] projectionSlots = null;
+  // the predicate compiled against the layout
+  private Predicate.Evaluator predicateEvaluator = null;
   private String attrName = null;
   private IndexType indexType;
+  private IndexTransformer indexTransformer;
+
+  // subspaces resolved by the catalog, the directory layer is looked up if there is none
+  private CatalogCache.TableEntry tableEntry = null;
+  // whether the transaction bumped the catalog version, which it cannot read anymore then
+  private boolean isCatalogVersionBumped = false;
   private boolean isUsingIndex = false;
 
+  // a record fetch issued ahead for an upcoming index entry
+  private static class PrefetchedRecord {
+    private final Tuple indexKeyTuple;
+    private final CompletableFuture<List<KeyValue>> recordRead;
+
+    private PrefetchedRecord(Tuple indexKeyTuple, CompletableFuture<List<KeyValue>> recordRead) {
+      this.indexKeyTuple = indexKeyTuple;
+      this.recordRead = recordRead;
+    }
+  }
+
+  // record fetches issued ahead for the upcoming index entries, in index order
+  private final Deque<PrefetchedRecord> prefetchedRecords = new ArrayDeque<>();
+  private int prefetchWindow = DBConf.INDEX_CURSOR_PREFETCH_WINDOW;
+
+  // expected size of the scan, and the maximum number of records returned, 0 for no limit
+  private ScanHint scanHint = ScanHint.ITERATOR;
+  private int rowLimit = ReadTransaction.ROW_LIMIT_UNLIMITED;
+  private int returnedCount = 0;
+
+  // READ cursors read at a snapshot unless asked to track conflicts, so their reads never abort concurrent writers
+  private boolean isConflictTracking = false;
+
+  // the primary key of the last record scanned, or the index key of the last index entry used
+  private Tuple continuationTuple = null;
+
+  // index entries that may satisfy the predicate
+  private Range predicateRange = null;
+
+  // what the scan read to return its records, reported to the metrics registry once the cursor is committed or aborted
+  private long keysScanned = 0;
+  private long bytesScanned = 0;
+  private long rangeReads = 0;
+  private TraceSpan span = null;
+
   public Cursor(Mode mode, String tableName, TableMetadata tableMetadata, Transaction tx) {
     this.mode = mode;
     this.tableName = tableName;
@@ -74,6 +142,22 @@ public class Cursor {
     isUsingIndex = true;
   }
 
+  public void setTableEntry(CatalogCache.TableEntry tableEntry) {
+    this.tableEntry = tableEntry;
+  }
+
+  public CatalogCache.TableEntry getTableEntry() {
+    return tableEntry;
+  }
+
+  public void setCatalogVersionBumped() {
+    isCatalogVersionBumped = true;
+  }
+
+  public boolean isCatalogVersionBumped() {
+    return isCatalogVersionBumped;
+  }
+
   public void setTx(Transaction tx) {
     this.tx = tx;
   }
@@ -82,10 +166,156 @@ public class Cursor {
     return tx;
   }
 
+  public void setPrefetchWindow(int prefetchWindow) {
+    this.prefetchWindow = Math.max(1, prefetchWindow);
+  }
+
+  public int getPrefetchWindow() {
+    return prefetchWindow;
+  }
+
+  public void setScanHint(ScanHint scanHint) {
+    this.scanHint = scanHint == null ? ScanHint.ITERATOR : scanHint;
+  }
+
+  public ScanHint getScanHint() {
+    return scanHint;
+  }
+
+  public void setRowLimit(int rowLimit) {
+    this.rowLimit = Math.max(ReadTransaction.ROW_LIMIT_UNLIMITED, rowLimit);
+  }
+
+  public int getRowLimit() {
+    return rowLimit;
+  }
+
+  /**
+   * Make the reads of a READ cursor conflict with concurrent writes again, as READ_WRITE cursors always do.
+   * Must be set before getFirst or getLast.
+   */
+  public void setConflictTracking(boolean isConflictTracking) {
+    this.isConflictTracking = isConflictTracking;
+  }
+
+  public boolean isConflictTracking() {
+    return isConflictTracking;
+  }
+
+  /**
+   * Get the transaction the cursor reads with, a snapshot of the cursor's transaction if the cursor does not track
+   * conflicts.
+   */
+  private ReadTransaction getReadTx() {
+    if (mode == Mode.READ && !isConflictTracking) {
+      return tx.snapshot();
+    }
+    return tx;
+  }
+
+  /**
+   * Make the cursor's transaction conflict with concurrent writes to the current record, even though it was read at a
+   * snapshot.
+   * @return StatusCode
+   */
+  public StatusCode addReadConflictOnCurrentRecord() {
+    if (tx == null) {
+      return StatusCode.CURSOR_INVALID;
+    }
+    if (currentRecord == null || directorySubspace == null) {
+      return StatusCode.CURSOR_REACH_TO_EOF;
+    }
+    Range recordRange = Range.startsWith(directorySubspace.pack(recordsTransformer.getPrimaryKeyValTuple(currentRecord)));
+    tx.addReadConflictRange(recordRange.begin, recordRange.end);
+    return StatusCode.SUCCESS;
+  }
+
+  /**
+   * Get the position of the cursor, past the last record it moved to. A new cursor with the same table, predicate and
+   * direction resumes after that record once the continuation is set on it. Null before the first record.
+   */
+  public byte[] getContinuation() {
+    return continuationTuple == null ? null : continuationTuple.pack();
+  }
+
+  /**
+   * Make the cursor start after the position of another cursor. Must be set before getFirst or getLast.
+   */
+  public void setContinuation(byte[] continuation) {
+    continuationTuple = continuation == null ? null : Tuple.fromBytes(continuation);
+  }
+
+  private boolean isRowLimitReached() {
+    return rowLimit != ReadTransaction.ROW_LIMIT_UNLIMITED && returnedCount >= rowLimit;
+  }
+
+  public long getKeysScanned() {
+    return keysScanned;
+  }
+
+  public long getBytesScanned() {
+    return bytesScanned;
+  }
+
+  private void countScanned(KeyValue kv) {
+    keysScanned++;
+    bytesScanned += kv.getKey().length + kv.getValue().length;
+  }
+
+  private void countRangeRead() {
+    rangeReads++;
+    Metrics.increment(Metrics.RANGE_READS);
+  }
+
+  private void startSpan() {
+    span = Metrics.startSpan(isUsingIndex ? "cursor.indexScan" : "cursor.scan");
+    span.setAttribute("table", tableName);
+    if (isPredicateEnabled) {
+      span.setAttribute("predicate", predicate);
+    }
+    if (isUsingIndex) {
+      span.setAttribute("index", attrName);
+    }
+    if (projection != null) {
+      span.setAttribute("projection", projection);
+    }
+    span.setAttribute("mode", mode);
+  }
+
+  /**
+   * Report what the scan read and returned, and end its span.
+   */
+  private void finishSpan() {
+    if (span == null) {
+      return;
+    }
+    Metrics.increment(Metrics.KEYS_SCANNED, keysScanned);
+    Metrics.increment(Metrics.BYTES_SCANNED, bytesScanned);
+    Metrics.increment(Metrics.RECORDS_RETURNED, returnedCount);
+    span.setAttribute("rangeReads", rangeReads);
+    span.setAttribute("keysScanned", keysScanned);
+    span.setAttribute("bytesScanned", bytesScanned);
+    span.setAttribute("recordsReturned", returnedCount);
+    span.close();
+    span = null;
+  }
+
+  /**
+   * Count the record returned to the caller against the row limit.
+   */
+  private Record countReturned(Record record) {
+    if (record != null) {
+      returnedCount++;
+    }
+    return record;
+  }
+
   public void abort() {
     if (iterator != null) {
       iterator.cancel();
     }
+    prefetchedRecords.clear();
+    finishSpan();
 
     if (tx != null) {
       FDBHelper.abortTransaction(tx);
@@ -94,15 +324,23 @@ public class Cursor {
     tx = null;
   }
 
-  public void commit() {
+  /**
+   * Commit the writes made through the cursor. They cannot be replayed, so a failed commit is not retried.
+   * @return true if the commit succeeded
+   */
+  public boolean commit() {
     if (iterator != null) {
       iterator.cancel();
     }
+    prefetchedRecords.clear();
+    finishSpan();
+    boolean isCommitted = true;
     if (tx != null) {
-      FDBHelper.commitTransaction(tx);
+      isCommitted = FDBHelper.commitTransaction(tx);
     }
 
     tx = null;
+    return isCommitted;
   }
 
   public final Mode getMode() {
@@ -130,12 +368,171 @@ public class Cursor {
   }
 
   public void enablePredicate(String attrName, Record.Value value, ComparisonOperator operator) {
-    this.predicateAttributeName = attrName;
-    this.predicateAttributeValue = value;
-    this.predicateOperator = operator;
+    Predicate comparison = Predicate.compare(attrName, operator, value.getValue());
+    enablePredicate(comparison, (Predicate.Comparison) comparison);
+  }
+
+  /**
+   * Filter the records with the predicate. An index cursor scans the entries satisfying the predicate's first
+   * conjunct on the indexed attribute.
+   */
+  public void enablePredicate(Predicate predicate) {
+    Predicate.Comparison indexComparison = null;
+    if (isUsingIndex) {
+      for (Predicate.Comparison conjunct : predicate.getConjuncts()) {
+        if (conjunct.getAttrName().equals(attrName)) {
+          indexComparison = conjunct;
+          break;
+        }
+      }
+    }
+    enablePredicate(predicate, indexComparison);
+  }
+
+  /**
+   * Filter the records with the predicate, scanning only the index entries satisfying the given comparison, which
+   * every record satisfying the predicate must satisfy. Without such a comparison an index cursor scans the table
+   * instead, as the records missing the indexed attribute have no index entry.
+   */
+  public void enablePredicate(Predicate predicate, Predicate.Comparison indexComparison) {
+    this.predicate = predicate;
     this.isPredicateEnabled = true;
+    if (indexComparison != null) {
+      this.predicateAttributeName = indexComparison.getAttrName();
+      this.predicateAttributeValue = indexComparison.getValue();
+      this.predicateOperator = indexComparison.getOperator();
+    } else if (!isInitialized) {
+      isUsingIndex = false;
+    }
+  }
+
+  public Predicate getPredicate() {
+    return predicate;
+  }
+
+  /**
+   * Return only the given attributes of the records, all of them if null. The other values are skipped, and an index
+   * cursor does not even read them. Must be set before getFirst or getLast.
+   */
+  public void setProjection(Collection<String> attrNames) {
+    projection = attrNames == null ? null : new HashSet<>(attrNames);
+  }
+
+  public Set<String> getProjection() {
+    return projection;
+  }
+
+  /**
+   * Resolve the slots the predicate and the projection use, and compile the predicate, once the scan knows the layout.
+   */
+  private void initializeLayout() {
+    layout = recordsTransformer.getLayout();
+    predicateSlots = isPredicateEnabled ? getSlots(predicate.getAttrNames()) : null;
+    predicateEvaluator = isPredicateEnabled ? predicate.compile(layout) : null;
+    projectionSlots = projection != null ? getSlots(projection) : null;
+  }
+
+  private boolean[] getSlots(Set<String> attrNames) {
+    boolean[] slots = new boolean[layout.getSlotCount()];
+    for (String slotAttrName : attrNames) {
+      int slot = layout.getSlot(slotAttrName);
+      if (slot >= 0) {
+        slots[slot] = true;
+      }
+    }
+    return slots;
+  }
+
+  /**
+   * Get an empty compact record to decode the next record into. The one of a rejected record is reused, the one of a
+   * returned record belongs to the record.
+   */
+  private CompactRecord getEmptyRow() {
+    if (row == null) {
+      row = new CompactRecord(layout);
+    } else {
+      row.clear();
+    }
+    return row;
+  }
+
+  /**
+   * Check the predicate against the decoded slots, and empty the slots only the predicate reads.
+   */
+  private boolean doesRowMatch() {
+    if (!predicateEvaluator.matches(row)) {
+      return false;
+    }
+    if (projectionSlots != null) {
+      for (int slot = row.nextPresentSlot(0); slot >= 0; slot = row.nextPresentSlot(slot + 1)) {
+        if (!projectionSlots[slot]) {
+          row.clearSlot(slot);
+        }
+      }
+    }
+    return true;
+  }
+
+  private Record takeRow() {
+    Record record = new Record(row);
+    row = null;
+    return record;
+  }
+
+  /**
+   * Decode a ROW_PACKED row into a record if it satisfies the predicate, null otherwise. Only the columns the
+   * predicate reads are decoded to reject a row.
+   */
+  private Record decodeIfMatches(Tuple keyTuple, Tuple valTuple) {
+    getEmptyRow();
+    if (isPredicateEnabled) {
+      recordsTransformer.convertBackToCompactRecord(keyTuple, valTuple, row, predicateSlots);
+      if (!doesRowMatch()) {
+        return null;
+      }
+    }
+    recordsTransformer.convertBackToCompactRecord(keyTuple, valTuple, row, projectionSlots);
+    return takeRow();
+  }
+
+  private RecordAssembler getRecordAssembler() {
+    if (recordAssembler == null) {
+      recordAssembler = new RecordAssembler(directorySubspace, layout);
+    }
+    return recordAssembler;
+  }
+
+  /**
+   * Build the assembled record if it satisfies the predicate, null otherwise. Only the values of the attributes the
+   * predicate references are decoded to reject a record.
+   */
+  private Record assembleIfMatches() {
+    getEmptyRow();
+    if (isPredicateEnabled) {
+      recordAssembler.decodeInto(row, predicateSlots);
+      if (!doesRowMatch()) {
+        return null;
+      }
+    }
+    recordAssembler.decodeInto(row, projectionSlots);
+    return takeRow();
   }
 
+  /**
+   * Decode the keys read of one record, in either storage format, if the record satisfies the predicate.
+   */
+  private Record decodeIfMatches(List<KeyValue> kvs) {
+    if (recordsTransformer.isRowPacked()) {
+      KeyValue kv = kvs.get(0);
+      return decodeIfMatches(directorySubspace.unpack(kv.getKey()), Tuple.fromBytes(kv.getValue()));
+    }
+    RecordAssembler assembler = getRecordAssembler();
+    assembler.startRecord(kvs.get(0));
+    for (int i = 1; i < kvs.size(); i++) {
+      assembler.add(kvs.get(i));
+    }
+    return assembleIfMatches();
+  }
 
 
   private Record moveToNextRecord(boolean isInitializing) {
@@ -146,8 +543,14 @@ public class Cursor {
     if (isInitializing) {
       // initialize the subspace and the iterator
       recordsTransformer = new RecordsTransformer(getTableName(), getTableMetadata());
-      directorySubspace = FDBHelper.openSubspace(tx, recordsTransformer.getTableRecordPath());
-      AsyncIterable<KeyValue> fdbIterable = FDBHelper.getKVPairIterableOfDirectory(directorySubspace, tx, isInitializedToLast);
+      initializeLayout();
+      // the records directory is only created by the first insertion
+      if (tableEntry != null) {
+        directorySubspace = tableEntry.getRecordsSubspace();
+      } else if (FDBHelper.doesSubdirectoryExists(getReadTx(), recordsTransformer.getTableRecordPath())) {
+        directorySubspace = FDBHelper.openSubspace(getReadTx(), recordsTransformer.getTableRecordPath());
+      }
+      AsyncIterable<KeyValue> fdbIterable = getRecordsIterable();
       if (fdbIterable != null)
         iterator = fdbIterable.iterator();
 
@@ -161,85 +564,271 @@ public class Cursor {
       return null;
     }
 
-    List<String> recordStorePath = recordsTransformer.getTableRecordPath();
-    List<FDBKVPair> fdbkvPairs = new ArrayList<>();
+    if (recordsTransformer.isRowPacked()) {
+      // every key holds a whole record, no need to group keys by primary key
+      while (iterator.hasNext()) {
+        KeyValue kv = iterator.next();
+        countScanned(kv);
+        Tuple keyTuple = directorySubspace.unpack(kv.getKey());
+        continuationTuple = keyTuple;
+        currentRecord = decodeIfMatches(keyTuple, Tuple.fromBytes(kv.getValue()));
+        if (currentRecord != null) {
+          return currentRecord;
+        }
+      }
+      return null;
+    }
 
-    boolean isSavePK = false;
-    Tuple pkValTuple = new Tuple();
-    Tuple tempPkValTuple = null;
-    if (isMoved && currentKVPair != null) {
-      fdbkvPairs.add(currentKVPair);
-      pkValTuple = getPrimaryKeyValTuple(currentKVPair.getKey());
-      isSavePK = true;
+    // a key is only unpacked if it starts a record, the others are added to the record by their raw bytes
+    RecordAssembler assembler = getRecordAssembler();
+    while (true) {
+      if (nextRecordKV != null) {
+        assembler.startRecord(nextRecordKV);
+        nextRecordKV = null;
+      } else if (iterator.hasNext()) {
+        KeyValue kv = iterator.next();
+        countScanned(kv);
+        assembler.startRecord(kv);
+      } else {
+        return null;
+      }
+
+      while (iterator.hasNext()) {
+        KeyValue kv = iterator.next();
+        countScanned(kv);
+        if (!assembler.add(kv)) {
+          // when pkVal change, stop there
+          nextRecordKV = kv;
+          break;
+        }
+      }
+      continuationTuple = assembler.getPrimaryKeyValTuple();
+      currentRecord = assembleIfMatches();
+      if (currentRecord != null) {
+        return currentRecord;
+      }
     }
+  }
 
-    isMoved = true;
-    boolean nextExists = false;
+  /**
+   * Read the records after the continuation, if there is one, in the direction of the cursor.
+   */
+  private AsyncIterable<KeyValue> getRecordsIterable() {
+    if (directorySubspace == null) {
+      return null;
+    }
+    // the keys of a record all start with its packed primary key, so a predicate fixing the leading primary keys
+    // reads only the records starting with them
+    Tuple primaryKeyPrefix = getPrimaryKeyPrefix();
+    Range range = primaryKeyPrefix == null ? directorySubspace.range() : Range.startsWith(directorySubspace.pack(primaryKeyPrefix));
+    if (continuationTuple != null) {
+      Range continuationRange = Range.startsWith(directorySubspace.pack(continuationTuple));
+      byte[] begin = range.begin;
+      byte[] end = range.end;
+      if (isInitializedToLast && ByteArrayUtil.compareUnsigned(continuationRange.begin, end) < 0) {
+        end = continuationRange.begin;
+      } else if (!isInitializedToLast && ByteArrayUtil.compareUnsigned(continuationRange.end, begin) > 0) {
+        begin = continuationRange.end;
+      }
+      // past the prefix the range is empty
+      range = new Range(begin, ByteArrayUtil.compareUnsigned(begin, end) < 0 ? end : begin);
+    }
 
-    while (iterator.hasNext()) {
-      KeyValue kv = iterator.next();
-      Tuple keyTuple = directorySubspace.unpack(kv.getKey());
-      Tuple valTuple = Tuple.fromBytes(kv.getValue());
-      FDBKVPair kvPair = new FDBKVPair(recordStorePath, keyTuple, valTuple);
-      tempPkValTuple = getPrimaryKeyValTuple(keyTuple);
-      if (!isSavePK) {
-        pkValTuple = tempPkValTuple;
-        isSavePK = true;
-      } else if (!pkValTuple.equals(tempPkValTuple)){
-        // when pkVal change, stop there
-        currentKVPair = kvPair;
-        nextExists = true;
+    // a packed row is one key, so without a predicate the row limit also limits the keys read
+    int keyLimit = ReadTransaction.ROW_LIMIT_UNLIMITED;
+    if (recordsTransformer.isRowPacked() && !isPredicateEnabled && rowLimit != ReadTransaction.ROW_LIMIT_UNLIMITED) {
+      keyLimit = Math.max(1, rowLimit - returnedCount);
+    }
+    countRangeRead();
+    return getReadTx().getRange(range, keyLimit, isInitializedToLast, FDBHelper.getStreamingMode(scanHint, keyLimit));
+  }
+
+  /**
+   * Get the values the predicate's conjuncts fix with EQUAL_TO for the leading primary keys, in the order of the
+   * primary keys, null if the first primary key is not fixed. DOUBLE keys are not fixed, as equal doubles may be
+   * encoded differently.
+   */
+  private Tuple getPrimaryKeyPrefix() {
+    if (!isPredicateEnabled) {
+      return null;
+    }
+    Map<String, Object> fixedValues = new HashMap<>();
+    for (Predicate.Comparison conjunct : predicate.getConjuncts()) {
+      AttributeType valueType = conjunct.getValue().getType();
+      if (conjunct.getOperator() == ComparisonOperator.EQUAL_TO && valueType != AttributeType.DOUBLE
+          && valueType == tableMetadata.getAttributes().get(conjunct.getAttrName())) {
+        fixedValues.putIfAbsent(conjunct.getAttrName(), conjunct.getValue().getValue());
+      }
+    }
+    Tuple prefix = new Tuple();
+    for (String primaryKey : recordsTransformer.getPrimaryKeys()) {
+      if (!fixedValues.containsKey(primaryKey)) {
         break;
       }
-      fdbkvPairs.add(kvPair);
+      prefix = prefix.addObject(fixedValues.get(primaryKey));
     }
-    if (!fdbkvPairs.isEmpty()) {
-      currentRecord = recordsTransformer.convertBackToRecord(fdbkvPairs);
+    return prefix.size() == 0 ? null : prefix;
+  }
+
+  /**
+   * Read the index entries that may satisfy the predicate after the continuation, in the direction of the cursor.
+   */
+  private AsyncIterable<KeyValue> getIndexIterable() {
+    Range range = predicateRange;
+    if (continuationTuple != null) {
+      byte[] continuationKey = indexSubspace.pack(continuationTuple);
+      if (isInitializedToLast) {
+        range = new Range(range.begin, ByteArrayUtil.compareUnsigned(continuationKey, range.end) < 0 ? continuationKey : range.end);
+      } else {
+        byte[] begin = ByteArrayUtil.keyAfter(continuationKey);
+        range = new Range(ByteArrayUtil.compareUnsigned(begin, range.begin) > 0 ? begin : range.begin, range.end);
+      }
     }
+    countRangeRead();
+    return getReadTx().getRange(range, ReadTransaction.ROW_LIMIT_UNLIMITED, isInitializedToLast,
+        FDBHelper.getStreamingMode(scanHint, ReadTransaction.ROW_LIMIT_UNLIMITED));
+  }
 
-    if (!nextExists) {
-      currentKVPair = null;
+  /**
+   * Replace a READ cursor's transaction that outlived FDB's 5-second limit, and continue the scan in the new one from
+   * the continuation.
+   */
+  private void reopenTransaction() {
+    Database db = tx.getDatabase();
+    if (iterator != null) {
+      iterator.cancel();
+    }
+    prefetchedRecords.clear();
+    nextRecordKV = null;
+    FDBHelper.abortTransaction(tx);
+
+    tx = FDBHelper.openTransaction(db);
+    AsyncIterable<KeyValue> fdbIterable = isUsingIndex ? getIndexIterable() : getRecordsIterable();
+    iterator = fdbIterable == null ? null : fdbIterable.iterator();
+  }
+
+  /**
+   * Move to the next record, through the index or the records. A READ cursor survives FDB's 5-second transaction limit
+   * by continuing in a new transaction.
+   */
+  private Record moveToNext(boolean isInitializing) {
+    while (true) {
+      try {
+        if (isUsingIndex) return moveToNextRecordIndex(isInitializing);
+        else return moveToNextRecord(isInitializing);
+      } catch (RuntimeException e) {
+        if (mode != Mode.READ || tx == null || !FDBHelper.isTransactionTooOld(e)) {
+          throw e;
+        }
+        isInitializing = isInitializing && !isInitialized;
+        if (isInitialized) {
+          reopenTransaction();
+        } else {
+          Database db = tx.getDatabase();
+          FDBHelper.abortTransaction(tx);
+          tx = FDBHelper.openTransaction(db);
+        }
+      }
     }
-    return currentRecord;
   }
 
   private AsyncIterable<KeyValue> indexInitialize() {
-    //System.out.println("initializing");
     // Set pointer to main data directory
     recordsTransformer = new RecordsTransformer(getTableName(), getTableMetadata());
-    List<String> tablePath = recordsTransformer.getTableRecordPath();
-    directorySubspace = FDBHelper.openSubspace(getTx(), tablePath);
+    initializeLayout();
+    if (tableEntry != null && tableEntry.getIndex(attrName) != null) {
+      CatalogCache.IndexEntry index = tableEntry.getIndex(attrName);
+      directorySubspace = tableEntry.getRecordsSubspace();
+      indexTransformer = index.getIndexTransformer();
+      indexType = indexTransformer.getIndexType();
+      indexSubspace = index.getIndexSubspace();
+    } else {
+      List<String> tablePath = recordsTransformer.getTableRecordPath();
+      if (FDBHelper.doesSubdirectoryExists(getReadTx(), tablePath)) {
+        directorySubspace = FDBHelper.openSubspace(getReadTx(), tablePath);
+      }
+
+      // Check if bplus or hash
+      indexTransformer = new IndexTransformer(tableName, attrName, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX);
+      if (FDBHelper.doesSubdirectoryExists(getReadTx(), indexTransformer.getIndexStorePath())) {
+        indexType = IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX;
+      }
+      else  {
+        indexType = IndexType.NON_CLUSTERED_HASH_INDEX;
+        indexTransformer = new IndexTransformer(tableName, attrName, indexType);
+      }
 
-    tablePath.set(tablePath.size()-1, attrName);
-    // Check if bplus or index
-    tablePath.add("bplus");
-    if (FDBHelper.doesSubdirectoryExists(tx, tablePath)) {
-      indexType = IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX;
-    //  System.out.println("It is bplus");
+      // Set pointer to index structure directory
+      indexSubspace = FDBHelper.openSubspace(getReadTx(), indexTransformer.getIndexStorePath());
     }
-    else  {
-      indexType = IndexType.NON_CLUSTERED_HASH_INDEX;
-      tablePath.set(tablePath.size()-1, "hash");
+
+    if (projection != null) {
+      readAttrNames = new HashSet<>(projection);
+      if (isPredicateEnabled) {
+        readAttrNames.addAll(predicate.getAttrNames());
+      }
+      // every record stores its primary key attributes, reading one tells an existing record from a removed one
+      readAttrNames.add(recordsTransformer.getPrimaryKeys().get(0));
     }
 
-    // Set pointer to index structure directory
-    indexSubspace = FDBHelper.openSubspace(getTx(), tablePath);
+    // Set iterable object. B+ tree entries are ordered by value, and hash entries of a value are grouped under its
+    // bucket, so only the entries that may satisfy the predicate are scanned. Without a predicate the whole index is.
+    if (predicateAttributeValue == null) {
+      predicateRange = indexSubspace.range();
+    } else {
+      predicateRange = indexTransformer.getIndexRange(indexSubspace, predicateOperator, predicateAttributeValue.getValue());
+    }
+    return getIndexIterable();
+  }
+  /**
+   * Issue the record fetches of the upcoming index entries until the prefetch window is full.
+   */
+  private void fillPrefetchWindow() {
+    // do not fetch more records than the row limit lets the cursor return
+    int window = prefetchWindow;
+    if (rowLimit != ReadTransaction.ROW_LIMIT_UNLIMITED) {
+      window = Math.max(1, Math.min(window, rowLimit - returnedCount));
+    }
+    while (prefetchedRecords.size() < window && iterator.hasNext()) {
+      KeyValue kv = iterator.next();
+      countScanned(kv);
+      Tuple indexKeyTuple = indexSubspace.unpack(kv.getKey());
+      // the indexed value is in the entry, skip the records that cannot match without fetching them
+      if (predicateAttributeName != null && !doesValueMatchPredicate(indexTransformer.getIndexedValue(indexKeyTuple))) {
+        continue;
+      }
+      Tuple pkValTuple = indexTransformer.getPrimaryKeyValTuple(indexKeyTuple);
+      rangeReads++;
+      prefetchedRecords.add(new PrefetchedRecord(indexKeyTuple, readRecord(pkValTuple)));
+    }
+  }
 
-    // Set iterable object
-    AsyncIterable<KeyValue> fdbIterable;
-    Tuple rangeTuple = new Tuple();
-    // If predicate mode is equalsTo, iterator must start pointing at attrValue
-    if (predicateOperator == ComparisonOperator.EQUAL_TO) {
-      if (indexType == IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX) rangeTuple = rangeTuple.addObject(predicateAttributeValue.getValue());
-      else rangeTuple = rangeTuple.addObject(predicateAttributeValue.hashCode());
-      fdbIterable = FDBHelper.getKVPairIterableStartWithPrefixInDirectory(indexSubspace, tx, rangeTuple, isInitializedToLast);
+  /**
+   * Read the keys of the record an index entry references. With a projection, a record stored one attribute per key is
+   * read by point reads of the attributes the cursor needs, otherwise its whole key range is read.
+   */
+  private CompletableFuture<List<KeyValue>> readRecord(Tuple pkValTuple) {
+    if (readAttrNames == null || recordsTransformer.isRowPacked()) {
+      return FDBHelper.getKVPairIterableWithPrefixInDirectory(directorySubspace, getReadTx(), pkValTuple, false, StreamingMode.WANT_ALL).asList();
     }
-    else {
-      Range dirRange = indexSubspace.range(rangeTuple);
-      fdbIterable = tx.getRange(dirRange, ReadTransaction.ROW_LIMIT_UNLIMITED, isInitializedToLast);
+    List<CompletableFuture<KeyValue>> reads = new ArrayList<>(readAttrNames.size());
+    for (String readAttrName : readAttrNames) {
+      byte[] key = directorySubspace.pack(pkValTuple.add(readAttrName));
+      reads.add(getReadTx().get(key).thenApply(value -> value == null ? null : new KeyValue(key, value)));
     }
-    return fdbIterable;
+    Metrics.increment(Metrics.READS, reads.size());
+    return AsyncUtil.getAll(reads).thenApply(kvs -> {
+      // the attributes the record does not have
+      List<KeyValue> existingKVs = new ArrayList<>(kvs.size());
+      for (KeyValue kv : kvs) {
+        if (kv != null) {
+          existingKVs.add(kv);
+        }
+      }
+      return existingKVs;
+    });
   }
+
   private Record moveToNextRecordIndex(boolean isInitializing) {
     if (!isInitializing && !isInitialized) {
       return null;
@@ -251,52 +840,35 @@ public class Cursor {
       if (fdbIterable != null) {
         iterator = fdbIterable.iterator();
         isInitialized = true;
-        //System.out.println("here");
-        //System.out.println("Iterator has next: " + iterator.hasNext());
       }
     }
 
     // reset the currentRecord
     currentRecord = null;
 
-    // no such directory, or no records under the directory
-    if (indexSubspace == null || !hasNext()) {
-      //System.out.println("Here?");
+    // no such directory
+    if (indexSubspace == null || directorySubspace == null || iterator == null) {
       return null;
     }
 
-    List<String> recordStorePath = recordsTransformer.getTableRecordPath();
-    List<FDBKVPair> fdbkvPairs = new ArrayList<>();
-
-    Tuple pkValTuple;
-    AsyncIterator<KeyValue> newIterator = null;
-
-    // Get records from main data using index structure
-    if (iterator.hasNext()) {
-      KeyValue kv = iterator.next();
-      Tuple keyTuple = indexSubspace.unpack(kv.getKey());
-
-      // Get primary key
-      pkValTuple = keyTuple.popFront();
-      //System.out.println("Looking for PK " + pkValTuple.get(0).toString() + " in main");
-      // TODO: If pass comparison then just stop
-      newIterator = FDBHelper.getKVPairIterableWithPrefixInDirectory(directorySubspace, tx, pkValTuple, isInitializedToLast).iterator();
-    }
-
-    while (newIterator != null && newIterator.hasNext()) {
-      KeyValue kv = newIterator.next();
-      Tuple keyTuple = directorySubspace.unpack(kv.getKey());
-      Tuple valTuple = Tuple.fromBytes(kv.getValue());
-      FDBKVPair kvPair = new FDBKVPair(recordStorePath, keyTuple, valTuple);
-      fdbkvPairs.add(kvPair);
-    }
-
-    if (!fdbkvPairs.isEmpty()) {
-      currentRecord = recordsTransformer.convertBackToRecord(fdbkvPairs);
+    // Get records from main data using index structure, the fetches of the next records are already in flight
+    while (currentRecord == null) {
+      fillPrefetchWindow();
+      if (prefetchedRecords.isEmpty()) {
+        return null;
+      }
+      PrefetchedRecord prefetchedRecord = prefetchedRecords.peek();
+      List<KeyValue> kvs = prefetchedRecord.recordRead.join();
+      prefetchedRecords.poll();
+      for (KeyValue kv : kvs) {
+        countScanned(kv);
+      }
+      continuationTuple = prefetchedRecord.indexKeyTuple;
+      // an entry whose record no longer exists, or whose record does not satisfy the predicate, is skipped
+      if (!kvs.isEmpty()) {
+        currentRecord = decodeIfMatches(kvs);
+      }
     }
-
-//    System.out.println("PK: " + currentRecord.getMapAttrNameToValue().get("SSN").getValue());
-//    System.out.println("Salary: " + currentRecord.getMapAttrNameToValue().get("Salary").getValue());
     return currentRecord;
   }
 
@@ -305,37 +877,14 @@ public class Cursor {
       return null;
     }
     isInitializedToLast = false;
+    startSpan();
 
-    Record record;
-    if (isUsingIndex)  record = moveToNextRecordIndex(true);
-    else record = moveToNextRecord(true);
-
-    if (isPredicateEnabled) {
-      while (record != null && !doesRecordMatchPredicate(record)) {
-        if (isUsingIndex)  record = moveToNextRecordIndex(false);
-        else record = moveToNextRecord(false);
-      }
-    }
-    return record;
+    // the records are filtered by the predicate as they are read
+    return countReturned(moveToNext(true));
   }
 
-  private boolean doesRecordMatchPredicate(Record record) {
-    Object recVal = record.getValueForGivenAttrName(predicateAttributeName);
-    AttributeType recType = record.getTypeForGivenAttrName(predicateAttributeName);
-    if (recVal == null || recType == null) {
-      // attribute not exists in this record
-      return false;
-    }
-
-    if (recType == AttributeType.INT) {
-      return ComparisonUtils.compareTwoINT(recVal, predicateAttributeValue.getValue(), predicateOperator);
-    } else if (recType == AttributeType.DOUBLE){
-      return ComparisonUtils.compareTwoDOUBLE(recVal, predicateAttributeValue.getValue(), predicateOperator);
-    } else if (recType == AttributeType.VARCHAR) {
-      return ComparisonUtils.compareTwoVARCHAR(recVal, predicateAttributeValue.getValue(), predicateOperator);
-    }
-
-    return false;
+  private boolean doesValueMatchPredicate(Object recVal) {
+    return Predicate.compareValue(recVal, predicateAttributeValue, predicateOperator);
   }
 
   public Record getLast() {
@@ -343,21 +892,14 @@ public class Cursor {
       return null;
     }
     isInitializedToLast = true;
+    startSpan();
 
-    Record record;
-    if (isUsingIndex)  record = moveToNextRecordIndex(true);
-    else record = moveToNextRecord(true);
-    if (isPredicateEnabled) {
-      while (record != null && !doesRecordMatchPredicate(record)) {
-        if (isUsingIndex)  record = moveToNextRecordIndex(false);
-        else record = moveToNextRecord(false);
-      }
-    }
-    return record;
+    // the records are filtered by the predicate as they are read
+    return countReturned(moveToNext(true));
   }
 
   public boolean hasNext() {
-    return isInitialized && iterator != null && (iterator.hasNext() || currentKVPair != null);
+    return isInitialized && iterator != null && (iterator.hasNext() || nextRecordKV != null || !prefetchedRecords.isEmpty());
   }
 
   public Record next(boolean isGetPrevious) {
@@ -368,16 +910,12 @@ public class Cursor {
       return null;
     }
 
-    Record record;
-    if (attrName != null)  record = moveToNextRecordIndex(false);
-    else record = moveToNextRecord(false);
-    if (isPredicateEnabled) {
-      while (record != null && !doesRecordMatchPredicate(record)) {
-        if (attrName != null)  record = moveToNextRecordIndex(false);
-        else record = moveToNextRecord(false);
-      }
+    if (isRowLimitReached()) {
+      currentRecord = null;
+      return null;
     }
-    return record;
+
+    return countReturned(moveToNext(false));
   }
 
   public Record getCurrentRecord() {
@@ -397,10 +935,16 @@ public class Cursor {
       return StatusCode.CURSOR_REACH_TO_EOF;
     }
 
+    // the index entries move with the record, without the table's indexes they would be left behind
+    if (tableEntry == null) {
+      return StatusCode.TABLE_NOT_FOUND;
+    }
+
     Set<String> currentAttrNames = currentRecord.getMapAttrNameToValue().keySet();
     Set<String> primaryKeys = new HashSet<>(tableMetadata.getPrimaryKeys());
 
     boolean isUpdatingPK = false;
+    Set<String> changedAttrNames = new HashSet<>();
     for (int i = 0; i<attrNames.length; i++) {
       String attrNameToUpdate = attrNames[i];
       Object attrValToUpdate = attrValues[i];
@@ -409,33 +953,75 @@ public class Cursor {
         return StatusCode.CURSOR_UPDATE_ATTRIBUTE_NOT_FOUND;
       }
 
-      if (!Record.Value.isTypeSupported(attrValToUpdate)) {
+      Record.Value newValue = new Record.Value();
+      if (newValue.setValue(attrValToUpdate) != StatusCode.SUCCESS) {
         return StatusCode.ATTRIBUTE_TYPE_NOT_SUPPORTED;
       }
+      if (newValue.getType() != tableMetadata.getAttributes().get(attrNameToUpdate)) {
+        return StatusCode.DATA_RECORD_CREATION_ATTRIBUTE_TYPE_UNMATCHED;
+      }
 
-      if (!isUpdatingPK && primaryKeys.contains(attrNameToUpdate)) {
-        isUpdatingPK = true;
+      // compare by value, so that an Integer equal to the stored Long is no change
+      if (!Predicate.compareValue(currentRecord.getValueForGivenAttrName(attrNameToUpdate), newValue, ComparisonOperator.EQUAL_TO)) {
+        changedAttrNames.add(attrNameToUpdate);
+        if (primaryKeys.contains(attrNameToUpdate)) {
+          isUpdatingPK = true;
+        }
       }
     }
+    if (changedAttrNames.isEmpty()) {
+      return StatusCode.SUCCESS;
+    }
 
-    if (isUpdatingPK) {
-      // delete the old record first
-      StatusCode deleteStatus = deleteCurrentRecord();
-      if (deleteStatus != StatusCode.SUCCESS) {
-        return deleteStatus;
-      }
+    // the index cursor reads the index as it changes, a record whose entry moves ahead would be visited again
+    if (isUsingIndex && (isUpdatingPK || changedAttrNames.contains(attrName))) {
+      return StatusCode.CURSOR_UPDATE_INDEXED_ATTRIBUTE;
+    }
+
+    // keep the old values, the old index entries are keyed by them
+    Record oldRecord = new Record();
+    for (String attrName : currentAttrNames) {
+      oldRecord.setAttrNameAndValue(attrName, currentRecord.getValueForGivenAttrName(attrName));
     }
+    Tuple oldPkTuple = recordsTransformer.getPrimaryKeyValTuple(oldRecord);
 
+    Record newRecord = new Record();
+    for (String attrName : currentAttrNames) {
+      newRecord.setAttrNameAndValue(attrName, currentRecord.getValueForGivenAttrName(attrName));
+    }
     for (int i = 0; i<attrNames.length; i++) {
-      String attrNameToUpdate = attrNames[i];
-      Object attrValToUpdate = attrValues[i];
-      currentRecord.setAttrNameAndValue(attrNameToUpdate, attrValToUpdate);
+      newRecord.setAttrNameAndValue(attrNames[i], attrValues[i]);
+    }
+    Tuple newPkTuple = recordsTransformer.getPrimaryKeyValTuple(newRecord);
+    if (isUpdatingPK && recordsTransformer.doesPrimaryKeyExist(tx, directorySubspace, newPkTuple)) {
+      return StatusCode.DATA_RECORD_PRIMARY_KEYS_DUPLICATED;
+    }
+    for (int i = 0; i<attrNames.length; i++) {
+      currentRecord.setAttrNameAndValue(attrNames[i], attrValues[i]);
     }
 
-    List<FDBKVPair> kvPairsToUpdate = recordsTransformer.convertToFDBKVPairs(currentRecord);
+    List<FDBKVPair> kvPairsToUpdate;
+    if (isUpdatingPK) {
+      // the record moves to a new key, delete the old one and write all of its attributes
+      tx.clear(Range.startsWith(directorySubspace.pack(oldPkTuple)));
+      kvPairsToUpdate = recordsTransformer.convertToFDBKVPairs(currentRecord);
+    } else {
+      kvPairsToUpdate = recordsTransformer.convertToFDBKVPairs(currentRecord, changedAttrNames);
+    }
     for (FDBKVPair kv : kvPairsToUpdate) {
       FDBHelper.setFDBKVPair(directorySubspace, tx, kv);
     }
+
+    // move the entries of the indexes on the changed attributes, every entry if the primary key changed
+    for (CatalogCache.IndexEntry index : tableEntry.getIndexes().values()) {
+      IndexTransformer recordIndexTransformer = index.getIndexTransformer();
+      String indexedAttrName = recordIndexTransformer.getAttrName();
+      if (!currentAttrNames.contains(indexedAttrName) || !(isUpdatingPK || changedAttrNames.contains(indexedAttrName))) {
+        continue;
+      }
+      tx.clear(index.getIndexSubspace().pack(recordIndexTransformer.getIndexKeyTuple(oldRecord, oldPkTuple)));
+      FDBHelper.setFDBKVPair(index.getIndexSubspace(), tx, recordIndexTransformer.convertToIndexKVPair(currentRecord, newPkTuple));
+    }
     return StatusCode.SUCCESS;
   }
 
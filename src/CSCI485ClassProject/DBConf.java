@@ -4,4 +4,45 @@ public class DBConf {
   public static int FDB_API_VERSION = 710;
   public static String TABLE_SCHEMA_STORE = "schema";
   public static String TABLE_RECORDS_STORE = "records";
+  public static String HASH_INDEX_STORE = "hash";
+  public static String B_PLUS_TREE_INDEX_STORE = "bplus";
+
+  // Key bumped by every catalog change, invalidating the cached table subspaces and schemas
+  public static String CATALOG_VERSION_KEY = "catalogVersion";
+
+  // Keys in the table directory counting the records having each attribute, marking the counts complete, and
+  // keeping the progress of the backfill counting the records of an older table
+  public static String ATTRIBUTE_COUNT_KEY = "attrCount";
+  public static String ATTRIBUTE_COUNT_READY_KEY = "attrCountReady";
+  public static String ATTRIBUTE_COUNT_PROGRESS_KEY = "attrCountProgress";
+
+  // Number of buckets of the hash index, entries are keyed by (bucket, value, primaryKeys...)
+  public static int HASH_INDEX_BUCKETS = 1024;
+
+  // Bulk inserts commit batches of at most these bytes and records, a record larger than the byte limit making a
+  // batch of its own, keeping each transaction well below FDB's 10MB size limit and 5s duration limit.
+  public static int BULK_INSERT_MAX_BATCH_BYTES = 1_000_000;
+  public static int BULK_INSERT_MAX_BATCH_RECORDS = 1_000;
+
+  // Index builds scan the table shards concurrently, committing index entries every batch of scanned keys
+  public static int INDEX_BUILD_WORKERS = 8;
+  public static int INDEX_BUILD_BATCH_KEYS = 1_000;
+
+  // The backfill of the attribute counts commits every batch of this many scanned keys
+  public static int ATTRIBUTE_COUNT_BATCH_KEYS = 1_000;
+
+  // deleteDataRecord commits after examining this many records, and continues in a new transaction
+  public static int DELETE_BATCH_RECORDS = 1_000;
+
+  // Dropping an attribute clears its values committing every batch of this many scanned keys
+  public static int DROP_ATTRIBUTE_BATCH_KEYS = 10_000;
+
+  // Key in the table directory marking a dropped attribute whose values are not cleared yet, holding the clear's progress
+  public static String DROPPED_ATTRIBUTE_KEY = "droppedAttr";
+
+  // Number of records an index cursor fetches ahead of the current one
+  public static int INDEX_CURSOR_PREFETCH_WINDOW = 32;
+
+  // How long closing a DBEngine waits for the running tasks of the executor it created
+  public static int ENGINE_SHUTDOWN_TIMEOUT_SECONDS = 30;
 }
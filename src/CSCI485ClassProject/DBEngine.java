@@ -0,0 +1,139 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.fdb.FDBHelper;
+import com.apple.foundationdb.Database;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DBEngine owns one Database handle and one executor, and hands out TableManager, Records, AsyncRecords and Indexes
+ * sharing them together with one catalog cache.
+ *
+ * The executor runs the callbacks of FDB's futures and the engine's own fan-out work, such as index build shards.
+ * The synchronous APIs block on FDB's futures, so it must not cap the number of blocked threads: by default it runs
+ * every task on a new virtual thread on JDK 21+, and on a cached pool of daemon threads on older JDKs.
+ *
+ * The APIs handed out by the engine do not own the database, their closeDatabase() does nothing. Close the engine
+ * once all of them are done, it closes the database and stops the executor it created.
+ */
+public class DBEngine implements AutoCloseable {
+
+  private final Database db;
+
+  private final ExecutorService executor;
+
+  // false if the executor was given to the engine, which leaves it running on close
+  private final boolean isOwningExecutor;
+
+  private final CatalogCache catalog;
+
+  private final TableManagerImpl tableManager;
+
+  private final RecordsImpl records;
+
+  private final IndexesImpl indexes;
+
+  private volatile boolean isClosed = false;
+
+  public DBEngine() {
+    this(newDefaultExecutor(), true);
+  }
+
+  /**
+   * Create an engine running FDB's callbacks and its own work on the given executor, e.g. the executor of a service
+   * handling each request on a virtual thread. The caller keeps ownership of the executor.
+   */
+  public DBEngine(ExecutorService executor) {
+    this(executor, false);
+  }
+
+  private DBEngine(ExecutorService executor, boolean isOwningExecutor) {
+    this.executor = executor;
+    this.isOwningExecutor = isOwningExecutor;
+    db = FDBHelper.initialization(executor);
+    catalog = new CatalogCache();
+    tableManager = new TableManagerImpl(db);
+    records = new RecordsImpl(db, catalog);
+    indexes = new IndexesImpl(db, catalog, executor);
+  }
+
+  public TableManager getTableManager() {
+    checkOpen();
+    return tableManager;
+  }
+
+  public Records getRecords() {
+    checkOpen();
+    return records;
+  }
+
+  /**
+   * Get the non-blocking records API, backed by the same records implementation as getRecords().
+   */
+  public AsyncRecords getAsyncRecords() {
+    checkOpen();
+    return records;
+  }
+
+  public Indexes getIndexes() {
+    checkOpen();
+    return indexes;
+  }
+
+  public ExecutorService getExecutor() {
+    checkOpen();
+    return executor;
+  }
+
+  public boolean isClosed() {
+    return isClosed;
+  }
+
+  /**
+   * Close the database and, if the engine created its executor, stop it, waiting for the running tasks.
+   * Closing twice does nothing.
+   */
+  @Override
+  public synchronized void close() {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    if (isOwningExecutor) {
+      executor.shutdown();
+      try {
+        if (!executor.awaitTermination(DBConf.ENGINE_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+          executor.shutdownNow();
+        }
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+    FDBHelper.close(db);
+  }
+
+  /**
+   * Create a virtual-thread-per-task executor when the JDK has virtual threads, looked up reflectively so that the
+   * engine still builds on older JDKs, and otherwise a cached pool of daemon threads.
+   */
+  static ExecutorService newDefaultExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "db-engine-worker");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  private void checkOpen() {
+    if (isClosed) {
+      throw new IllegalStateException("the engine is closed");
+    }
+  }
+}
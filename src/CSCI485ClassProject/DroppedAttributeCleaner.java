@@ -0,0 +1,104 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.fdb.FDBHelper;
+import com.apple.foundationdb.Database;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.Range;
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DroppedAttributeCleaner clears the stored values of the dropped attributes of a KEY_PER_ATTRIBUTE table.
+ *
+ * Dropping such an attribute marks it in the table directory, in the transaction removing it from the schema. The
+ * records are then scanned in batches, each clearing the values of the attribute it scanned and committing the
+ * records key the next batch resumes from in the mark, so an interrupted clear resumes where it stopped. The mark is
+ * removed once every record is scanned. While it is there, the attribute cannot be added again.
+ */
+public class DroppedAttributeCleaner {
+
+  private final Database db;
+
+  private final String tableName;
+
+  public DroppedAttributeCleaner(Database db, String tableName) {
+    this.db = db;
+    this.tableName = tableName;
+  }
+
+  /**
+   * Mark the attribute dropped, in the transaction dropping it, so that its values are cleared.
+   */
+  public static void markDropped(Transaction tx, DirectorySubspace tableDir, String attributeName) {
+    tx.set(tableDir.pack(TableMetadataTransformer.getDroppedAttributeKeyTuple(attributeName)), new byte[0]);
+  }
+
+  /**
+   * Clear the values of every dropped attribute of the table, resuming where a previous clear stopped.
+   * @return StatusCode
+   */
+  public StatusCode clear() {
+    List<String> tablePath = Collections.singletonList(tableName);
+    boolean[] isDone = new boolean[1];
+    while (!isDone[0]) {
+      StatusCode status = FDBHelper.runTransaction(db, tx -> {
+        isDone[0] = true;
+        if (!FDBHelper.doesSubdirectoryExists(tx, tablePath)) {
+          return StatusCode.SUCCESS;
+        }
+        DirectorySubspace tableDir = FDBHelper.openSubspace(tx, tablePath);
+        List<KeyValue> marks = tx.getRange(Range.startsWith(tableDir.pack(TableMetadataTransformer.getDroppedAttributesKeyTuple())), 1)
+            .asList().join();
+        if (marks.isEmpty()) {
+          return StatusCode.SUCCESS;
+        }
+        isDone[0] = false;
+        clearBatch(tx, tableDir, marks.get(0));
+        return StatusCode.SUCCESS;
+      });
+      if (status != StatusCode.SUCCESS) {
+        return status;
+      }
+    }
+    return StatusCode.SUCCESS;
+  }
+
+  /**
+   * Clear the values of the marked attribute in one batch from the progress on.
+   */
+  private void clearBatch(Transaction tx, DirectorySubspace tableDir, KeyValue mark) {
+    String attributeName = tableDir.unpack(mark.getKey()).getString(1);
+    List<String> recordsPath = Arrays.asList(tableName, DBConf.TABLE_RECORDS_STORE);
+    if (!FDBHelper.doesSubdirectoryExists(tx, recordsPath)) {
+      finish(tx, mark.getKey());
+      return;
+    }
+    DirectorySubspace recordsSubspace = FDBHelper.openSubspace(tx, recordsPath);
+    Range recordsRange = recordsSubspace.range();
+    byte[] begin = mark.getValue().length == 0 ? recordsRange.begin : mark.getValue();
+    List<KeyValue> kvs = tx.getRange(begin, recordsRange.end, DBConf.DROP_ATTRIBUTE_BATCH_KEYS).asList().join();
+    for (KeyValue kv : kvs) {
+      if (attributeName.equals(RecordsTransformer.getAttributeNameFromTuples(recordsSubspace.unpack(kv.getKey()), null))) {
+        tx.clear(kv.getKey());
+      }
+    }
+    if (kvs.size() < DBConf.DROP_ATTRIBUTE_BATCH_KEYS) {
+      finish(tx, mark.getKey());
+      return;
+    }
+    tx.set(mark.getKey(), ByteArrayUtil.keyAfter(kvs.get(kvs.size() - 1).getKey()));
+  }
+
+  /**
+   * Remove the mark. The catalog changes, so that the cached tables allow the attribute to be added again.
+   */
+  private static void finish(Transaction tx, byte[] markKey) {
+    tx.clear(markKey);
+    CatalogCache.bumpVersion(tx);
+  }
+}
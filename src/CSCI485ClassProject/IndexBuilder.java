@@ -0,0 +1,295 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.fdb.FDBHelper;
+import CSCI485ClassProject.models.IndexState;
+import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.TableMetadata;
+import com.apple.foundationdb.Database;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.LocalityUtil;
+import com.apple.foundationdb.Range;
+import com.apple.foundationdb.StreamingMode;
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.async.CloseableAsyncIterator;
+import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.apple.foundationdb.tuple.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * IndexBuilder adds the entries of the existing records of a table to a newly created index.
+ *
+ * The records subspace is split into shards along FDB's storage shard boundaries, and the shards are scanned
+ * concurrently. Each worker commits the index entries of a batch of scanned keys together with the progress of its
+ * shard, so an interrupted build resumes where it stopped. The index is marked READABLE only once every shard is done;
+ * inserts keep the index up to date while it is BUILDING. Every batch reads the index state, so a batch conflicts
+ * with a concurrent dropIndex and the build stops once the index is gone.
+ */
+public class IndexBuilder {
+
+  private final Database db;
+
+  private final String tableName;
+
+  private final IndexTransformer indexTransformer;
+
+  private final RecordsTransformer recordsTransformer;
+
+  // shared executor running the shards, or null to run them on workers of this build
+  private final ExecutorService executor;
+
+  public IndexBuilder(Database db, String tableName, TableMetadata tableMetadata, IndexTransformer indexTransformer) {
+    this(db, tableName, tableMetadata, indexTransformer, null);
+  }
+
+  public IndexBuilder(Database db, String tableName, TableMetadata tableMetadata, IndexTransformer indexTransformer,
+                      ExecutorService executor) {
+    this.db = db;
+    this.tableName = tableName;
+    this.indexTransformer = indexTransformer;
+    this.recordsTransformer = new RecordsTransformer(tableName, tableMetadata);
+    this.executor = executor;
+  }
+
+  public static void setIndexState(Transaction tx, DirectorySubspace indexDir, IndexState state) {
+    tx.set(indexDir.pack(IndexTransformer.getIndexStateKeyTuple()), new Tuple().add(state.ordinal()).pack());
+    CatalogCache.bumpVersion(tx);
+  }
+
+  /**
+   * Read the state of the index, which also adds the state key to the read conflict range of the transaction.
+   * @return the state, or null if the index does not exist anymore
+   */
+  private static IndexState readIndexState(Transaction tx, DirectorySubspace indexDir) {
+    byte[] stateBytes = tx.get(indexDir.pack(IndexTransformer.getIndexStateKeyTuple())).join();
+    if (stateBytes == null) {
+      return null;
+    }
+    return IndexState.values()[(int) Tuple.fromBytes(stateBytes).getLong(0)];
+  }
+
+  /**
+   * Build the index, resuming the unfinished shards of a previous build if there are any.
+   * The index store and the BUILDING state must already be persisted.
+   * @return StatusCode
+   */
+  public StatusCode build() {
+    DirectorySubspace[] subspaces = new DirectorySubspace[3];
+    List<Tuple> shards = new ArrayList<>();
+    StatusCode setupStatus = FDBHelper.runTransaction(db, tx -> {
+      subspaces[0] = FDBHelper.openSubspace(tx, IndexTransformer.getIndexPath(tableName, indexTransformer.getAttrName()));
+      subspaces[1] = FDBHelper.openSubspace(tx, indexTransformer.getIndexStorePath());
+      subspaces[2] = null;
+      if (FDBHelper.doesSubdirectoryExists(tx, recordsTransformer.getTableRecordPath())) {
+        subspaces[2] = FDBHelper.openSubspace(tx, recordsTransformer.getTableRecordPath());
+      }
+
+      // load the shards of an interrupted build, or plan them
+      shards.clear();
+      for (KeyValue kv : tx.getRange(subspaces[0].range(IndexTransformer.getBuildShardPrefixTuple())).asList().join()) {
+        shards.add(Tuple.fromBytes(kv.getValue()));
+      }
+      if (shards.isEmpty() && subspaces[2] != null) {
+        shards.addAll(planShards(subspaces[2]));
+        for (int i = 0; i < shards.size(); i++) {
+          tx.set(subspaces[0].pack(IndexTransformer.getBuildShardKeyTuple(i)), shards.get(i).pack());
+        }
+      }
+      return StatusCode.SUCCESS;
+    });
+    if (setupStatus != StatusCode.SUCCESS) {
+      return setupStatus;
+    }
+    DirectorySubspace indexDir = subspaces[0];
+    DirectorySubspace indexSubspace = subspaces[1];
+    DirectorySubspace recordsSubspace = subspaces[2];
+
+    // scan the unfinished shards, at most DBConf.INDEX_BUILD_WORKERS at a time even on an unbounded executor
+    Queue<Integer> unfinishedShardNos = new ConcurrentLinkedQueue<>();
+    for (int i = 0; i < shards.size(); i++) {
+      Tuple shard = shards.get(i);
+      if (ByteArrayUtil.compareUnsigned(shard.getBytes(2), shard.getBytes(1)) < 0) {
+        unfinishedShardNos.add(i);
+      }
+    }
+    int workerCount = Math.max(1, Math.min(unfinishedShardNos.size(), DBConf.INDEX_BUILD_WORKERS));
+    ExecutorService workers = executor;
+    if (workers == null) {
+      workers = Executors.newFixedThreadPool(workerCount);
+    }
+    List<Future<StatusCode>> results = new ArrayList<>();
+    for (int i = 0; i < workerCount; i++) {
+      results.add(workers.submit(() -> {
+        Integer shardNo;
+        while ((shardNo = unfinishedShardNos.poll()) != null) {
+          StatusCode shardStatus = buildShard(shardNo, shards.get(shardNo), recordsSubspace, indexDir, indexSubspace);
+          if (shardStatus != StatusCode.SUCCESS) {
+            return shardStatus;
+          }
+        }
+        return StatusCode.SUCCESS;
+      }));
+    }
+    if (workers != executor) {
+      workers.shutdown();
+    }
+
+    // the first failure of the workers is the status of the build
+    StatusCode buildStatus = StatusCode.SUCCESS;
+    for (Future<StatusCode> result : results) {
+      StatusCode workerStatus;
+      try {
+        workerStatus = result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        workerStatus = StatusCode.INTERNAL_STORAGE_FAILURE;
+      } catch (ExecutionException e) {
+        workerStatus = StatusCode.INTERNAL_STORAGE_FAILURE;
+      }
+      if (buildStatus == StatusCode.SUCCESS) {
+        buildStatus = workerStatus;
+      }
+    }
+    if (buildStatus != StatusCode.SUCCESS) {
+      // the progress is kept, building the index again resumes it
+      return buildStatus;
+    }
+
+    // every shard is done, make the index readable unless it was dropped meanwhile
+    return FDBHelper.runTransaction(db, tx -> {
+      IndexState state = readIndexState(tx, indexDir);
+      if (state == null) {
+        return StatusCode.INDEX_NOT_FOUND;
+      }
+      if (state == IndexState.BUILDING) {
+        tx.clear(indexDir.range(IndexTransformer.getBuildShardPrefixTuple()));
+        setIndexState(tx, indexDir, IndexState.READABLE);
+      }
+      return StatusCode.SUCCESS;
+    });
+  }
+
+  /**
+   * Split the records subspace at FDB's shard boundaries, moved back to the first key of the record they fall in.
+   * @return the shards as (beginKey, endKey, resumeKey)
+   */
+  private List<Tuple> planShards(DirectorySubspace recordsSubspace) {
+    Range recordsRange = recordsSubspace.range();
+    TreeSet<byte[]> boundaries = new TreeSet<>(ByteArrayUtil.comparator());
+    boundaries.add(recordsRange.begin);
+    boundaries.add(recordsRange.end);
+
+    try (CloseableAsyncIterator<byte[]> boundaryKeys = LocalityUtil.getBoundaryKeys(db, recordsRange.begin, recordsRange.end)) {
+      while (boundaryKeys.hasNext()) {
+        byte[] boundaryKey = boundaryKeys.next();
+        if (!recordsSubspace.contains(boundaryKey)) {
+          continue;
+        }
+        try {
+          Tuple pkValTuple = recordsTransformer.getPrimaryKeyValTupleOfKey(recordsSubspace.unpack(boundaryKey));
+          boundaries.add(recordsSubspace.pack(pkValTuple));
+        } catch (IllegalArgumentException e) {
+          // not a complete record key, skip the boundary
+        }
+      }
+    }
+
+    List<Tuple> shards = new ArrayList<>();
+    byte[] begin = null;
+    for (byte[] boundary : boundaries) {
+      if (begin != null) {
+        shards.add(new Tuple().add(begin).add(boundary).add(begin));
+      }
+      begin = boundary;
+    }
+    return shards;
+  }
+
+  /**
+   * Scan one shard from its resume key, committing the index entries of every batch with the shard's progress.
+   * The scan stops without writing once the index is dropped, or made READABLE by another build.
+   * @return StatusCode
+   */
+  private StatusCode buildShard(int shardNo, Tuple shard, DirectorySubspace recordsSubspace,
+                             DirectorySubspace indexDir, DirectorySubspace indexSubspace) {
+    byte[] shardBegin = shard.getBytes(0);
+    byte[] shardEnd = shard.getBytes(1);
+    byte[] resumeKey = shard.getBytes(2);
+
+    while (ByteArrayUtil.compareUnsigned(resumeKey, shardEnd) < 0) {
+      final byte[] batchBegin = resumeKey;
+      byte[][] nextResumeKeyHolder = new byte[1][];
+      StatusCode batchStatus = FDBHelper.runTransaction(db, tx -> {
+        IndexState state = readIndexState(tx, indexDir);
+        if (state == null) {
+          return StatusCode.INDEX_NOT_FOUND;
+        }
+        if (state != IndexState.BUILDING) {
+          nextResumeKeyHolder[0] = shardEnd;
+          return StatusCode.SUCCESS;
+        }
+        nextResumeKeyHolder[0] = buildShardBatch(tx, shardNo, shardBegin, shardEnd, batchBegin, recordsSubspace, indexDir, indexSubspace);
+        return StatusCode.SUCCESS;
+      });
+      if (batchStatus != StatusCode.SUCCESS) {
+        return batchStatus;
+      }
+      resumeKey = nextResumeKeyHolder[0];
+    }
+    return StatusCode.SUCCESS;
+  }
+
+  /**
+   * Index one batch of the shard starting at the resume key and persist the shard's progress.
+   * @return the resume key of the next batch
+   */
+  private byte[] buildShardBatch(Transaction tx, int shardNo, byte[] shardBegin, byte[] shardEnd, byte[] resumeKey,
+                                 DirectorySubspace recordsSubspace, DirectorySubspace indexDir,
+                                 DirectorySubspace indexSubspace) {
+    String attrName = indexTransformer.getAttrName();
+    List<KeyValue> kvs = tx.getRange(resumeKey, shardEnd, DBConf.INDEX_BUILD_BATCH_KEYS, false, StreamingMode.WANT_ALL).asList().join();
+
+    // the last record of a full batch may continue in the next batch, leave it to the next batch
+    byte[] nextResumeKey = shardEnd;
+    if (kvs.size() == DBConf.INDEX_BUILD_BATCH_KEYS) {
+      KeyValue lastKV = kvs.get(kvs.size() - 1);
+      if (recordsTransformer.isRowPacked()) {
+        nextResumeKey = ByteArrayUtil.keyAfter(lastKV.getKey());
+      } else {
+        byte[] lastRecordBegin = recordsSubspace.pack(recordsTransformer.getPrimaryKeyValTupleOfKey(recordsSubspace.unpack(lastKV.getKey())));
+        int completeCount = 0;
+        while (ByteArrayUtil.compareUnsigned(kvs.get(completeCount).getKey(), lastRecordBegin) < 0) {
+          completeCount++;
+        }
+        if (completeCount > 0) {
+          kvs = kvs.subList(0, completeCount);
+          nextResumeKey = lastRecordBegin;
+        } else {
+          // a single record fills the whole batch, read all of its keys
+          Range lastRecordRange = Range.startsWith(lastRecordBegin);
+          kvs = tx.getRange(lastRecordRange).asList().join();
+          nextResumeKey = lastRecordRange.end;
+        }
+      }
+    }
+
+    for (Record record : recordsTransformer.convertBackToRecords(recordsSubspace, kvs)) {
+      if (record.getMapAttrNameToValue().containsKey(attrName)) {
+        Tuple primaryKeyTuple = recordsTransformer.getPrimaryKeyValTuple(record);
+        FDBHelper.setFDBKVPair(indexSubspace, tx, indexTransformer.convertToIndexKVPair(record, primaryKeyTuple));
+      }
+    }
+    tx.set(indexDir.pack(IndexTransformer.getBuildShardKeyTuple(shardNo)),
+        new Tuple().add(shardBegin).add(shardEnd).add(nextResumeKey).pack());
+    return nextResumeKey;
+  }
+}
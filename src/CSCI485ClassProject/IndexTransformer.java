@@ -0,0 +1,209 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.fdb.FDBHelper;
+import CSCI485ClassProject.fdb.FDBKVPair;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexState;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.Record;
+import com.apple.foundationdb.Range;
+import com.apple.foundationdb.ReadTransaction;
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * IndexTransformer converts records to the entries of an index on one attribute.
+ *
+ * An index entry's value is (). Its key is
+ * - B+ tree index: (attrValue, primaryKey0, primaryKey1..., primaryKeyN)
+ * - hash index: (bucket, attrValue, primaryKey0, primaryKey1..., primaryKeyN), where bucket is the hash of attrValue.
+ *   Keeping the value in the key makes an equality probe read exactly the entries of that value, even on collisions.
+ */
+public class IndexTransformer {
+
+  // Build bookkeeping lives in the subspace of the index path, next to the index store
+  public static String INDEX_STATE_KEY = "state";
+  public static String INDEX_BUILD_SHARD_KEY = "buildShard";
+
+  private final String attrName;
+
+  private final IndexType indexType;
+
+  private final List<String> indexStorePath;
+
+  public IndexTransformer(String tableName, String attrName, IndexType indexType) {
+    this.attrName = attrName;
+    this.indexType = indexType;
+
+    indexStorePath = getIndexPath(tableName, attrName);
+    indexStorePath.add(getIndexStoreName(indexType));
+  }
+
+  public static List<String> getIndexPath(String tableName, String attrName) {
+    List<String> indexPath = new ArrayList<>();
+    indexPath.add(tableName);
+    indexPath.add(attrName);
+    return indexPath;
+  }
+
+  public static String getIndexStoreName(IndexType indexType) {
+    if (indexType == IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX) {
+      return DBConf.B_PLUS_TREE_INDEX_STORE;
+    }
+    return DBConf.HASH_INDEX_STORE;
+  }
+
+  /**
+   * Get the index type from the name of the store under the index path, or null if it is not an index store.
+   */
+  public static IndexType getIndexTypeFromStoreName(String storeName) {
+    if (DBConf.B_PLUS_TREE_INDEX_STORE.equals(storeName)) {
+      return IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX;
+    } else if (DBConf.HASH_INDEX_STORE.equals(storeName)) {
+      return IndexType.NON_CLUSTERED_HASH_INDEX;
+    }
+    return null;
+  }
+
+  public String getAttrName() {
+    return attrName;
+  }
+
+  public IndexType getIndexType() {
+    return indexType;
+  }
+
+  public List<String> getIndexStorePath() {
+    return indexStorePath;
+  }
+
+  /**
+   * Get the hash bucket of a value. The hash is taken over the tuple encoding, so Integer and Long values that are
+   * equal land in the same bucket.
+   */
+  public static int getHashBucket(Object value) {
+    return Math.floorMod(Arrays.hashCode(new Tuple().addObject(value).pack()), DBConf.HASH_INDEX_BUCKETS);
+  }
+
+  public Tuple getIndexKeyTuple(Record record, Tuple primaryKeyTuple) {
+    Object value = record.getValueForGivenAttrName(attrName);
+    Tuple keyTuple = new Tuple();
+    if (indexType == IndexType.NON_CLUSTERED_HASH_INDEX) {
+      keyTuple = keyTuple.add(getHashBucket(value));
+    }
+    return keyTuple.addObject(value).addAll(primaryKeyTuple);
+  }
+
+  public FDBKVPair convertToIndexKVPair(Record record, Tuple primaryKeyTuple) {
+    return new FDBKVPair(indexStorePath, getIndexKeyTuple(record, primaryKeyTuple), new Tuple());
+  }
+
+  /**
+   * Drop the index on the attribute, its entries and its build state, in the given transaction.
+   * @return false if the attribute has no index
+   */
+  public static boolean dropIndex(Transaction tx, String tableName, String attrName) {
+    List<String> indexPath = getIndexPath(tableName, attrName);
+    if (!FDBHelper.doesSubdirectoryExists(tx, indexPath)) {
+      return false;
+    }
+    FDBHelper.dropSubspace(tx, indexPath);
+    return true;
+  }
+
+  public static Tuple getIndexStateKeyTuple() {
+    return new Tuple().add(INDEX_STATE_KEY);
+  }
+
+  /**
+   * Check if the index at the index path can be used by queries. Indexes without a state predate the build state.
+   */
+  public static boolean isIndexReadable(ReadTransaction tx, List<String> indexPath) {
+    DirectorySubspace indexDir = FDBHelper.openSubspace(tx, indexPath);
+    byte[] stateBytes = tx.get(indexDir.pack(getIndexStateKeyTuple())).join();
+    return stateBytes == null || Tuple.fromBytes(stateBytes).getLong(0) == IndexState.READABLE.ordinal();
+  }
+
+  /**
+   * Key of a build shard. Its value is (beginKey, endKey, resumeKey) of the shard in the records subspace.
+   */
+  public static Tuple getBuildShardKeyTuple(int shardNo) {
+    return new Tuple().add(INDEX_BUILD_SHARD_KEY).add(shardNo);
+  }
+
+  public static Tuple getBuildShardPrefixTuple() {
+    return new Tuple().add(INDEX_BUILD_SHARD_KEY);
+  }
+
+  /**
+   * Get the range of the B+ tree index entries whose indexed value satisfies (indexedValue operator value).
+   *
+   * Entries are ordered by the tuple encoding of the indexed value, which follows the value order within a type.
+   */
+  public static Range getBPlusTreeIndexRange(Subspace indexSubspace, ComparisonOperator operator, Object value) {
+    Range indexRange = indexSubspace.range();
+    Tuple valueTuple = new Tuple().addObject(value);
+    // the entries of the value itself are (value, primaryKeys...)
+    Range valueRange = indexSubspace.range(valueTuple);
+
+    if (operator == ComparisonOperator.EQUAL_TO) {
+      return valueRange;
+    } else if (operator == ComparisonOperator.GREATER_THAN) {
+      return new Range(valueRange.end, indexRange.end);
+    } else if (operator == ComparisonOperator.GREATER_THAN_OR_EQUAL_TO) {
+      return new Range(valueRange.begin, indexRange.end);
+    } else if (operator == ComparisonOperator.LESS_THAN) {
+      return new Range(indexRange.begin, valueRange.begin);
+    } else {
+      // <=
+      return new Range(indexRange.begin, valueRange.end);
+    }
+  }
+
+  /**
+   * Get the range of the hash index entries of the given value.
+   */
+  public static Range getHashIndexRange(Subspace indexSubspace, Object value) {
+    return indexSubspace.range(new Tuple().add(getHashBucket(value)).addObject(value));
+  }
+
+  /**
+   * Get the range of the index entries whose indexed value satisfies (indexedValue operator value).
+   * Only equality can be narrowed on the hash index.
+   */
+  public Range getIndexRange(Subspace indexSubspace, ComparisonOperator operator, Object value) {
+    if (indexType == IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX) {
+      return getBPlusTreeIndexRange(indexSubspace, operator, value);
+    } else if (operator == ComparisonOperator.EQUAL_TO) {
+      return getHashIndexRange(indexSubspace, value);
+    }
+    return indexSubspace.range();
+  }
+
+  /**
+   * Get the indexed attribute value of an index entry.
+   */
+  public Object getIndexedValue(Tuple indexKeyTuple) {
+    if (indexType == IndexType.NON_CLUSTERED_HASH_INDEX) {
+      return indexKeyTuple.get(1);
+    }
+    return indexKeyTuple.get(0);
+  }
+
+  /**
+   * Get the primary key values of the record referenced by an index entry.
+   */
+  public Tuple getPrimaryKeyValTuple(Tuple indexKeyTuple) {
+    Tuple primaryKeyTuple = indexKeyTuple.popFront();
+    if (indexType == IndexType.NON_CLUSTERED_HASH_INDEX) {
+      primaryKeyTuple = primaryKeyTuple.popFront();
+    }
+    return primaryKeyTuple;
+  }
+}
@@ -1,127 +1,100 @@
 package CSCI485ClassProject;
 
 import CSCI485ClassProject.fdb.FDBHelper;
-import CSCI485ClassProject.fdb.FDBKVPair;
+import CSCI485ClassProject.models.IndexState;
 import CSCI485ClassProject.models.IndexType;
-import CSCI485ClassProject.models.Record;
 import CSCI485ClassProject.models.TableMetadata;
 import com.apple.foundationdb.Database;
-import com.apple.foundationdb.Transaction;
-import com.apple.foundationdb.directory.DirectorySubspace;
-import com.apple.foundationdb.tuple.Tuple;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public class IndexesImpl implements Indexes{
   private final Database db;
 
+  private final CatalogCache catalog;
+
+  // runs the index builds, null to run every build on its own workers
+  private final ExecutorService executor;
+
+  // false if the database is shared through a DBEngine, which closes it
+  private final boolean isOwningDatabase;
+
   public IndexesImpl() {
     db = FDBHelper.initialization();
+    catalog = new CatalogCache();
+    executor = null;
+    isOwningDatabase = true;
   }
-  private TableMetadata getTableMetadataByTableName(Transaction tx, String tableName) {
-    TableMetadataTransformer tblMetadataTransformer = new TableMetadataTransformer(tableName);
-    List<FDBKVPair> kvPairs = FDBHelper.getAllKeyValuePairsOfSubdirectory(tx,
-            tblMetadataTransformer.getTableAttributeStorePath());
-    TableMetadata tblMetadata = tblMetadataTransformer.convertBackToTableMetadata(kvPairs);
-    return tblMetadata;
+
+  IndexesImpl(Database db, CatalogCache catalog, ExecutorService executor) {
+    this.db = db;
+    this.catalog = catalog;
+    this.executor = executor;
+    isOwningDatabase = false;
   }
 
   @Override
   public StatusCode createIndex(String tableName, String attrName, IndexType indexType) {
-    Transaction tx = FDBHelper.openTransaction(db);
-
-    // Create path for index structure
-    List<String> indexPath = new ArrayList<>();
-    indexPath.add(tableName);
-    indexPath.add(attrName);
-
-    RecordsImpl recordsImpl = new RecordsImpl();
-    // Check if index on attribute already exists
-    if (FDBHelper.doesSubdirectoryExists(tx, indexPath)) {
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.INDEX_ALREADY_EXISTS_ON_ATTRIBUTE;
-    }
+    List<String> indexPath = IndexTransformer.getIndexPath(tableName, attrName);
+    IndexTransformer indexTransformer = new IndexTransformer(tableName, attrName, indexType);
+
+    TableMetadata[] tblMetadataHolder = new TableMetadata[1];
+    StatusCode status = FDBHelper.runTransaction(db, tx -> {
+      CatalogCache.TableEntry tableEntry = catalog.getTable(tx, tableName);
+
+      // Check if index on attribute already exists. An unfinished build of the same index is resumed.
+      if (FDBHelper.doesSubdirectoryExists(tx, indexPath)) {
+        boolean isResumable = tableEntry != null && !IndexTransformer.isIndexReadable(tx, indexPath)
+            && FDBHelper.doesSubdirectoryExists(tx, indexTransformer.getIndexStorePath());
+        if (!isResumable) {
+          return StatusCode.INDEX_ALREADY_EXISTS_ON_ATTRIBUTE;
+        }
+        tblMetadataHolder[0] = tableEntry.getTableMetadata();
+        return StatusCode.SUCCESS;
+      }
 
-    // Create hash index
-    if (indexType == IndexType.NON_CLUSTERED_HASH_INDEX) {
-      //System.out.println("Creating Non clustered hash index");
-
-      // Open cursor on main data to loop through it
-      RecordsImpl records = new RecordsImpl();
-      Cursor cursor = records.openCursor(tableName, Cursor.Mode.READ);
-      Record currRecord = records.getFirst(cursor);
-      boolean firstProcessed = false;
-      // Upload to FDB. Add "hash" to path to specify index type
-      indexPath.add("hash");
-      FDBHelper.createOrOpenSubspace(tx, indexPath);
-      FDBHelper.commitTransaction(tx);
-
-      while (cursor.hasNext() || !firstProcessed) {
-        if (!firstProcessed) firstProcessed = true;
-        //System.out.println("here");
-        else currRecord = records.getNext(cursor);
-        // Add record to index
-        StatusCode status = recordsImpl.addRecordToIndex(tableName, currRecord, attrName);
-        if (status == StatusCode.INDEX_NOT_FOUND) System.out.println("Index not found. This should never happen");
+      // Check if the table and the attribute exist
+      if (tableEntry == null) {
+        return StatusCode.TABLE_NOT_FOUND;
       }
-      records.closeDatabase();
-    }
-    // Create B+ tree index
-    else {
-      // Open cursor on main data to loop through it
-      RecordsImpl records = new RecordsImpl();
-      Cursor cursor = records.openCursor(tableName, Cursor.Mode.READ);
-      Record currRecord = records.getFirst(cursor);
-      boolean firstProcessed = false;
-      // Upload to FDB. Add "bplus" to path to specify index type
-      indexPath.add("bplus");
-      FDBHelper.createOrOpenSubspace(tx, indexPath);
-      FDBHelper.commitTransaction(tx);
-
-      while (cursor.hasNext() || !firstProcessed) {
-        if (!firstProcessed) firstProcessed = true;
-        //System.out.println("here");
-        else currRecord = records.getNext(cursor);
-        // Add record to index
-        StatusCode status = recordsImpl.addRecordToIndex(tableName, currRecord, attrName);
-        if (status == StatusCode.INDEX_NOT_FOUND) System.out.println("Index not found. This should never happen");
+      TableMetadata tblMetadata = tableEntry.getTableMetadata();
+      if (!tblMetadata.doesAttributeExist(attrName)) {
+        return StatusCode.ATTRIBUTE_NOT_FOUND;
       }
-      records.closeDatabase();
+
+      // Create the index structure, not readable until the build finishes. The store name under the index path
+      // specifies the index type. From now on inserts maintain the index.
+      FDBHelper.createOrOpenSubspace(tx, indexTransformer.getIndexStorePath());
+      IndexBuilder.setIndexState(tx, FDBHelper.openSubspace(tx, indexPath), IndexState.BUILDING);
+      tblMetadataHolder[0] = tblMetadata;
+      return StatusCode.SUCCESS;
+    });
+    if (status != StatusCode.SUCCESS) {
+      return status;
     }
-    recordsImpl.closeDatabase();
-    return StatusCode.SUCCESS;
+
+    // Add the existing records to the index
+    return new IndexBuilder(db, tableName, tblMetadataHolder[0], indexTransformer, executor).build();
   }
 
 
 
   @Override
   public StatusCode dropIndex(String tableName, String attrName) {
-    Transaction tx = FDBHelper.openTransaction(db);
-
-    List<String> indexPath = new ArrayList<>();
-    indexPath.add(tableName);
-    indexPath.add(attrName);
-
-    FDBHelper.dropSubspace(tx, indexPath);
-
-    if (!FDBHelper.doesSubdirectoryExists(tx, indexPath)) {
-      if (FDBHelper.commitTransaction(tx)) {
-        return StatusCode.SUCCESS;
+    return FDBHelper.runTransaction(db, tx -> {
+      if (!IndexTransformer.dropIndex(tx, tableName, attrName)) {
+        return StatusCode.INDEX_NOT_FOUND;
       }
-      else FDBHelper.abortTransaction(tx);
-    }
-    else {
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.INDEX_NOT_FOUND;
-    }
-    FDBHelper.abortTransaction(tx);
-    return StatusCode.INDEX_NOT_FOUND;
+      CatalogCache.bumpVersion(tx);
+      return StatusCode.SUCCESS;
+    });
   }
   @Override
   public void closeDatabase() {
-    FDBHelper.close(db);
+    if (isOwningDatabase) {
+      FDBHelper.close(db);
+    }
   }
 
 }
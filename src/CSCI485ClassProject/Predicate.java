@@ -0,0 +1,395 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.CompactRecord;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.TableMetadata;
+import CSCI485ClassProject.utils.ComparisonUtils;
+import com.apple.foundationdb.tuple.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Predicate filters the records of a table: a comparison of an attribute with a value, or an AND/OR of predicates.
+ *
+ * A record that does not have the compared attribute does not satisfy the comparison.
+ */
+public abstract class Predicate {
+
+  /**
+   * Evaluator is a predicate compiled against the slots of a table's layout. Each comparison becomes its own evaluator
+   * class for its attribute type and operator, so the check of a row does not branch on either.
+   */
+  public interface Evaluator {
+    boolean matches(CompactRecord row);
+  }
+
+  /**
+   * Comparison checks the value of one attribute against a constant, e.g. Salary < 1000.
+   */
+  public static class Comparison extends Predicate {
+    private final String attrName;
+    private final ComparisonOperator operator;
+    private final Record.Value value = new Record.Value();
+    private final boolean isValueSupported;
+    // the value unboxed, for comparing the slots of compact records
+    private final long longValue;
+    private final double doubleValue;
+
+    private Comparison(String attrName, ComparisonOperator operator, Object value) {
+      this.attrName = attrName;
+      this.operator = operator;
+      isValueSupported = value != null && this.value.setValue(value) == StatusCode.SUCCESS;
+      longValue = isValueSupported && this.value.getType() == AttributeType.INT ? ((Number) value).longValue() : 0;
+      doubleValue = isValueSupported && this.value.getType() == AttributeType.DOUBLE ? (Double) value : 0;
+    }
+
+    public String getAttrName() {
+      return attrName;
+    }
+
+    public ComparisonOperator getOperator() {
+      return operator;
+    }
+
+    public Record.Value getValue() {
+      return value;
+    }
+
+    @Override
+    public boolean matches(Function<String, Object> attrValues) {
+      return compareValue(attrValues.apply(attrName), value, operator);
+    }
+
+    @Override
+    public boolean matches(CompactRecord row) {
+      int slot = row.getLayout().getSlot(attrName);
+      if (slot < 0) {
+        return false;
+      }
+      if (row.isLong(slot) && value.getType() == AttributeType.INT) {
+        return ComparisonUtils.compareTwoLongs(row.getLong(slot), longValue, operator);
+      }
+      if (row.isDouble(slot) && value.getType() == AttributeType.DOUBLE) {
+        return ComparisonUtils.compareTwoDoubles(row.getDouble(slot), doubleValue, operator);
+      }
+      return compareValue(row.getValue(slot), value, operator);
+    }
+
+    @Override
+    public Evaluator compile(CompactRecord.Layout layout) {
+      int slot = layout.getSlot(attrName);
+      if (slot < 0 || !isValueSupported || layout.getAttrType(slot) != value.getType()) {
+        return this::matches;
+      }
+      if (value.getType() == AttributeType.INT) {
+        return compileLong(slot);
+      }
+      if (value.getType() == AttributeType.DOUBLE) {
+        return compileDouble(slot);
+      }
+      return compileString(slot);
+    }
+
+    private Evaluator compileLong(int slot) {
+      long val = longValue;
+      switch (operator) {
+        case GREATER_THAN_OR_EQUAL_TO:
+          return row -> row.isPrimitive(slot) ? row.getLong(slot) >= val : matchesBoxed(row, slot);
+        case GREATER_THAN:
+          return row -> row.isPrimitive(slot) ? row.getLong(slot) > val : matchesBoxed(row, slot);
+        case EQUAL_TO:
+          return row -> row.isPrimitive(slot) ? row.getLong(slot) == val : matchesBoxed(row, slot);
+        case LESS_THAN:
+          return row -> row.isPrimitive(slot) ? row.getLong(slot) < val : matchesBoxed(row, slot);
+        default:
+          return row -> row.isPrimitive(slot) ? row.getLong(slot) <= val : matchesBoxed(row, slot);
+      }
+    }
+
+    private Evaluator compileDouble(int slot) {
+      double val = doubleValue;
+      switch (operator) {
+        case GREATER_THAN_OR_EQUAL_TO:
+          return row -> row.isPrimitive(slot) ? row.getDouble(slot) >= val : matchesBoxed(row, slot);
+        case GREATER_THAN:
+          return row -> row.isPrimitive(slot) ? row.getDouble(slot) > val : matchesBoxed(row, slot);
+        case EQUAL_TO:
+          return row -> row.isPrimitive(slot) ? row.getDouble(slot) == val : matchesBoxed(row, slot);
+        case LESS_THAN:
+          return row -> row.isPrimitive(slot) ? row.getDouble(slot) < val : matchesBoxed(row, slot);
+        default:
+          return row -> row.isPrimitive(slot) ? row.getDouble(slot) <= val : matchesBoxed(row, slot);
+      }
+    }
+
+    private Evaluator compileString(int slot) {
+      String val = (String) value.getValue();
+      switch (operator) {
+        case GREATER_THAN_OR_EQUAL_TO:
+          return row -> {
+            Object recVal = row.getValue(slot);
+            return recVal instanceof String ? ((String) recVal).compareTo(val) >= 0 : matchesBoxed(row, slot);
+          };
+        case GREATER_THAN:
+          return row -> {
+            Object recVal = row.getValue(slot);
+            return recVal instanceof String ? ((String) recVal).compareTo(val) > 0 : matchesBoxed(row, slot);
+          };
+        case EQUAL_TO:
+          // the tuple encoding of a string is unique, a value still packed is compared without decoding it
+          byte[] packedVal = Tuple.from(val).pack();
+          return row -> {
+            byte[] rawValue = row.getRawValue(slot);
+            if (rawValue != null) {
+              return Arrays.equals(rawValue, packedVal);
+            }
+            return val.equals(row.getValue(slot));
+          };
+        case LESS_THAN:
+          return row -> {
+            Object recVal = row.getValue(slot);
+            return recVal instanceof String ? ((String) recVal).compareTo(val) < 0 : matchesBoxed(row, slot);
+          };
+        default:
+          return row -> {
+            Object recVal = row.getValue(slot);
+            return recVal instanceof String ? ((String) recVal).compareTo(val) <= 0 : matchesBoxed(row, slot);
+          };
+      }
+    }
+
+    /**
+     * Compare a value not stored as its attribute's type, or a missing one.
+     */
+    private boolean matchesBoxed(CompactRecord row, int slot) {
+      return compareValue(row.getValue(slot), value, operator);
+    }
+
+    @Override
+    void collectAttrNames(Set<String> attrNames) {
+      attrNames.add(attrName);
+    }
+
+    @Override
+    void collectConjuncts(List<Comparison> conjuncts) {
+      conjuncts.add(this);
+    }
+
+    @Override
+    public boolean isValid(TableMetadata tableMetadata) {
+      // a value of another type than the attribute's cannot be compared with the attribute's values
+      return attrName != null && operator != null && isValueSupported && tableMetadata.doesAttributeExist(attrName)
+          && tableMetadata.getAttributes().get(attrName) == value.getType();
+    }
+
+    @Override
+    public String toString() {
+      return attrName + " " + operator + " " + value.getValue();
+    }
+  }
+
+  private static class Combination extends Predicate {
+    private final List<Predicate> predicates;
+    private final boolean isAnd;
+
+    private Combination(boolean isAnd, Predicate... predicates) {
+      this.isAnd = isAnd;
+      this.predicates = predicates == null ? Collections.emptyList() : Arrays.asList(predicates);
+    }
+
+    @Override
+    public boolean matches(Function<String, Object> attrValues) {
+      for (Predicate predicate : predicates) {
+        if (predicate.matches(attrValues) != isAnd) {
+          return !isAnd;
+        }
+      }
+      return isAnd;
+    }
+
+    @Override
+    public boolean matches(CompactRecord row) {
+      for (Predicate predicate : predicates) {
+        if (predicate.matches(row) != isAnd) {
+          return !isAnd;
+        }
+      }
+      return isAnd;
+    }
+
+    @Override
+    public Evaluator compile(CompactRecord.Layout layout) {
+      Evaluator[] evaluators = new Evaluator[predicates.size()];
+      for (int i = 0; i < evaluators.length; i++) {
+        evaluators[i] = predicates.get(i).compile(layout);
+      }
+      if (evaluators.length == 1) {
+        return evaluators[0];
+      }
+      if (evaluators.length == 2) {
+        Evaluator first = evaluators[0];
+        Evaluator second = evaluators[1];
+        return isAnd ? row -> first.matches(row) && second.matches(row) : row -> first.matches(row) || second.matches(row);
+      }
+      if (isAnd) {
+        return row -> {
+          for (Evaluator evaluator : evaluators) {
+            if (!evaluator.matches(row)) {
+              return false;
+            }
+          }
+          return true;
+        };
+      }
+      return row -> {
+        for (Evaluator evaluator : evaluators) {
+          if (evaluator.matches(row)) {
+            return true;
+          }
+        }
+        return false;
+      };
+    }
+
+    @Override
+    void collectAttrNames(Set<String> attrNames) {
+      for (Predicate predicate : predicates) {
+        predicate.collectAttrNames(attrNames);
+      }
+    }
+
+    @Override
+    void collectConjuncts(List<Comparison> conjuncts) {
+      // the comparisons under an OR are not satisfied by every matching record
+      if (isAnd) {
+        for (Predicate predicate : predicates) {
+          predicate.collectConjuncts(conjuncts);
+        }
+      }
+    }
+
+    @Override
+    public boolean isValid(TableMetadata tableMetadata) {
+      if (predicates.isEmpty()) {
+        return false;
+      }
+      for (Predicate predicate : predicates) {
+        if (predicate == null || !predicate.isValid(tableMetadata)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder res = new StringBuilder("(");
+      for (int i = 0; i < predicates.size(); i++) {
+        if (i > 0) {
+          res.append(isAnd ? " AND " : " OR ");
+        }
+        res.append(predicates.get(i));
+      }
+      return res.append(')').toString();
+    }
+  }
+
+  public static Predicate compare(String attrName, ComparisonOperator operator, Object value) {
+    return new Comparison(attrName, operator, value);
+  }
+
+  /**
+   * Get the predicate satisfied by the records satisfying all the given predicates.
+   */
+  public static Predicate and(Predicate... predicates) {
+    return new Combination(true, predicates);
+  }
+
+  /**
+   * Get the predicate satisfied by the records satisfying any of the given predicates.
+   */
+  public static Predicate or(Predicate... predicates) {
+    return new Combination(false, predicates);
+  }
+
+  /**
+   * Check the predicate against the attribute values of a record, looked up by name. The lookup returns null for an
+   * attribute the record does not have, and is only called for the attributes the predicate references.
+   */
+  public abstract boolean matches(Function<String, Object> attrValues);
+
+  /**
+   * Check the predicate against the slots of a compact record, comparing INT and DOUBLE values unboxed.
+   */
+  public abstract boolean matches(CompactRecord row);
+
+  /**
+   * Compile the predicate against the slots of the layout, once per scan, into an evaluator matching the same rows.
+   */
+  public abstract Evaluator compile(CompactRecord.Layout layout);
+
+  public boolean matches(Record record) {
+    if (record.getCompactRecord() != null) {
+      return matches(record.getCompactRecord());
+    }
+    return matches(record::getValueForGivenAttrName);
+  }
+
+  /**
+   * Check that every compared attribute exists in the table and every compared value has the attribute's type.
+   */
+  public abstract boolean isValid(TableMetadata tableMetadata);
+
+  abstract void collectAttrNames(Set<String> attrNames);
+
+  abstract void collectConjuncts(List<Comparison> conjuncts);
+
+  /**
+   * Get the attributes the predicate references.
+   */
+  public Set<String> getAttrNames() {
+    Set<String> attrNames = new LinkedHashSet<>();
+    collectAttrNames(attrNames);
+    return attrNames;
+  }
+
+  /**
+   * Get the comparisons every record satisfying the predicate satisfies, the ones an index can narrow a scan to.
+   */
+  public List<Comparison> getConjuncts() {
+    List<Comparison> conjuncts = new ArrayList<>();
+    collectConjuncts(conjuncts);
+    return conjuncts;
+  }
+
+  /**
+   * Check if the value of a record satisfies the comparison, false if the record does not have the attribute.
+   */
+  static boolean compareValue(Object recVal, Record.Value predicateAttributeValue, ComparisonOperator predicateOperator) {
+    Record.Value value = new Record.Value();
+    value.setValue(recVal);
+    AttributeType recType = value.getType();
+    if (recVal == null || recType == null) {
+      // attribute not exists in this record
+      return false;
+    }
+
+    if (recType == AttributeType.INT) {
+      return ComparisonUtils.compareTwoINT(recVal, predicateAttributeValue.getValue(), predicateOperator);
+    } else if (recType == AttributeType.DOUBLE){
+      return ComparisonUtils.compareTwoDOUBLE(recVal, predicateAttributeValue.getValue(), predicateOperator);
+    } else if (recType == AttributeType.VARCHAR) {
+      return ComparisonUtils.compareTwoVARCHAR(recVal, predicateAttributeValue.getValue(), predicateOperator);
+    }
+
+    return false;
+  }
+}
@@ -0,0 +1,203 @@
+package CSCI485ClassProject;
+
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.CompactRecord;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.apple.foundationdb.tuple.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RecordAssembler puts together the records stored one attribute per key, (primaryKeyValues..., attrName), from the
+ * consecutive keys of a scan, allocating per record instead of per key.
+ *
+ * Only the first key of a record is unpacked. The next keys belong to the same record if they start with the same
+ * packed primary key bytes, and their attribute is the table's attribute whose packed name is the rest of the key.
+ * Values are kept as raw bytes until they are decoded into the column slots of a CompactRecord, INT and DOUBLE values
+ * straight from their bytes without boxing. The buffers are reused by every record.
+ */
+public class RecordAssembler {
+
+  private static final int INT_ZERO_CODE = 0x14;
+  private static final int DOUBLE_CODE = 0x21;
+
+  private final DirectorySubspace recordsSubspace;
+
+  private final CompactRecord.Layout layout;
+
+  // the packed names of the attributes by slot, and the slots in the order of the packed names, the order of the keys
+  private final byte[][] packedAttrNames;
+  private final int[] slotsInKeyOrder;
+
+  // the first key of the current record, whose first primaryKeyLength bytes are the packed primary key
+  private byte[] firstKey = null;
+  private int primaryKeyLength = 0;
+  private Tuple primaryKeyValTuple = null;
+
+  // the raw values of the current record's attributes, by slot
+  private final byte[][] rawValues;
+  private final int[] presentSlots;
+  private int presentCount = 0;
+  private int lastKeyOrder = -1;
+
+  public RecordAssembler(DirectorySubspace recordsSubspace, CompactRecord.Layout layout) {
+    this.recordsSubspace = recordsSubspace;
+    this.layout = layout;
+
+    int slotCount = layout.getSlotCount();
+    packedAttrNames = new byte[slotCount][];
+    List<Integer> slots = new ArrayList<>();
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (layout.getAttrName(slot) != null) {
+        packedAttrNames[slot] = Tuple.from(layout.getAttrName(slot)).pack();
+        slots.add(slot);
+      }
+    }
+    slots.sort((a, b) -> ByteArrayUtil.compareUnsigned(packedAttrNames[a], packedAttrNames[b]));
+    slotsInKeyOrder = slots.stream().mapToInt(Integer::intValue).toArray();
+
+    rawValues = new byte[slotCount][];
+    presentSlots = new int[slotCount];
+  }
+
+  /**
+   * Start a new record with its first key.
+   */
+  public void startRecord(KeyValue kv) {
+    clear();
+    byte[] key = kv.getKey();
+    Tuple keyTuple = recordsSubspace.unpack(key);
+    String attrName = RecordsTransformer.getAttributeNameFromTuples(keyTuple, null);
+    primaryKeyValTuple = keyTuple.popBack();
+
+    int slot = layout.getSlot(attrName);
+    int packedAttrNameLength = slot >= 0 ? packedAttrNames[slot].length : Tuple.from(attrName).pack().length;
+    firstKey = key;
+    primaryKeyLength = key.length - packedAttrNameLength;
+    // keys of attributes missing from the schema are values of a dropped attribute not cleared yet
+    if (slot >= 0) {
+      putSlot(slot, kv.getValue());
+    }
+  }
+
+  /**
+   * Add a key to the current record.
+   * @return false if the key belongs to another record, which is left unchanged
+   */
+  public boolean add(KeyValue kv) {
+    byte[] key = kv.getKey();
+    // tuple elements delimit themselves, a key starting with the packed primary key has the same primary key values
+    if (key.length <= primaryKeyLength || !Arrays.equals(key, 0, primaryKeyLength, firstKey, 0, primaryKeyLength)) {
+      return false;
+    }
+    int slot = findSlot(key);
+    if (slot >= 0) {
+      putSlot(slot, kv.getValue());
+    }
+    return true;
+  }
+
+  /**
+   * Find the slot of the attribute a key of the current record stores, -1 if it is not in the schema. Keys come in the
+   * order of the packed names, or in the reverse order, so the neighbours of the last key's attribute are tried first.
+   */
+  private int findSlot(byte[] key) {
+    int nameLength = key.length - primaryKeyLength;
+    if (lastKeyOrder + 1 < slotsInKeyOrder.length && isPackedAttrName(key, nameLength, lastKeyOrder + 1)) {
+      return slotsInKeyOrder[++lastKeyOrder];
+    }
+    if (lastKeyOrder - 1 >= 0 && isPackedAttrName(key, nameLength, lastKeyOrder - 1)) {
+      return slotsInKeyOrder[--lastKeyOrder];
+    }
+    for (int keyOrder = 0; keyOrder < slotsInKeyOrder.length; keyOrder++) {
+      if (isPackedAttrName(key, nameLength, keyOrder)) {
+        lastKeyOrder = keyOrder;
+        return slotsInKeyOrder[keyOrder];
+      }
+    }
+    return -1;
+  }
+
+  private boolean isPackedAttrName(byte[] key, int nameLength, int keyOrder) {
+    byte[] packedAttrName = packedAttrNames[slotsInKeyOrder[keyOrder]];
+    return packedAttrName.length == nameLength
+        && Arrays.equals(key, primaryKeyLength, key.length, packedAttrName, 0, nameLength);
+  }
+
+  private void putSlot(int slot, byte[] rawValue) {
+    if (rawValues[slot] == null) {
+      presentSlots[presentCount++] = slot;
+    }
+    rawValues[slot] = rawValue;
+  }
+
+  private void clear() {
+    for (int i = 0; i < presentCount; i++) {
+      rawValues[presentSlots[i]] = null;
+    }
+    presentCount = 0;
+    lastKeyOrder = -1;
+    firstKey = null;
+    primaryKeyValTuple = null;
+  }
+
+  public boolean isEmpty() {
+    return firstKey == null;
+  }
+
+  public Tuple getPrimaryKeyValTuple() {
+    return primaryKeyValTuple;
+  }
+
+  /**
+   * Decode the values of the given slots of the current record into the compact record, all of them if slots is null.
+   * Slots the compact record already holds are not decoded again.
+   */
+  public void decodeInto(CompactRecord row, boolean[] slots) {
+    for (int i = 0; i < presentCount; i++) {
+      int slot = presentSlots[i];
+      if ((slots == null || slots[slot]) && !row.isPresent(slot)) {
+        decodeValue(row, slot, rawValues[slot]);
+      }
+    }
+  }
+
+  /**
+   * Decode a packed value tuple (value) into the slot. Integers of up to 8 bytes and doubles are decoded from their
+   * tuple encoding directly, the other values are kept packed until they are read.
+   */
+  private static void decodeValue(CompactRecord row, int slot, byte[] rawValue) {
+    int code = rawValue[0] & 0xff;
+    int intLength = Math.abs(code - INT_ZERO_CODE);
+    if (intLength <= Long.BYTES && rawValue.length == intLength + 1) {
+      long value = 0;
+      for (int i = 1; i <= intLength; i++) {
+        value = (value << 8) | (rawValue[i] & 0xff);
+      }
+      if (code < INT_ZERO_CODE) {
+        // negative integers are stored as the one's complement of their magnitude
+        value -= intLength == Long.BYTES ? -1L : (1L << (8 * intLength)) - 1;
+      }
+      if (row.getLayout().getAttrType(slot) == AttributeType.INT) {
+        row.setLong(slot, value);
+        return;
+      }
+    } else if (code == DOUBLE_CODE && rawValue.length == 1 + Double.BYTES) {
+      long bits = 0;
+      for (int i = 1; i <= Double.BYTES; i++) {
+        bits = (bits << 8) | (rawValue[i] & 0xff);
+      }
+      // positive doubles have their sign bit flipped, negative ones all their bits
+      bits = bits < 0 ? bits ^ Long.MIN_VALUE : ~bits;
+      if (row.getLayout().getAttrType(slot) == AttributeType.DOUBLE) {
+        row.setDouble(slot, Double.longBitsToDouble(bits));
+        return;
+      }
+    }
+    row.setRawValue(slot, rawValue);
+  }
+}
@@ -2,6 +2,9 @@ package CSCI485ClassProject;
 
 import CSCI485ClassProject.models.ComparisonOperator;
 import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.ScanHint;
+
+import java.util.List;
 
 /**
  * DataRecordManager manages the data stored by the certain table. It provides interfaces to
@@ -14,7 +17,8 @@ public interface Records {
    *
    * Given primary keys and values must match the specification in TableMetadata.
    *
-   * If given attributes does not exist in the schema, attributes should be added to the schema.
+   * If given attributes does not exist in the schema, attributes should be added to the schema. An attribute dropped
+   * before is added once its stored values are cleared, ATTRIBUTE_DROP_PENDING is returned if they cannot be.
    *
    * @param tableName the target tableName
    * @param primaryKeys primary keys
@@ -25,6 +29,21 @@ public interface Records {
    */
   StatusCode insertRecord(String tableName, String[] primaryKeys, Object[] primaryKeysValues, String[] attrNames, Object[] attrValues);
 
+  /**
+   * Insert a batch of new rows into the table.
+   *
+   * Each record must contain values of all primary keys of the table. Other attributes follow the same rules as
+   * insertRecord, and the schema is validated once for the whole batch. Rows are written, together with their
+   * index entries, in as few transactions as FDB's transaction limits allow.
+   *
+   * The rows are checked batch by batch: if a batch fails, the batches committed before it remain inserted.
+   *
+   * @param tableName the target tableName
+   * @param records the rows to insert
+   * @return StatusCode
+   */
+  StatusCode insertRecords(String tableName, List<Record> records);
+
   /**
    * Open a cursor that iterates a table with given mode.
    *
@@ -36,6 +55,17 @@ public interface Records {
    */
   Cursor openCursor(String tableName, Cursor.Mode mode);
 
+  /**
+   * Open a cursor that iterates a table with given mode, reading the records in batches fit for the expected scan size.
+   *
+   * @param tableName the target table's name
+   * @param mode the mode of cursor: READ/READ_WRITE
+   * @param scanHint how many records the scan is expected to read
+   * @param rowLimit the maximum number of records the cursor returns, 0 for no limit
+   * @return the cursor
+   */
+  Cursor openCursor(String tableName, Cursor.Mode mode, ScanHint scanHint, int rowLimit);
+
   /**
    * Open a cursor that iterates a table with a certain predicate.
    *
@@ -52,6 +82,54 @@ public interface Records {
    */
   Cursor openCursor(String tableName, String attrName, Object attrValue, ComparisonOperator operator, Cursor.Mode mode, boolean isUsingIndex);
 
+  /**
+   * Open a cursor that iterates a table with a certain predicate, reading the records in batches fit for the expected
+   * scan size.
+   *
+   * @param scanHint how many records the scan is expected to read
+   * @param rowLimit the maximum number of records the cursor returns, 0 for no limit
+   * @return Cursor
+   */
+  Cursor openCursor(String tableName, String attrName, Object attrValue, ComparisonOperator operator, Cursor.Mode mode,
+                    boolean isUsingIndex, ScanHint scanHint, int rowLimit);
+
+  /**
+   * Open a cursor that iterates the records of a table satisfying a predicate, e.g.
+   * Predicate.and(Predicate.compare("Salary", GREATER_THAN, 1000L), Predicate.compare("Dept", EQUAL_TO, "Sales")).
+   *
+   * The predicate is evaluated while the records are read, and a record it rejects is not decoded beyond the attributes
+   * the predicate references. A READ cursor scans through the readable index narrowing the scan the most among the
+   * comparisons every matching record satisfies, and scans the table if there is no such index.
+   *
+   * @param tableName the target tableName
+   * @param predicate the predicate the records must satisfy, null for every record
+   * @param mode the mode of cursor: READ/READ_WRITE
+   * @param scanHint how many records the scan is expected to read
+   * @param rowLimit the maximum number of records the cursor returns, 0 for no limit
+   * @return Cursor, null if the table does not exist, or if the predicate compares an attribute the table does not have
+   *    or a value of another type than the attribute's
+   */
+  Cursor openCursor(String tableName, Predicate predicate, Cursor.Mode mode, ScanHint scanHint, int rowLimit);
+
+  /**
+   * Open a READ cursor that returns only the given attributes of the records satisfying a predicate.
+   *
+   * The values of the other attributes are never decoded. Through an index, a record stored one attribute per key is
+   * read by point reads of the projected attributes and of the ones the predicate references, instead of all its keys.
+   * The returned records only have the projected attributes, so they cannot be updated or deleted through the cursor.
+   *
+   * @param tableName the target tableName
+   * @param projection the attributes of the returned records, null for all of them
+   * @param predicate the predicate the records must satisfy, null for every record
+   * @param mode the mode of cursor, must be READ if there is a projection
+   * @param scanHint how many records the scan is expected to read
+   * @param rowLimit the maximum number of records the cursor returns, 0 for no limit
+   * @return Cursor, null if the table does not exist, if a projected attribute does not exist in the table, if the
+   *    cursor with a projection is not READ, or if the predicate is invalid for the table
+   */
+  Cursor openCursor(String tableName, String[] projection, Predicate predicate, Cursor.Mode mode, ScanHint scanHint,
+                    int rowLimit);
+
   /**
    * Seek the cursor to the first qualified record.
    *
@@ -92,7 +170,11 @@ public interface Records {
    * Update the record that the cursor is pointing at, with new attribute values. Cursor must be in READ_WRITE mode.
    *
    * If the given attribute(s) do not exist in the record, the update should fail and return CURSOR_UPDATE_ATTRIBUTE_NOT_FOUND.
-   * Part3: If index structures are built on some attributes, they should also be updated
+   * A value not matching the type of its attribute returns DATA_RECORD_CREATION_ATTRIBUTE_TYPE_UNMATCHED, and a new
+   * primary key that another record already has returns DATA_RECORD_PRIMARY_KEYS_DUPLICATED.
+   * An index cursor cannot change its indexed attribute or the primary key, it returns CURSOR_UPDATE_INDEXED_ATTRIBUTE.
+   * Part3: If index structures are built on some attributes, they should also be updated. The update fails with
+   * TABLE_NOT_FOUND if the table's indexes cannot be resolved, e.g. the table was dropped, rather than leave them stale.
    * @param cursor the target cursor
    * @param attrNames the attribute names
    * @param attrValues the corresponding attribute values
@@ -129,6 +211,10 @@ public interface Records {
    *
    * Part3: If an index exists on the attribute referenced by updateRecord, the index should also be updated
    *
+   * Every record having all the given values is deleted. Large deletions are committed in several transactions,
+   * each removing its records together with their index entries. At least one value must be given, and no value may
+   * be null, otherwise DATA_RECORD_CREATION_ATTRIBUTES_INVALID is returned.
+   *
    * @param tableName the target table name
    * @param attrNames the attribute names
    * @param attrValues the corresponding attribute values
@@ -2,66 +2,199 @@ package CSCI485ClassProject;
 
 import CSCI485ClassProject.fdb.FDBHelper;
 import CSCI485ClassProject.fdb.FDBKVPair;
+import CSCI485ClassProject.metrics.Metrics;
+import CSCI485ClassProject.metrics.TraceSpan;
 import CSCI485ClassProject.models.AttributeType;
 import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexType;
 import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.ScanHint;
 import CSCI485ClassProject.models.TableMetadata;
+import CSCI485ClassProject.utils.ComparisonUtils;
 import com.apple.foundationdb.Database;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.Range;
+import com.apple.foundationdb.ReadTransaction;
 import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.async.AsyncIterator;
 import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
 import com.apple.foundationdb.tuple.Tuple;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-public class RecordsImpl implements Records{
+public class RecordsImpl implements Records, AsyncRecords {
 
   private final Database db;
 
+  private final CatalogCache catalog;
+
+  // false if the database is shared through a DBEngine, which closes it
+  private final boolean isOwningDatabase;
+
   public RecordsImpl() {
     db = FDBHelper.initialization();
+    catalog = new CatalogCache();
+    isOwningDatabase = true;
   }
 
-  private TableMetadata getTableMetadataByTableName(Transaction tx, String tableName) {
-    TableMetadataTransformer tblMetadataTransformer = new TableMetadataTransformer(tableName);
-    List<FDBKVPair> kvPairs = FDBHelper.getAllKeyValuePairsOfSubdirectory(tx,
-            tblMetadataTransformer.getTableAttributeStorePath());
-    TableMetadata tblMetadata = tblMetadataTransformer.convertBackToTableMetadata(kvPairs);
-    return tblMetadata;
+  RecordsImpl(Database db, CatalogCache catalog) {
+    this.db = db;
+    this.catalog = catalog;
+    isOwningDatabase = false;
+  }
+
+  /**
+   * Run a write operation on the table in a span recording its status.
+   */
+  private static StatusCode traceOperation(String operationName, String tableName, Supplier<StatusCode> operation) {
+    try (TraceSpan span = Metrics.startSpan(operationName)) {
+      span.setAttribute("table", tableName);
+      StatusCode status = operation.get();
+      span.setAttribute("status", status);
+      return status;
+    }
   }
+
   @Override
   public StatusCode insertRecord(String tableName, String[] primaryKeys, Object[] primaryKeysValues, String[] attrNames, Object[] attrValues) {
-    // open the transaction
-    Transaction tx = FDBHelper.openTransaction(db);
+    return traceOperation("records.insertRecord", tableName, () -> retryAfterDroppedAttributeClears(tableName,
+        () -> FDBHelper.runTransaction(db, tx -> insertRecord(tx, tableName, primaryKeys, primaryKeysValues, attrNames, attrValues))));
+  }
+
+  /**
+   * Run the insert, and once more after clearing the values of the table's dropped attributes if it adds one of them
+   * before they are cleared.
+   */
+  private StatusCode retryAfterDroppedAttributeClears(String tableName, Supplier<StatusCode> insert) {
+    StatusCode status = insert.get();
+    if (status == StatusCode.ATTRIBUTE_DROP_PENDING && new DroppedAttributeCleaner(db, tableName).clear() == StatusCode.SUCCESS) {
+      status = insert.get();
+    }
+    return status;
+  }
+
+  @Override
+  public CompletableFuture<StatusCode> insertRecordAsync(String tableName, String[] primaryKeys, Object[] primaryKeysValues,
+                                                         String[] attrNames, Object[] attrValues) {
+    Supplier<CompletableFuture<StatusCode>> insert =
+        () -> insertRecordAsyncOnce(tableName, primaryKeys, primaryKeysValues, attrNames, attrValues);
+    return insert.get().thenCompose(status -> {
+      if (status != StatusCode.ATTRIBUTE_DROP_PENDING) {
+        return CompletableFuture.completedFuture(status);
+      }
+      // clear the values of the dropped attributes, the cleaner blocks
+      return CompletableFuture.supplyAsync(() -> new DroppedAttributeCleaner(db, tableName).clear(), db.getExecutor())
+          .thenCompose(clearStatus -> clearStatus == StatusCode.SUCCESS ? insert.get() : CompletableFuture.completedFuture(status));
+    });
+  }
+
+  private CompletableFuture<StatusCode> insertRecordAsyncOnce(String tableName, String[] primaryKeys, Object[] primaryKeysValues,
+                                                              String[] attrNames, Object[] attrValues) {
+    return FDBHelper.runTransactionAsync(db, tx -> catalog.getTableAsync(tx, tableName, db.getExecutor()).thenCompose(tableEntry -> {
+      // check if the table exists
+      if (tableEntry == null) {
+        return CompletableFuture.completedFuture(StatusCode.TABLE_NOT_FOUND);
+      }
+      PreparedInsert insert = new PreparedInsert();
+      StatusCode status = prepareInsert(tableName, tableEntry, primaryKeys, primaryKeysValues, attrNames, attrValues, insert);
+      if (status != StatusCode.SUCCESS) {
+        return CompletableFuture.completedFuture(status);
+      }
+
+      DirectorySubspace dataRecordsSubspace = tableEntry.getRecordsSubspace();
+      if (dataRecordsSubspace == null) {
+        // the first record creates the records directory, the directory helpers block
+        return CompletableFuture.supplyAsync(() -> {
+          writeInsert(tx, tableEntry, insert, FDBHelper.createOrOpenSubspace(tx, insert.recordsTransformer.getTableRecordPath()));
+          return StatusCode.SUCCESS;
+        }, db.getExecutor());
+      }
+      // check if records already exists
+      Function<List<KeyValue>, StatusCode> write = kvs -> {
+        if (!kvs.isEmpty()) {
+          return StatusCode.DATA_RECORD_CREATION_RECORD_ALREADY_EXISTS;
+        }
+        writeInsert(tx, tableEntry, insert, dataRecordsSubspace);
+        return StatusCode.SUCCESS;
+      };
+      CompletableFuture<List<KeyValue>> existenceCheck = tx.getRange(Range.startsWith(dataRecordsSubspace.pack(insert.primKeyTuple)), 1).asList();
+      if (!tableEntry.isAttributeCountReady()) {
+        // counting the record while the counts are backfilled reads the backfill's progress, which blocks
+        return existenceCheck.thenApplyAsync(write, db.getExecutor());
+      }
+      return existenceCheck.thenApply(write);
+    }));
+  }
+
+  /**
+   * A validated record to insert, with the schema changes it brings.
+   */
+  private static class PreparedInsert {
+    private Record record;
+    private List<FDBKVPair> tblSchemaUpdatePairs;
+    private RecordsTransformer recordsTransformer;
+    private Tuple primKeyTuple;
+  }
+
+  /**
+   * Insert the record in the given transaction, which is committed by the caller only on SUCCESS.
+   */
+  private StatusCode insertRecord(Transaction tx, String tableName, String[] primaryKeys, Object[] primaryKeysValues, String[] attrNames, Object[] attrValues) {
     // check if the table exists
-    if (!FDBHelper.doesSubdirectoryExists(tx, Collections.singletonList(tableName))) {
-      FDBHelper.abortTransaction(tx);
+    CatalogCache.TableEntry tableEntry = catalog.getTable(tx, tableName);
+    if (tableEntry == null) {
       return StatusCode.TABLE_NOT_FOUND;
     }
+    PreparedInsert insert = new PreparedInsert();
+    StatusCode status = prepareInsert(tableName, tableEntry, primaryKeys, primaryKeysValues, attrNames, attrValues, insert);
+    if (status != StatusCode.SUCCESS) {
+      return status;
+    }
+
+    // check if records already exists
+    DirectorySubspace dataRecordsSubspace = tableEntry.getRecordsSubspace();
+    if (dataRecordsSubspace == null) {
+      dataRecordsSubspace = FDBHelper.createOrOpenSubspace(tx, insert.recordsTransformer.getTableRecordPath());
+    } else if (insert.recordsTransformer.doesPrimaryKeyExist(tx, dataRecordsSubspace, insert.primKeyTuple)) {
+      return StatusCode.DATA_RECORD_CREATION_RECORD_ALREADY_EXISTS;
+    }
+
+    writeInsert(tx, tableEntry, insert, dataRecordsSubspace);
+    return StatusCode.SUCCESS;
+  }
+
+  /**
+   * Validate the record to insert against the table's schema, without reading the storage.
+   */
+  private StatusCode prepareInsert(String tableName, CatalogCache.TableEntry tableEntry, String[] primaryKeys, Object[] primaryKeysValues,
+                                   String[] attrNames, Object[] attrValues, PreparedInsert insert) {
     // check the validity of the input parameters
     if (primaryKeys == null || primaryKeysValues == null || attrNames == null || attrValues == null) {
-      FDBHelper.abortTransaction(tx);
       return StatusCode.DATA_RECORD_CREATION_ATTRIBUTES_INVALID;
     }
     if (primaryKeys.length != primaryKeysValues.length || attrValues.length != attrNames.length) {
-      FDBHelper.abortTransaction(tx);
       return StatusCode.DATA_RECORD_CREATION_ATTRIBUTES_INVALID;
     }
 
-    // get the tableMetadata
-    TableMetadata tblMetadata = getTableMetadataByTableName(tx, tableName);
+    // get the tableMetadata, it is copied before adding new columns to it
+    TableMetadata tblMetadata = tableEntry.getTableMetadata();
 
     List<String> pks = Arrays.asList(primaryKeys);
     List<String> schemaPks = tblMetadata.getPrimaryKeys();
 
     // check if the given primary keys are identical to primary keys stated in the table schema
     if (!pks.containsAll(schemaPks) || !schemaPks.containsAll(pks)) {
-      FDBHelper.abortTransaction(tx);
       return StatusCode.DATA_RECORD_PRIMARY_KEYS_UNMATCHED;
     }
 
@@ -70,7 +203,6 @@ public class RecordsImpl implements Records{
     for (int i = 0; i<primaryKeys.length; i++) {
       StatusCode status = record.setAttrNameAndValue(primaryKeys[i], primaryKeysValues[i]);
       if (status != StatusCode.SUCCESS) {
-        FDBHelper.abortTransaction(tx);
         return status;
       }
     }
@@ -86,140 +218,363 @@ public class RecordsImpl implements Records{
       String attrName = attrNames[i];
       StatusCode status = record.setAttrNameAndValue(attrName, attrValues[i]);
       if (status != StatusCode.SUCCESS) {
-        FDBHelper.abortTransaction(tx);
         return status;
       }
 
       AttributeType attrType = record.getTypeForGivenAttrName(attrName);
       if (!existingTblAttributeNames.contains(attrName)) {
-        tblSchemaUpdatePairs.add(tblMetadataTransformer.getAttributeKVPair(attrName, attrType));
+        if (tableEntry.getDroppedAttrNames().contains(attrName)) {
+          return StatusCode.ATTRIBUTE_DROP_PENDING;
+        }
+        // allocate a column slot for the new attribute, the record below is serialized with the new layout
+        if (tblMetadata == tableEntry.getTableMetadata()) {
+          tblMetadata = new TableMetadata(tblMetadata);
+        }
+        tblMetadata.addAttribute(attrName, attrType);
+        tblSchemaUpdatePairs.add(tblMetadataTransformer.getAttributeKVPair(attrName, attrType, tblMetadata.getColumnOrdinal(attrName)));
       } else if (!attrType.equals(existingTblAttributes.get(attrName))) {
-        FDBHelper.abortTransaction(tx);
         return StatusCode.DATA_RECORD_CREATION_ATTRIBUTE_TYPE_UNMATCHED;
       }
     }
 
+    if (!tblSchemaUpdatePairs.isEmpty()) {
+      tblSchemaUpdatePairs.add(tblMetadataTransformer.getLayoutVersionKVPair(tblMetadata.getLayoutVersion()));
+    }
+
+    insert.record = record;
+    insert.tblSchemaUpdatePairs = tblSchemaUpdatePairs;
+    insert.recordsTransformer = new RecordsTransformer(tableName, tblMetadata);
+    insert.primKeyTuple = insert.recordsTransformer.getPrimaryKeyValTuple(record);
+    return StatusCode.SUCCESS;
+  }
+
+  /**
+   * Write the prepared record, its index entries, its attribute counts and its schema changes. Nothing is read.
+   */
+  private void writeInsert(Transaction tx, CatalogCache.TableEntry tableEntry, PreparedInsert insert, DirectorySubspace dataRecordsSubspace) {
     // serialize the Record and persist to FDB
     // persist the data pairs
-    RecordsTransformer recordsTransformer = new RecordsTransformer(tableName, tblMetadata);
-
-    // check if records already exists
-    Tuple primKeyTuple = new Tuple();
-    for (int i = 0; i<primaryKeysValues.length; i++) {
-      primKeyTuple = primKeyTuple.addObject(primaryKeysValues[i]);
-    }
+    Record record = insert.record;
+    Tuple primKeyTuple = insert.primKeyTuple;
+    RecordsTransformer recordsTransformer = insert.recordsTransformer;
+    List<FDBKVPair> tblSchemaUpdatePairs = insert.tblSchemaUpdatePairs;
 
-    if (recordsTransformer.doesPrimaryKeyExist(tx, primKeyTuple)) {
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.DATA_RECORD_CREATION_RECORD_ALREADY_EXISTS;
+    List<FDBKVPair> fdbkvPairs = recordsTransformer.convertToFDBKVPairs(record);
+    for (FDBKVPair kv : fdbkvPairs) {
+      FDBHelper.setFDBKVPair(dataRecordsSubspace, tx, kv);
     }
 
-    List<FDBKVPair> fdbkvPairs = recordsTransformer.convertToFDBKVPairs(record);
+    // Add records to any existing indices, in the same transaction as the record
+    addRecordToIndexes(tx, tableEntry.getIndexes().values(), record, primKeyTuple);
+    AttributeCounter.addRecord(tx, tableEntry.getTableSubspace(), tableEntry.isAttributeCountReady(), dataRecordsSubspace, record,
+        primKeyTuple, recordsTransformer.getPrimaryKeys());
 
-    // Add records to any existing indices
-    List<String> indexPath = new ArrayList<>();
-    indexPath.add(tableName);
-    for (String attrName : attrNames) {
-      indexPath.add(attrName);
-      if (FDBHelper.doesSubdirectoryExists(tx, indexPath)) {
-        addRecordToIndex(tableName, record, attrName);
+    // persist the schema changing pairs
+    if (!tblSchemaUpdatePairs.isEmpty()) {
+      for (FDBKVPair kv : tblSchemaUpdatePairs) {
+        FDBHelper.setFDBKVPair(tableEntry.getSchemaSubspace(), tx, kv);
       }
-      indexPath.remove(indexPath.size()-1);
+      CatalogCache.bumpVersion(tx);
     }
+  }
 
-    DirectorySubspace dataRecordsSubspace = FDBHelper.createOrOpenSubspace(tx, recordsTransformer.getTableRecordPath());
-    for (FDBKVPair kv : fdbkvPairs) {
-      FDBHelper.setFDBKVPair(dataRecordsSubspace, tx, kv);
+  @Override
+  public StatusCode insertRecords(String tableName, List<Record> records) {
+    return traceOperation("records.insertRecords", tableName,
+        () -> retryAfterDroppedAttributeClears(tableName, () -> insertRecordsInBatches(tableName, records)));
+  }
+
+  private StatusCode insertRecordsInBatches(String tableName, List<Record> records) {
+    if (records == null) {
+      return StatusCode.DATA_RECORD_CREATION_ATTRIBUTES_INVALID;
+    }
+    if (records.isEmpty()) {
+      return StatusCode.SUCCESS;
     }
 
-    // persist the schema changing pairs
-    DirectorySubspace tableSchemaDirectory = FDBHelper.openSubspace(tx, tblMetadataTransformer.getTableAttributeStorePath());
-    for (FDBKVPair kv : tblSchemaUpdatePairs) {
-      FDBHelper.setFDBKVPair(tableSchemaDirectory, tx, kv);
+    // primary keys of the committed batches
+    Set<Tuple> insertedPrimaryKeys = new HashSet<>();
+    int batchStart = 0;
+    while (batchStart < records.size()) {
+      final int currentBatchStart = batchStart;
+      int[] batchEndHolder = new int[1];
+      Set<Tuple> batchPrimaryKeys = new HashSet<>();
+      StatusCode status = FDBHelper.runTransaction(db, tx -> {
+        batchPrimaryKeys.clear();
+        return insertRecordsBatch(tx, tableName, records, currentBatchStart, insertedPrimaryKeys, batchPrimaryKeys, batchEndHolder);
+      });
+      if (status != StatusCode.SUCCESS) {
+        return status;
+      }
+      insertedPrimaryKeys.addAll(batchPrimaryKeys);
+      batchStart = batchEndHolder[0];
     }
+    return StatusCode.SUCCESS;
+  }
+
+  /**
+   * Validate every record against the schema, collecting the schema pairs of the new columns into tblSchemaUpdatePairs.
+   * A new column may not be a dropped attribute whose values are not cleared yet.
+   */
+  private StatusCode validateRecords(String tableName, TableMetadata tblMetadata, Set<String> droppedAttrNames, List<Record> records,
+                                     List<FDBKVPair> tblSchemaUpdatePairs) {
+    List<String> schemaPks = tblMetadata.getPrimaryKeys();
+    HashMap<String, AttributeType> tblAttributes = tblMetadata.getAttributes();
+    TableMetadataTransformer tblMetadataTransformer = new TableMetadataTransformer(tableName);
+
+    for (Record record : records) {
+      if (record == null) {
+        return StatusCode.DATA_RECORD_CREATION_ATTRIBUTES_INVALID;
+      }
+      HashMap<String, Record.Value> attrMap = record.getMapAttrNameToValue();
+      if (!attrMap.keySet().containsAll(schemaPks)) {
+        return StatusCode.DATA_RECORD_PRIMARY_KEYS_UNMATCHED;
+      }
 
-    FDBHelper.commitTransaction(tx);
+      for (String attrName : attrMap.keySet()) {
+        if (schemaPks.contains(attrName)) {
+          continue;
+        }
+        AttributeType attrType = record.getTypeForGivenAttrName(attrName);
+        if (!tblAttributes.containsKey(attrName)) {
+          if (droppedAttrNames.contains(attrName)) {
+            return StatusCode.ATTRIBUTE_DROP_PENDING;
+          }
+          tblMetadata.addAttribute(attrName, attrType);
+          tblSchemaUpdatePairs.add(tblMetadataTransformer.getAttributeKVPair(attrName, attrType, tblMetadata.getColumnOrdinal(attrName)));
+        } else if (!attrType.equals(tblAttributes.get(attrName))) {
+          return StatusCode.DATA_RECORD_CREATION_ATTRIBUTE_TYPE_UNMATCHED;
+        }
+      }
+    }
+    if (!tblSchemaUpdatePairs.isEmpty()) {
+      tblSchemaUpdatePairs.add(tblMetadataTransformer.getLayoutVersionKVPair(tblMetadata.getLayoutVersion()));
+    }
     return StatusCode.SUCCESS;
   }
-  public StatusCode addRecordToIndex(String tableName, Record record, String attrName) {
-    Transaction tx = FDBHelper.openTransaction(db);
-    // Check index type
-    List<String> indexPath = new ArrayList<>();
-    indexPath.add(tableName);
-    indexPath.add(attrName);
-    Tuple keyTuple = new Tuple();
-
-    // Check if attr Index exists
-    if (!FDBHelper.doesSubdirectoryExists(tx, indexPath)) {
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.INDEX_NOT_FOUND;
+
+  /**
+   * Insert the batch of records starting at batchStart in the given transaction. The first batch validates all the
+   * records and persists the new columns, the later batches see them in the catalog.
+   */
+  private StatusCode insertRecordsBatch(Transaction tx, String tableName, List<Record> records, int batchStart,
+                                        Set<Tuple> insertedPrimaryKeys, Set<Tuple> batchPrimaryKeySet, int[] batchEndHolder) {
+    // check if the table exists
+    CatalogCache.TableEntry tableEntry = catalog.getTable(tx, tableName);
+    if (tableEntry == null) {
+      return StatusCode.TABLE_NOT_FOUND;
     }
 
-    // Check if bplus or index
-    indexPath.add("bplus");
-    if (FDBHelper.doesSubdirectoryExists(tx, indexPath)) {
-      keyTuple = keyTuple.addObject(record.getValueForGivenAttrName(attrName));
+    TableMetadata tblMetadata = tableEntry.getTableMetadata();
+    if (batchStart == 0) {
+      tblMetadata = new TableMetadata(tblMetadata);
+      List<FDBKVPair> tblSchemaUpdatePairs = new ArrayList<>();
+      StatusCode status = validateRecords(tableName, tblMetadata, tableEntry.getDroppedAttrNames(), records, tblSchemaUpdatePairs);
+      if (status != StatusCode.SUCCESS) {
+        return status;
+      }
+      // the schema changes are persisted together with the first batch
+      if (!tblSchemaUpdatePairs.isEmpty()) {
+        for (FDBKVPair kv : tblSchemaUpdatePairs) {
+          FDBHelper.setFDBKVPair(tableEntry.getSchemaSubspace(), tx, kv);
+        }
+        CatalogCache.bumpVersion(tx);
+      }
     }
-    else  {
-      indexPath.set(indexPath.size()-1, "hash");
-      int hashValue = record.getHashCodeForGivenAttrName(attrName);
-      keyTuple = keyTuple.addObject(hashValue); // Used to have .add(indexType). I don't think this is necessary anymore.
+
+    RecordsTransformer recordsTransformer = new RecordsTransformer(tableName, tblMetadata);
+    DirectorySubspace dataRecordsSubspace = tableEntry.getRecordsSubspace();
+    if (dataRecordsSubspace == null) {
+      dataRecordsSubspace = FDBHelper.createOrOpenSubspace(tx, recordsTransformer.getTableRecordPath());
     }
+    Collection<CatalogCache.IndexEntry> indexes = tableEntry.getIndexes().values();
+
+    // cut the batch by the number of records and the bytes it writes. A record is left to the next batch if its bytes
+    // would take the batch past the limit, unless it is the first of the batch.
+    List<Tuple> batchPrimaryKeys = new ArrayList<>();
+    List<Record> batchRecords = new ArrayList<>();
+    List<FDBKVPair> batchPairs = new ArrayList<>();
+    long batchBytes = 0;
+    int batchEnd = batchStart;
+    while (batchEnd < records.size() && batchEnd - batchStart < DBConf.BULK_INSERT_MAX_BATCH_RECORDS) {
+      Record record = records.get(batchEnd);
+      Tuple primKeyTuple = recordsTransformer.getPrimaryKeyValTuple(record);
+      List<FDBKVPair> recordPairs = recordsTransformer.convertToFDBKVPairs(record);
+      long recordBytes = 0;
+      for (FDBKVPair kv : recordPairs) {
+        recordBytes += kv.getKey().getPackedSize() + kv.getValue().getPackedSize();
+      }
+      for (CatalogCache.IndexEntry index : indexes) {
+        IndexTransformer indexTransformer = index.getIndexTransformer();
+        if (record.getMapAttrNameToValue().containsKey(indexTransformer.getAttrName())) {
+          recordBytes += indexTransformer.getIndexKeyTuple(record, primKeyTuple).getPackedSize();
+        }
+      }
+      if (!batchRecords.isEmpty() && batchBytes + recordBytes > DBConf.BULK_INSERT_MAX_BATCH_BYTES) {
+        break;
+      }
 
-    DirectorySubspace indexSubspace = FDBHelper.openSubspace(tx, indexPath);
+      if (insertedPrimaryKeys.contains(primKeyTuple) || !batchPrimaryKeySet.add(primKeyTuple)) {
+        // duplicated inside the given records
+        return StatusCode.DATA_RECORD_CREATION_RECORD_ALREADY_EXISTS;
+      }
+      batchPrimaryKeys.add(primKeyTuple);
+      batchRecords.add(record);
+      batchPairs.addAll(recordPairs);
+      batchBytes += recordBytes;
+      batchEnd++;
+    }
 
-    // Create the indexed record's key tuple. This is (hashValue, primaryKey0, primaryKey1..., primaryKeyN).
-    TableMetadata metadata = getTableMetadataByTableName(tx, tableName);
-    List<String> pkNames = metadata.getPrimaryKeys();
-    Collections.sort(pkNames);
+    // check the existence of all primary keys of the batch in parallel
+    List<CompletableFuture<List<KeyValue>>> existenceChecks = new ArrayList<>();
+    for (Tuple primKeyTuple : batchPrimaryKeys) {
+      existenceChecks.add(tx.getRange(Range.startsWith(dataRecordsSubspace.pack(primKeyTuple)), 1).asList());
+    }
+    for (CompletableFuture<List<KeyValue>> existenceCheck : existenceChecks) {
+      if (!existenceCheck.join().isEmpty()) {
+        return StatusCode.DATA_RECORD_CREATION_RECORD_ALREADY_EXISTS;
+      }
+    }
 
-    for (String pk : pkNames) {
-      keyTuple = keyTuple.addObject(record.getValueForGivenAttrName(pk));
+    for (FDBKVPair kv : batchPairs) {
+      FDBHelper.setFDBKVPair(dataRecordsSubspace, tx, kv);
     }
+    for (int i = 0; i < batchRecords.size(); i++) {
+      addRecordToIndexes(tx, indexes, batchRecords.get(i), batchPrimaryKeys.get(i));
+      AttributeCounter.addRecord(tx, tableEntry.getTableSubspace(), tableEntry.isAttributeCountReady(), dataRecordsSubspace,
+          batchRecords.get(i), batchPrimaryKeys.get(i), recordsTransformer.getPrimaryKeys());
+    }
+    batchEndHolder[0] = batchEnd;
+    return StatusCode.SUCCESS;
+  }
 
-    // Create the indexed record's value tuple. This is ().
-    Tuple valueTuple = new Tuple();
+  /**
+   * Remove the index entries of the record in the given transaction.
+   */
+  private void removeRecordFromIndexes(Transaction tx, Collection<CatalogCache.IndexEntry> indexes, Record record, Tuple primaryKeyTuple) {
+    for (CatalogCache.IndexEntry index : indexes) {
+      IndexTransformer indexTransformer = index.getIndexTransformer();
+      if (record.getMapAttrNameToValue().containsKey(indexTransformer.getAttrName())) {
+        tx.clear(index.getIndexSubspace().pack(indexTransformer.getIndexKeyTuple(record, primaryKeyTuple)));
+      }
+    }
+  }
 
-    //System.out.println("Made " + indexPath);
-    FDBHelper.setFDBKVPair(indexSubspace, tx, new FDBKVPair(indexPath, keyTuple, valueTuple));
+  /**
+   * Write the index entries of the record in the given transaction. Attributes the record does not have are not indexed.
+   */
+  private void addRecordToIndexes(Transaction tx, Collection<CatalogCache.IndexEntry> indexes, Record record, Tuple primaryKeyTuple) {
+    for (CatalogCache.IndexEntry index : indexes) {
+      IndexTransformer indexTransformer = index.getIndexTransformer();
+      if (record.getMapAttrNameToValue().containsKey(indexTransformer.getAttrName())) {
+        FDBHelper.setFDBKVPair(index.getIndexSubspace(), tx, indexTransformer.convertToIndexKVPair(record, primaryKeyTuple));
+      }
+    }
+  }
 
-    FDBHelper.commitTransaction(tx);
-    return StatusCode.SUCCESS;
+  @Override
+  public CompletableFuture<AsyncCursor> openCursorAsync(String tableName) {
+    return openCursorAsync(tableName, null, null, null);
   }
+
+  @Override
+  public CompletableFuture<AsyncCursor> openCursorAsync(String tableName, String attrName, Object attrValue, ComparisonOperator operator) {
+    Transaction tx = FDBHelper.openTransaction(db);
+    return catalog.getTableAsync(tx.snapshot(), tableName, db.getExecutor()).handle((tableEntry, e) -> {
+      if (e != null) {
+        FDBHelper.abortTransaction(tx);
+        throw new CompletionException(e);
+      }
+      // check if the table and the given attribute exist
+      if (tableEntry == null || (attrName != null && !tableEntry.getTableMetadata().doesAttributeExist(attrName))) {
+        FDBHelper.abortTransaction(tx);
+        return null;
+      }
+      Record.Value attrVal = null;
+      if (attrName != null) {
+        attrVal = new Record.Value();
+        if (attrVal.setValue(attrValue) != StatusCode.SUCCESS) {
+          FDBHelper.abortTransaction(tx);
+          return null;
+        }
+      }
+      return new AsyncCursor(db, tx, tableName, tableEntry, attrName, attrVal, operator);
+    });
+  }
+
+  /**
+   * Backfill the attribute counts of a table created before they existed, in transactions of its own, before the
+   * table's records are deleted. Deletions drop the unused attributes only once the counts are complete.
+   */
+  private void ensureAttributeCounts(String tableName) {
+    CatalogCache.TableEntry cachedEntry = catalog.peekTable(tableName);
+    if (cachedEntry != null && cachedEntry.isAttributeCountReady()) {
+      return;
+    }
+    Transaction tx = FDBHelper.openTransaction(db);
+    CatalogCache.TableEntry tableEntry = catalog.getTable(tx.snapshot(), tableName);
+    FDBHelper.abortTransaction(tx);
+    if (tableEntry != null && !tableEntry.isAttributeCountReady()) {
+      new AttributeCountBuilder(db, tableName, tableEntry.getTableMetadata()).build();
+    }
+  }
+
   @Override
   public Cursor openCursor(String tableName, Cursor.Mode mode) {
+    return openCursor(tableName, mode, ScanHint.ITERATOR, ReadTransaction.ROW_LIMIT_UNLIMITED);
+  }
+
+  @Override
+  public Cursor openCursor(String tableName, Cursor.Mode mode, ScanHint scanHint, int rowLimit) {
+    if (mode != Cursor.Mode.READ) {
+      ensureAttributeCounts(tableName);
+    }
     Transaction tx = FDBHelper.openTransaction(db);
 
-    if (!FDBHelper.doesSubdirectoryExists(tx, Collections.singletonList(tableName))) {
+    // a READ cursor looks the table up at a snapshot, like it reads the records
+    CatalogCache.TableEntry tableEntry = catalog.getTable(mode == Cursor.Mode.READ ? tx.snapshot() : tx, tableName);
+    if (tableEntry == null) {
       // check if the table exists
       FDBHelper.abortTransaction(tx);
       return null;
     }
 
-    TableMetadata tblMetadata = getTableMetadataByTableName(tx, tableName);
-    return new Cursor(mode, tableName, tblMetadata, tx);
+    Cursor cursor = new Cursor(mode, tableName, tableEntry.getTableMetadata(), tx);
+    cursor.setTableEntry(tableEntry);
+    cursor.setScanHint(scanHint);
+    cursor.setRowLimit(rowLimit);
+    return cursor;
   }
 
   @Override
   public Cursor openCursor(String tableName, String attrName, Object attrValue, ComparisonOperator operator, Cursor.Mode mode, boolean isUsingIndex) {
+    return openCursor(tableName, attrName, attrValue, operator, mode, isUsingIndex, ScanHint.ITERATOR, ReadTransaction.ROW_LIMIT_UNLIMITED);
+  }
+
+  @Override
+  public Cursor openCursor(String tableName, String attrName, Object attrValue, ComparisonOperator operator, Cursor.Mode mode,
+                           boolean isUsingIndex, ScanHint scanHint, int rowLimit) {
+    if (mode != Cursor.Mode.READ) {
+      ensureAttributeCounts(tableName);
+    }
     Transaction tx = FDBHelper.openTransaction(db);
 
-    if (!FDBHelper.doesSubdirectoryExists(tx, Collections.singletonList(tableName))) {
+    // a READ cursor looks the table up at a snapshot, like it reads the records
+    CatalogCache.TableEntry tableEntry = catalog.getTable(mode == Cursor.Mode.READ ? tx.snapshot() : tx, tableName);
+    if (tableEntry == null) {
       // check if the table exists
       FDBHelper.abortTransaction(tx);
       return null;
     }
 
     // Check if index table exists
-    List<String> indexPath = new ArrayList<>();
-    indexPath.add(tableName);
-    indexPath.add(attrName);
-    if (isUsingIndex && !FDBHelper.doesSubdirectoryExists(tx, indexPath)) {
+    CatalogCache.IndexEntry index = tableEntry.getIndex(attrName);
+    if (isUsingIndex && (index == null || !index.isReadable())) {
       FDBHelper.abortTransaction(tx);
       return null;
     }
 
-    TableMetadata tblMetadata = getTableMetadataByTableName(tx, tableName);
+    TableMetadata tblMetadata = tableEntry.getTableMetadata();
 
     // check if the given attribute exists
     if (!tblMetadata.doesAttributeExist(attrName)) {
@@ -231,6 +586,9 @@ public class RecordsImpl implements Records{
     Cursor cursor;
     if (isUsingIndex)  cursor = new Cursor(mode, tableName, tblMetadata, tx, attrName);
     else cursor = new Cursor(mode, tableName, tblMetadata, tx);
+    cursor.setTableEntry(tableEntry);
+    cursor.setScanHint(scanHint);
+    cursor.setRowLimit(rowLimit);
 
     Record.Value attrVal = new Record.Value();
     StatusCode initVal = attrVal.setValue(attrValue);
@@ -243,6 +601,82 @@ public class RecordsImpl implements Records{
     return cursor;
   }
 
+  @Override
+  public Cursor openCursor(String tableName, Predicate predicate, Cursor.Mode mode, ScanHint scanHint, int rowLimit) {
+    return openCursor(tableName, null, predicate, mode, scanHint, rowLimit);
+  }
+
+  @Override
+  public Cursor openCursor(String tableName, String[] projection, Predicate predicate, Cursor.Mode mode, ScanHint scanHint,
+                           int rowLimit) {
+    // records missing attributes cannot be updated or deleted
+    if (projection != null && mode != Cursor.Mode.READ) {
+      return null;
+    }
+    if (mode != Cursor.Mode.READ) {
+      ensureAttributeCounts(tableName);
+    }
+    Transaction tx = FDBHelper.openTransaction(db);
+
+    // a READ cursor looks the table up at a snapshot, like it reads the records
+    CatalogCache.TableEntry tableEntry = catalog.getTable(mode == Cursor.Mode.READ ? tx.snapshot() : tx, tableName);
+    if (tableEntry == null || (predicate != null && !predicate.isValid(tableEntry.getTableMetadata()))) {
+      FDBHelper.abortTransaction(tx);
+      return null;
+    }
+    if (projection != null) {
+      for (String attrName : projection) {
+        if (!tableEntry.getTableMetadata().doesAttributeExist(attrName)) {
+          FDBHelper.abortTransaction(tx);
+          return null;
+        }
+      }
+    }
+
+    // a READ_WRITE cursor scans the table, its updates could move index entries ahead of an index scan
+    Predicate.Comparison indexComparison = null;
+    if (predicate != null && mode == Cursor.Mode.READ) {
+      indexComparison = chooseIndexComparison(tableEntry, predicate);
+    }
+    Cursor cursor;
+    if (indexComparison != null) {
+      cursor = new Cursor(mode, tableName, tableEntry.getTableMetadata(), tx, indexComparison.getAttrName());
+    } else {
+      cursor = new Cursor(mode, tableName, tableEntry.getTableMetadata(), tx);
+    }
+    cursor.setTableEntry(tableEntry);
+    cursor.setScanHint(scanHint);
+    cursor.setRowLimit(rowLimit);
+    if (projection != null) {
+      cursor.setProjection(Arrays.asList(projection));
+    }
+    if (predicate != null) {
+      cursor.enablePredicate(predicate, indexComparison);
+    }
+    return cursor;
+  }
+
+  /**
+   * Pick the conjunct of the predicate whose readable index narrows the scan the most: an equality, else a range on a
+   * B+ tree index. A hash index only narrows equalities. Null if no conjunct has such an index.
+   */
+  private static Predicate.Comparison chooseIndexComparison(CatalogCache.TableEntry tableEntry, Predicate predicate) {
+    Predicate.Comparison chosen = null;
+    for (Predicate.Comparison conjunct : predicate.getConjuncts()) {
+      CatalogCache.IndexEntry index = tableEntry.getIndex(conjunct.getAttrName());
+      if (index == null || !index.isReadable()) {
+        continue;
+      }
+      if (conjunct.getOperator() == ComparisonOperator.EQUAL_TO) {
+        return conjunct;
+      }
+      if (chosen == null && index.getIndexTransformer().getIndexType() == IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX) {
+        chosen = conjunct;
+      }
+    }
+    return chosen;
+  }
+
   @Override
   public Record getFirst(Cursor cursor) {
     return cursor.getFirst();
@@ -265,6 +699,13 @@ public class RecordsImpl implements Records{
 
   @Override
   public StatusCode updateRecord(Cursor cursor, String[] attrNames, Object[] attrValues) {
+    if (cursor == null || cursor.getTx() == null) {
+      return StatusCode.CURSOR_INVALID;
+    }
+    // the update moves the record's index entries, so the cursor needs the table's indexes
+    if (cursor.getTableEntry() == null && !cursor.isCatalogVersionBumped()) {
+      cursor.setTableEntry(catalog.getTable(cursor.getTx(), cursor.getTableName()));
+    }
     return cursor.updateCurrentRecord(attrNames, attrValues);
   }
 
@@ -280,41 +721,56 @@ public class RecordsImpl implements Records{
       return StatusCode.CURSOR_REACH_TO_EOF;
     }
     Record recordToDelete = cursor.getCurrentRecord();
-    Set<String> attrDiffSet = new HashSet<>();
     Transaction tx = cursor.getTx();
-
-    // Open another cursor and scan the table, see if the table schema needs to change because of the deletion
-    Cursor scanCursor =
-            new Cursor(Cursor.Mode.READ, cursor.getTableName(), cursor.getTableMetadata(), tx);
-    boolean isScanCursorInit = false;
-    while (true) {
-      Record record;
-      if (!isScanCursorInit) {
-        isScanCursorInit = true;
-        record = getFirst(scanCursor);
-      } else {
-        record = getNext(scanCursor);
-      }
-      if (record == null) {
-        break;
-      }
-      Set<String> attrSet = record.getMapAttrNameToValue().keySet();
-      Set<String> attrSetToDelete = new HashSet<>(recordToDelete.getMapAttrNameToValue().keySet());
-      attrSetToDelete.removeAll(attrSet);
-      attrDiffSet.addAll(attrSetToDelete);
+    // the table resolved when the cursor opened, the catalog version cannot be read once a delete has bumped it
+    CatalogCache.TableEntry tableEntry = cursor.getTableEntry();
+    if (tableEntry == null && !cursor.isCatalogVersionBumped()) {
+      tableEntry = catalog.getTable(tx, cursor.getTableName());
+      cursor.setTableEntry(tableEntry);
     }
+    if (tableEntry == null) {
+      return StatusCode.TABLE_NOT_FOUND;
+    }
+
+    // see if the table schema needs to change because of the deletion, from the attribute counts
+    RecordsTransformer recordsTransformer = new RecordsTransformer(cursor.getTableName(), tableEntry.getTableMetadata());
+    Set<String> attrDiffSet = AttributeCounter.removeRecord(tx, tableEntry.getTableSubspace(), tableEntry.getRecordsSubspace(),
+        tableEntry.isAttributeCountReady(), recordsTransformer, recordToDelete);
     if (!attrDiffSet.isEmpty()) {
-      // drop the attributes of the table
-      TableMetadataTransformer transformer = new TableMetadataTransformer(scanCursor.getTableName());
-      List<String> tblAttributeDirPath = transformer.getTableAttributeStorePath();
-      DirectorySubspace tableAttrDir = FDBHelper.openSubspace(tx, tblAttributeDirPath);
+      dropUnusedAttributes(tx, cursor.getTableName(), tableEntry, attrDiffSet, !cursor.isCatalogVersionBumped());
+      cursor.setCatalogVersionBumped();
+      cursor.setTableEntry(tableEntry.withoutIndexes(attrDiffSet));
+    }
+    removeRecordFromIndexes(tx, tableEntry.getIndexes().values(), recordToDelete, recordsTransformer.getPrimaryKeyValTuple(recordToDelete));
+    return cursor.deleteCurrentRecord();
+  }
+
+  /**
+   * Drop the attributes no record has anymore from the table schema, with their indexes.
+   */
+  private void dropUnusedAttributes(Transaction tx, String tableName, CatalogCache.TableEntry tableEntry, Set<String> unusedAttrNames) {
+    dropUnusedAttributes(tx, tableName, tableEntry, unusedAttrNames, true);
+  }
 
-      for (String attrNameToDrop : attrDiffSet) {
-        Tuple attrKeyTuple = TableMetadataTransformer.getTableAttributeKeyTuple(attrNameToDrop);
-        FDBHelper.removeKeyValuePair(tableAttrDir, tx, attrKeyTuple);
+  /**
+   * Drop the attributes no record has anymore from the table schema, with their indexes. The catalog version needs no
+   * second bump if the transaction already bumped it.
+   */
+  private void dropUnusedAttributes(Transaction tx, String tableName, CatalogCache.TableEntry tableEntry, Set<String> unusedAttrNames,
+                                    boolean isBumpingVersion) {
+    if (unusedAttrNames.isEmpty()) {
+      return;
+    }
+    for (String attrNameToDrop : unusedAttrNames) {
+      Tuple attrKeyTuple = TableMetadataTransformer.getTableAttributeKeyTuple(attrNameToDrop);
+      FDBHelper.removeKeyValuePair(tableEntry.getSchemaSubspace(), tx, attrKeyTuple);
+      if (tableEntry.getIndex(attrNameToDrop) != null) {
+        IndexTransformer.dropIndex(tx, tableName, attrNameToDrop);
       }
     }
-    return cursor.deleteCurrentRecord();
+    if (isBumpingVersion) {
+      CatalogCache.bumpVersion(tx);
+    }
   }
 
   @Override
@@ -322,7 +778,9 @@ public class RecordsImpl implements Records{
     if (cursor == null) {
       return StatusCode.CURSOR_INVALID;
     }
-    cursor.commit();
+    if (!cursor.commit()) {
+      return StatusCode.INTERNAL_STORAGE_FAILURE;
+    }
     return StatusCode.SUCCESS;
   }
 
@@ -337,12 +795,259 @@ public class RecordsImpl implements Records{
 
   @Override
   public StatusCode deleteDataRecord(String tableName, String[] attrNames, Object[] attrValues) {
-    return null;
+    return traceOperation("records.deleteDataRecord", tableName, () -> deleteMatchingRecords(tableName, attrNames, attrValues));
+  }
+
+  private StatusCode deleteMatchingRecords(String tableName, String[] attrNames, Object[] attrValues) {
+    // an empty filter would delete the whole table
+    if (attrNames == null || attrValues == null || attrNames.length == 0 || attrNames.length != attrValues.length) {
+      return StatusCode.DATA_RECORD_CREATION_ATTRIBUTES_INVALID;
+    }
+
+    Transaction tx = FDBHelper.openTransaction(db);
+    CatalogCache.TableEntry tableEntry = catalog.getTable(tx, tableName);
+    if (tableEntry == null) {
+      FDBHelper.abortTransaction(tx);
+      return StatusCode.TABLE_NOT_FOUND;
+    }
+
+    // the records to delete are the ones having all the given values
+    Record target = new Record();
+    for (int i = 0; i < attrNames.length; i++) {
+      if (!tableEntry.getTableMetadata().doesAttributeExist(attrNames[i])) {
+        FDBHelper.abortTransaction(tx);
+        return StatusCode.ATTRIBUTE_NOT_FOUND;
+      }
+      if (attrValues[i] == null) {
+        FDBHelper.abortTransaction(tx);
+        return StatusCode.DATA_RECORD_CREATION_ATTRIBUTES_INVALID;
+      }
+      if (target.setAttrNameAndValue(attrNames[i], attrValues[i]) != StatusCode.SUCCESS) {
+        FDBHelper.abortTransaction(tx);
+        return StatusCode.ATTRIBUTE_TYPE_NOT_SUPPORTED;
+      }
+    }
+    FDBHelper.abortTransaction(tx);
+    if (tableEntry.getRecordsSubspace() == null) {
+      // no record was ever inserted
+      return StatusCode.SUCCESS;
+    }
+    if (!tableEntry.isAttributeCountReady()) {
+      StatusCode backfillStatus = new AttributeCountBuilder(db, tableName, tableEntry.getTableMetadata()).build();
+      if (backfillStatus != StatusCode.SUCCESS) {
+        return backfillStatus;
+      }
+    }
+
+    // given leading primary key values narrow the scan to their key prefix, a whole primary key to one record
+    Tuple primaryKeyPrefix = new Tuple();
+    List<String> primaryKeys = new RecordsTransformer(tableName, tableEntry.getTableMetadata()).getPrimaryKeys();
+    for (String pk : primaryKeys) {
+      if (!target.getMapAttrNameToValue().containsKey(pk)) {
+        break;
+      }
+      primaryKeyPrefix = primaryKeyPrefix.addObject(target.getValueForGivenAttrName(pk));
+    }
+    if (primaryKeyPrefix.size() == primaryKeys.size()) {
+      return deleteDataRecordByPrimaryKey(tableName, primaryKeyPrefix, target);
+    }
+    if (primaryKeyPrefix.size() == 0) {
+      for (String attrName : attrNames) {
+        CatalogCache.IndexEntry index = tableEntry.getIndex(attrName);
+        if (index != null && index.isReadable()) {
+          return deleteDataRecordByIndex(tableName, attrName, target);
+        }
+      }
+    }
+    return deleteDataRecordByScan(tableName, primaryKeyPrefix, target);
+  }
+
+  /**
+   * Delete the record with the primary key if it matches the target. Its keys are read and decoded once, for the
+   * values of the target and of the index entries, and then cleared as one range.
+   */
+  private StatusCode deleteDataRecordByPrimaryKey(String tableName, Tuple primaryKey, Record target) {
+    return FDBHelper.runTransaction(db, tx -> {
+      CatalogCache.TableEntry tableEntry = catalog.getTable(tx, tableName);
+      if (tableEntry == null) {
+        // the table was deleted in the meantime
+        return StatusCode.SUCCESS;
+      }
+      RecordsTransformer recordsTransformer = new RecordsTransformer(tableName, tableEntry.getTableMetadata());
+      List<KeyValue> recordKVs = tx.getRange(Range.startsWith(tableEntry.getRecordsSubspace().pack(primaryKey))).asList().join();
+      if (recordKVs.isEmpty()) {
+        return StatusCode.SUCCESS;
+      }
+      Set<String> unusedAttrNames = new HashSet<>();
+      deleteRecordIfMatching(tx, tableEntry, recordsTransformer, recordKVs, target, unusedAttrNames);
+      dropUnusedAttributes(tx, tableName, tableEntry, unusedAttrNames);
+      return StatusCode.SUCCESS;
+    });
+  }
+
+  /**
+   * Delete the records matching the target among the records whose primary key starts with the prefix.
+   * The scan commits every DBConf.DELETE_BATCH_RECORDS records and resumes at the next record in a new transaction.
+   */
+  private StatusCode deleteDataRecordByScan(String tableName, Tuple primaryKeyPrefix, Record target) {
+    byte[][] resumeKeyHolder = new byte[1][];
+    while (true) {
+      final byte[] batchBegin = resumeKeyHolder[0];
+      StatusCode status = FDBHelper.runTransaction(db, tx -> {
+        resumeKeyHolder[0] = null;
+        CatalogCache.TableEntry tableEntry = catalog.getTable(tx, tableName);
+        if (tableEntry == null) {
+          // the table was deleted in the meantime
+          return StatusCode.SUCCESS;
+        }
+        RecordsTransformer recordsTransformer = new RecordsTransformer(tableName, tableEntry.getTableMetadata());
+        DirectorySubspace recordsSubspace = tableEntry.getRecordsSubspace();
+        Range scanRange = Range.startsWith(recordsSubspace.pack(primaryKeyPrefix));
+
+        Set<String> unusedAttrNames = new HashSet<>();
+        List<KeyValue> recordKVs = new ArrayList<>();
+        Tuple recordPrimaryKey = null;
+        int recordCount = 0;
+        AsyncIterator<KeyValue> iterator = tx.getRange(batchBegin == null ? scanRange.begin : batchBegin, scanRange.end).iterator();
+        while (iterator.hasNext()) {
+          KeyValue kv = iterator.next();
+          Tuple primaryKey = recordsTransformer.getPrimaryKeyValTupleOfKey(recordsSubspace.unpack(kv.getKey()));
+          if (recordPrimaryKey != null && !primaryKey.equals(recordPrimaryKey)) {
+            // the keys of the previous record are complete
+            deleteRecordIfMatching(tx, tableEntry, recordsTransformer, recordKVs, target, unusedAttrNames);
+            recordKVs = new ArrayList<>();
+            if (++recordCount >= DBConf.DELETE_BATCH_RECORDS) {
+              resumeKeyHolder[0] = kv.getKey();
+              iterator.cancel();
+              break;
+            }
+          }
+          recordPrimaryKey = primaryKey;
+          recordKVs.add(kv);
+        }
+        if (resumeKeyHolder[0] == null && !recordKVs.isEmpty()) {
+          deleteRecordIfMatching(tx, tableEntry, recordsTransformer, recordKVs, target, unusedAttrNames);
+        }
+
+        dropUnusedAttributes(tx, tableName, tableEntry, unusedAttrNames);
+        return StatusCode.SUCCESS;
+      });
+      if (status != StatusCode.SUCCESS || resumeKeyHolder[0] == null) {
+        return status;
+      }
+    }
+  }
+
+  /**
+   * Delete the records matching the target among the records the index has under the target's value.
+   * Every batch reads DBConf.DELETE_BATCH_RECORDS index entries and fetches their records concurrently.
+   */
+  private StatusCode deleteDataRecordByIndex(String tableName, String indexedAttrName, Record target) {
+    byte[][] resumeKeyHolder = new byte[1][];
+    boolean[] isIndexDropped = new boolean[1];
+    while (true) {
+      final byte[] batchBegin = resumeKeyHolder[0];
+      StatusCode status = FDBHelper.runTransaction(db, tx -> {
+        resumeKeyHolder[0] = null;
+        CatalogCache.TableEntry tableEntry = catalog.getTable(tx, tableName);
+        if (tableEntry == null) {
+          return StatusCode.SUCCESS;
+        }
+        CatalogCache.IndexEntry index = tableEntry.getIndex(indexedAttrName);
+        isIndexDropped[0] = index == null || !index.isReadable();
+        if (isIndexDropped[0]) {
+          return StatusCode.SUCCESS;
+        }
+        RecordsTransformer recordsTransformer = new RecordsTransformer(tableName, tableEntry.getTableMetadata());
+        DirectorySubspace recordsSubspace = tableEntry.getRecordsSubspace();
+        IndexTransformer indexTransformer = index.getIndexTransformer();
+        Range indexRange = indexTransformer.getIndexRange(index.getIndexSubspace(), ComparisonOperator.EQUAL_TO,
+            target.getValueForGivenAttrName(indexedAttrName));
+
+        List<KeyValue> indexKVs = tx.getRange(batchBegin == null ? indexRange.begin : batchBegin, indexRange.end,
+            DBConf.DELETE_BATCH_RECORDS).asList().join();
+        List<CompletableFuture<List<KeyValue>>> recordReads = new ArrayList<>();
+        for (KeyValue indexKV : indexKVs) {
+          Tuple primaryKey = indexTransformer.getPrimaryKeyValTuple(index.getIndexSubspace().unpack(indexKV.getKey()));
+          recordReads.add(tx.getRange(Range.startsWith(recordsSubspace.pack(primaryKey))).asList());
+        }
+
+        Set<String> unusedAttrNames = new HashSet<>();
+        for (CompletableFuture<List<KeyValue>> recordRead : recordReads) {
+          List<KeyValue> recordKVs = recordRead.join();
+          if (!recordKVs.isEmpty()) {
+            deleteRecordIfMatching(tx, tableEntry, recordsTransformer, recordKVs, target, unusedAttrNames);
+          }
+        }
+
+        dropUnusedAttributes(tx, tableName, tableEntry, unusedAttrNames);
+        if (indexKVs.size() == DBConf.DELETE_BATCH_RECORDS) {
+          resumeKeyHolder[0] = ByteArrayUtil.keyAfter(indexKVs.get(indexKVs.size() - 1).getKey());
+        }
+        return StatusCode.SUCCESS;
+      });
+      if (status != StatusCode.SUCCESS) {
+        return status;
+      }
+      if (isIndexDropped[0]) {
+        // the index was dropped in the meantime, the records left are found by a scan
+        return deleteDataRecordByScan(tableName, new Tuple(), target);
+      }
+      if (resumeKeyHolder[0] == null) {
+        return StatusCode.SUCCESS;
+      }
+    }
+  }
+
+  /**
+   * Delete the record stored in the keys if it has all the target's values, with its index entries,
+   * collecting the attributes no other record has.
+   */
+  private void deleteRecordIfMatching(Transaction tx, CatalogCache.TableEntry tableEntry, RecordsTransformer recordsTransformer,
+                                      List<KeyValue> recordKVs, Record target, Set<String> unusedAttrNames) {
+    DirectorySubspace recordsSubspace = tableEntry.getRecordsSubspace();
+    Record record = recordsTransformer.convertBackToRecords(recordsSubspace, recordKVs).get(0);
+    for (String attrName : target.getMapAttrNameToValue().keySet()) {
+      if (!doesValueEqual(record.getValueForGivenAttrName(attrName), target.getValueForGivenAttrName(attrName))) {
+        return;
+      }
+    }
+
+    Tuple primaryKey = recordsTransformer.getPrimaryKeyValTuple(record);
+    // the counts are taken while the record is still stored
+    unusedAttrNames.addAll(AttributeCounter.removeRecord(tx, tableEntry.getTableSubspace(), recordsSubspace,
+        tableEntry.isAttributeCountReady(), recordsTransformer, record));
+    removeRecordFromIndexes(tx, tableEntry.getIndexes().values(), record, primaryKey);
+    tx.clear(Range.startsWith(recordsSubspace.pack(primaryKey)));
+  }
+
+  private static boolean doesValueEqual(Object recVal, Object targetVal) {
+    if (recVal == null) {
+      return false;
+    }
+    Record.Value value = new Record.Value();
+    value.setValue(recVal);
+    Record.Value target = new Record.Value();
+    target.setValue(targetVal);
+    if (value.getType() != target.getType()) {
+      return false;
+    }
+
+    if (value.getType() == AttributeType.INT) {
+      return ComparisonUtils.compareTwoINT(recVal, targetVal, ComparisonOperator.EQUAL_TO);
+    } else if (value.getType() == AttributeType.DOUBLE) {
+      return ComparisonUtils.compareTwoDOUBLE(recVal, targetVal, ComparisonOperator.EQUAL_TO);
+    } else if (value.getType() == AttributeType.VARCHAR) {
+      return ComparisonUtils.compareTwoVARCHAR(recVal, targetVal, ComparisonOperator.EQUAL_TO);
+    }
+    return false;
   }
 
   @Override
   public void closeDatabase() {
     // Custom method to close database
-    FDBHelper.close(db);
+    if (isOwningDatabase) {
+      FDBHelper.close(db);
+    }
   }
 }
\ No newline at end of file
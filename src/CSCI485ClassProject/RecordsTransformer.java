@@ -1,46 +1,78 @@
 package CSCI485ClassProject;
 
-import CSCI485ClassProject.fdb.FDBHelper;
 import CSCI485ClassProject.fdb.FDBKVPair;
+import CSCI485ClassProject.models.CompactRecord;
 import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.StorageFormat;
 import CSCI485ClassProject.models.TableMetadata;
 import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.Range;
 import com.apple.foundationdb.Transaction;
 import com.apple.foundationdb.async.AsyncIterator;
 import com.apple.foundationdb.directory.DirectorySubspace;
 import com.apple.foundationdb.tuple.Tuple;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class RecordsTransformer {
   private final List<String> tableRecordPath;
 
   private final TableMetadata tableMetadata;
 
+  // primary key attribute names, in the order their values appear in the record key
+  private final List<String> primaryKeys;
+
+  // the column slots of the table's compact records, built on first use
+  private CompactRecord.Layout layout = null;
+
   public RecordsTransformer(String tableName, TableMetadata tableMetadata) {
     tableRecordPath = new ArrayList<>();
     tableRecordPath.add(tableName);
     tableRecordPath.add(DBConf.TABLE_RECORDS_STORE);
 
     this.tableMetadata = tableMetadata;
+    primaryKeys = tableMetadata.getPrimaryKeys();
+    Collections.sort(primaryKeys);
   }
 
   public List<String> getTableRecordPath() {
     return tableRecordPath;
   }
 
-  public boolean doesPrimaryKeyExist(Transaction tx, Tuple primaryKeyTuple) {
-    if (!FDBHelper.doesSubdirectoryExists(tx, tableRecordPath)) {
-      return false;
+  public List<String> getPrimaryKeys() {
+    return primaryKeys;
+  }
+
+  public CompactRecord.Layout getLayout() {
+    if (layout == null) {
+      layout = new CompactRecord.Layout(tableMetadata.getAttributes(), tableMetadata.getColumnOrdinals());
     }
+    return layout;
+  }
 
-    DirectorySubspace dir = FDBHelper.openSubspace(tx, tableRecordPath);
+  public boolean isRowPacked() {
+    return tableMetadata.getStorageFormat() == StorageFormat.ROW_PACKED;
+  }
 
-    return FDBHelper.getKVPairIterableWithPrefixInDirectory(dir, tx, primaryKeyTuple, false).iterator().hasNext();
+  /**
+   * Build the tuple of primary key values of the record, in the order used by the record keys.
+   */
+  public Tuple getPrimaryKeyValTuple(Record record) {
+    Tuple primTuple = new Tuple();
+    for (String pk : primaryKeys) {
+      primTuple = primTuple.addObject(record.getValueForGivenAttrName(pk));
+    }
+    return primTuple;
+  }
+
+  public boolean doesPrimaryKeyExist(Transaction tx, DirectorySubspace dir, Tuple primaryKeyTuple) {
+    return !tx.getRange(Range.startsWith(dir.pack(primaryKeyTuple)), 1).asList().join().isEmpty();
   }
 
   public static String getAttributeNameFromTuples(Tuple keyTuple, Tuple valueTuple) {
@@ -61,6 +93,46 @@ public class RecordsTransformer {
   }
 
 
+  /**
+   * Get the primary key values from the key tuple of a record key, for either storage format.
+   */
+  public Tuple getPrimaryKeyValTupleOfKey(Tuple keyTuple) {
+    if (isRowPacked()) {
+      return keyTuple;
+    }
+    return getPrimaryKeyValTuple(keyTuple);
+  }
+
+  /**
+   * Decode the records stored in a list of consecutive keys of the records subspace.
+   * The keys of every record must all be in the list.
+   */
+  public List<Record> convertBackToRecords(DirectorySubspace dir, List<KeyValue> kvs) {
+    List<Record> res = new ArrayList<>();
+    List<FDBKVPair> recordPairs = new ArrayList<>();
+    Tuple pkValTuple = null;
+    for (KeyValue kv : kvs) {
+      Tuple keyTuple = dir.unpack(kv.getKey());
+      Tuple valTuple = Tuple.fromBytes(kv.getValue());
+      if (isRowPacked()) {
+        res.add(convertBackToRecord(keyTuple, valTuple));
+        continue;
+      }
+
+      Tuple tempPkValTuple = getPrimaryKeyValTuple(keyTuple);
+      if (pkValTuple != null && !pkValTuple.equals(tempPkValTuple)) {
+        res.add(convertBackToRecord(recordPairs));
+        recordPairs = new ArrayList<>();
+      }
+      pkValTuple = tempPkValTuple;
+      recordPairs.add(new FDBKVPair(tableRecordPath, keyTuple, valTuple));
+    }
+    if (!recordPairs.isEmpty()) {
+      res.add(convertBackToRecord(recordPairs));
+    }
+    return res;
+  }
+
   public static Tuple getRecordKeyTuple(List<Object> primaryKeyValues, String attributeName, Object value) {
     Tuple keyTuple = new Tuple();
     for (Object primVal : primaryKeyValues) {
@@ -76,16 +148,39 @@ public class RecordsTransformer {
   }
 
 
+  /**
+   * Pack all non-primary-key attributes of the record into one value tuple (layoutVersion, column0, column1, ...).
+   * Primary key values are already in the key, so their slots, as well as the slots of absent attributes, are null.
+   */
+  public Tuple getPackedRowValueTuple(Record record) {
+    int layoutVersion = tableMetadata.getLayoutVersion();
+    Object[] columns = new Object[layoutVersion];
+    for (Map.Entry<String, Record.Value> entry : record.getMapAttrNameToValue().entrySet()) {
+      int ordinal = tableMetadata.getColumnOrdinal(entry.getKey());
+      if (ordinal >= 0 && !primaryKeys.contains(entry.getKey())) {
+        columns[ordinal] = entry.getValue().getValue();
+      }
+    }
+
+    Tuple valTuple = new Tuple().add(layoutVersion);
+    for (Object column : columns) {
+      valTuple = valTuple.addObject(column);
+    }
+    return valTuple;
+  }
+
   public List<FDBKVPair> convertToFDBKVPairs(Record record) {
     List<FDBKVPair> res = new ArrayList<>();
 
+    if (isRowPacked()) {
+      res.add(new FDBKVPair(tableRecordPath, getPrimaryKeyValTuple(record), getPackedRowValueTuple(record)));
+      return res;
+    }
+
     HashMap<String, Record.Value> attrMap = record.getMapAttrNameToValue();
     List<Object> primVal = new ArrayList<>();
 
-    List<String> primaryKeys = tableMetadata.getPrimaryKeys();
-    Collections.sort(primaryKeys);
-
-    for (String pk : tableMetadata.getPrimaryKeys()) {
+    for (String pk : primaryKeys) {
       primVal.add(attrMap.get(pk).getValue());
     }
 
@@ -100,14 +195,104 @@ public class RecordsTransformer {
     return res;
   }
 
+  /**
+   * Get the pairs storing the given attributes of the record. A ROW_PACKED record is always stored as a whole.
+   */
+  public List<FDBKVPair> convertToFDBKVPairs(Record record, Collection<String> attrNames) {
+    if (isRowPacked()) {
+      return convertToFDBKVPairs(record);
+    }
+
+    List<Object> primVal = new ArrayList<>();
+    for (String pk : primaryKeys) {
+      primVal.add(record.getValueForGivenAttrName(pk));
+    }
+
+    List<FDBKVPair> res = new ArrayList<>();
+    for (String attrName : attrNames) {
+      Object value = record.getValueForGivenAttrName(attrName);
+      res.add(new FDBKVPair(tableRecordPath, getRecordKeyTuple(primVal, attrName, value), getRecordValueTuple(value)));
+    }
+    return res;
+  }
+
+  /**
+   * Decode a ROW_PACKED record from its key tuple (primaryKeyValues...) and value tuple (layoutVersion, columns...).
+   */
+  public Record convertBackToRecord(Tuple keyTuple, Tuple valTuple) {
+    return convertBackToRecord(keyTuple, valTuple, null);
+  }
+
+  /**
+   * Decode the projected attributes of a ROW_PACKED record, all of them if the projection is null.
+   */
+  public Record convertBackToRecord(Tuple keyTuple, Tuple valTuple, Set<String> projection) {
+    Record record = new Record();
+
+    for (int i = 0; i < primaryKeys.size(); i++) {
+      if (projection == null || projection.contains(primaryKeys.get(i))) {
+        record.setAttrNameAndValue(primaryKeys.get(i), keyTuple.get(i));
+      }
+    }
+
+    // attributes whose slot was allocated after the row was written do not exist in the row
+    int rowLayoutVersion = Math.toIntExact(valTuple.getLong(0));
+    for (Map.Entry<String, Integer> entry : tableMetadata.getColumnOrdinals().entrySet()) {
+      int ordinal = entry.getValue();
+      if (ordinal >= rowLayoutVersion || !tableMetadata.doesAttributeExist(entry.getKey())
+          || (projection != null && !projection.contains(entry.getKey()))) {
+        continue;
+      }
+      Object value = valTuple.get(ordinal + 1);
+      if (value != null) {
+        record.setAttrNameAndValue(entry.getKey(), value);
+      }
+    }
+    return record;
+  }
+
+  /**
+   * Decode the given slots of a ROW_PACKED record into the compact record, all of them if slots is null. Slots the
+   * compact record already holds are not decoded again.
+   */
+  public void convertBackToCompactRecord(Tuple keyTuple, Tuple valTuple, CompactRecord row, boolean[] slots) {
+    CompactRecord.Layout layout = row.getLayout();
+    for (int i = 0; i < primaryKeys.size(); i++) {
+      int slot = layout.getSlot(primaryKeys.get(i));
+      if (slot >= 0 && (slots == null || slots[slot]) && !row.isPresent(slot)) {
+        row.setValue(slot, keyTuple.get(i));
+      }
+    }
+
+    // the column of a slot is the slot's ordinal, slots allocated after the row was written do not exist in the row
+    int columnCount = Math.min(Math.toIntExact(valTuple.getLong(0)), layout.getSlotCount());
+    for (int slot = 0; slot < columnCount; slot++) {
+      if (layout.getAttrName(slot) != null && (slots == null || slots[slot]) && !row.isPresent(slot)) {
+        Object value = valTuple.get(slot + 1);
+        if (value != null) {
+          row.setValue(slot, value);
+        }
+      }
+    }
+  }
+
   public Record convertBackToRecord(List<FDBKVPair> pairs) {
+    if (isRowPacked()) {
+      FDBKVPair row = pairs.get(0);
+      return convertBackToRecord(row.getKey(), row.getValue());
+    }
+
     Record record = new Record();
 
     for (FDBKVPair kv : pairs) {
       Tuple keyTuple = kv.getKey();
       Tuple valTuple = kv.getValue();
 
-      record.setAttrNameAndValue(getAttributeNameFromTuples(keyTuple, valTuple), getAttributeValFromTuples(keyTuple, valTuple));
+      // the values of a dropped attribute not cleared yet are not part of the record
+      String attrName = getAttributeNameFromTuples(keyTuple, valTuple);
+      if (tableMetadata.doesAttributeExist(attrName)) {
+        record.setAttrNameAndValue(attrName, getAttributeValFromTuples(keyTuple, valTuple));
+      }
     }
     return record;
   }
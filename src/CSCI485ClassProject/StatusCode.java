@@ -15,11 +15,13 @@ public enum StatusCode {
   TABLE_NOT_FOUND,
   ATTRIBUTE_ALREADY_EXISTS,
   ATTRIBUTE_NOT_FOUND,
+  ATTRIBUTE_DROP_PENDING,
 
   DATA_RECORD_CREATION_ATTRIBUTES_INVALID,
   DATA_RECORD_PRIMARY_KEYS_UNMATCHED,
   DATA_RECORD_CREATION_ATTRIBUTE_TYPE_UNMATCHED,
   DATA_RECORD_CREATION_RECORD_ALREADY_EXISTS,
+  DATA_RECORD_PRIMARY_KEYS_DUPLICATED,
 
   INDEX_ALREADY_EXISTS_ON_ATTRIBUTE,
   INDEX_NOT_FOUND,
@@ -28,6 +30,7 @@ public enum StatusCode {
   CURSOR_REACH_TO_EOF,
   CURSOR_NOT_INITIALIZED,
 
-  CURSOR_UPDATE_ATTRIBUTE_NOT_FOUND
+  CURSOR_UPDATE_ATTRIBUTE_NOT_FOUND,
+  CURSOR_UPDATE_INDEXED_ATTRIBUTE
 
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import CSCI485ClassProject.StatusCode;
 import CSCI485ClassProject.models.AttributeType;
 import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.StorageFormat;
 import CSCI485ClassProject.models.TableMetadata;
 
 /**
@@ -32,6 +33,22 @@ public interface TableManager {
   public StatusCode createTable(String tableName, String[] attributeNames,
                                 AttributeType[] attributeTypes, String[] primaryKeyAttributeNames);
 
+  /**
+   * Create a table with given name, attributes and storage format of its data records.
+   *
+   * Error checking is the same as createTable without the storage format, which uses KEY_PER_ATTRIBUTE.
+   *
+   * @param tableName the table's name
+   * @param attributeNames the list of name of attributes
+   * @param attributeTypes the list of type of attributes
+   * @param primaryKeyAttributeNames the list of name of the primary-key attributes
+   * @param storageFormat how the data records of the table are laid out in FDB
+   * @return status code
+   */
+  public StatusCode createTable(String tableName, String[] attributeNames,
+                                AttributeType[] attributeTypes, String[] primaryKeyAttributeNames,
+                                StorageFormat storageFormat);
+
 
   /**
    * Delete a table by its name
@@ -58,6 +75,7 @@ public interface TableManager {
    * - tableName does not exist --> TABLE_NOT_FOUND
    * - attributeName already exists in the table --> ATTRIBUTE_ALREADY_EXISTS
    * - attributeType is not supported --> ATTRIBUTE_TYPE_NOT_SUPPORTED
+   * - attributeName was dropped and its values are still being cleared by a concurrent drop --> ATTRIBUTE_DROP_PENDING
    *
    * @param tableName the name of the table to be altered
    * @param attributeName the name of the attribute to be added
@@ -73,6 +91,9 @@ public interface TableManager {
    * - tableName does not exist --> TABLE_NOT_FOUND
    * - attributeName does not exist --> ATTRIBUTE_NOT_FOUND
    *
+   * The attribute is dropped once SUCCESS is returned. The stored values of a KEY_PER_ATTRIBUTE attribute are cleared
+   * after, in batches; a clear that is interrupted is finished by the next addAttribute or dropAttribute of the table.
+   *
    * @param tableName the name of the table to be altered
    * @param attributeName the name of the attribute to be dropped
    * @return status code
@@ -3,6 +3,7 @@ package CSCI485ClassProject;
 import CSCI485ClassProject.fdb.FDBHelper;
 import CSCI485ClassProject.fdb.FDBKVPair;
 import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.StorageFormat;
 import CSCI485ClassProject.models.TableMetadata;
 import com.apple.foundationdb.Database;
 import com.apple.foundationdb.Transaction;
@@ -22,13 +23,28 @@ public class TableManagerImpl implements TableManager{
 
   private Database db;
 
+  // false if the database is shared through a DBEngine, which closes it
+  private final boolean isOwningDatabase;
+
   public TableManagerImpl() {
     db = FDBHelper.initialization();
+    isOwningDatabase = true;
+  }
+
+  TableManagerImpl(Database db) {
+    this.db = db;
+    isOwningDatabase = false;
   }
 
   @Override
   public StatusCode createTable(String tableName, String[] attributeNames, AttributeType[] attributeType,
                                 String[] primaryKeyAttributeNames) {
+    return createTable(tableName, attributeNames, attributeType, primaryKeyAttributeNames, StorageFormat.KEY_PER_ATTRIBUTE);
+  }
+
+  @Override
+  public StatusCode createTable(String tableName, String[] attributeNames, AttributeType[] attributeType,
+                                String[] primaryKeyAttributeNames, StorageFormat storageFormat) {
     // your code
     // First, check if table already exists
     List<String> tableSubdirectory = new ArrayList<>();
@@ -45,53 +61,52 @@ public class TableManagerImpl implements TableManager{
     if (primaryKeyAttributeNames.length == 0) {
       return StatusCode.TABLE_CREATION_NO_PRIMARY_KEY;
     }
-    Transaction tx = FDBHelper.openTransaction(db);
-    if (FDBHelper.doesSubdirectoryExists(tx, tableSubdirectory)) {
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.TABLE_ALREADY_EXISTS;
-    }
 
     TableMetadata tblMetadata = new TableMetadata();
-    HashMap<String, AttributeType> attributes = new HashMap<>();
+    // add in declaration order, so that ROW_PACKED column slots follow the declaration order
     for (int i = 0; i < attributeNames.length; i++) {
-      attributes.put(attributeNames[i], attributeType[i]);
+      tblMetadata.addAttribute(attributeNames[i], attributeType[i]);
     }
-
-    tblMetadata.setAttributes(attributes);
+    tblMetadata.setStorageFormat(storageFormat == null ? StorageFormat.KEY_PER_ATTRIBUTE : storageFormat);
     StatusCode isPrimaryKeyAdded = tblMetadata.setPrimaryKeys(Arrays.asList(primaryKeyAttributeNames));
-    if (isPrimaryKeyAdded != StatusCode.SUCCESS) {
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.TABLE_CREATION_PRIMARY_KEY_NOT_FOUND;
-    }
 
-    // persist the creation
-    TableMetadataTransformer transformer = new TableMetadataTransformer(tableName);
-    DirectorySubspace tableAttrSpace = FDBHelper.createOrOpenSubspace(tx, transformer.getTableAttributeStorePath());
-
-    List<FDBKVPair> pairs = transformer.convertToFDBKVPairs(tblMetadata);
-    for (FDBKVPair kvPair : pairs) {
-      FDBHelper.setFDBKVPair(tableAttrSpace, tx, kvPair);
-    }
-    FDBHelper.commitTransaction(tx);
-
-    return StatusCode.SUCCESS;
+    return FDBHelper.runTransaction(db, tx -> {
+      if (FDBHelper.doesSubdirectoryExists(tx, tableSubdirectory)) {
+        return StatusCode.TABLE_ALREADY_EXISTS;
+      }
+      if (isPrimaryKeyAdded != StatusCode.SUCCESS) {
+        return StatusCode.TABLE_CREATION_PRIMARY_KEY_NOT_FOUND;
+      }
+
+      // persist the creation
+      TableMetadataTransformer transformer = new TableMetadataTransformer(tableName);
+      DirectorySubspace tableAttrSpace = FDBHelper.createOrOpenSubspace(tx, transformer.getTableAttributeStorePath());
+
+      List<FDBKVPair> pairs = transformer.convertToFDBKVPairs(tblMetadata);
+      for (FDBKVPair kvPair : pairs) {
+        FDBHelper.setFDBKVPair(tableAttrSpace, tx, kvPair);
+      }
+      AttributeCounter.initialize(tx, FDBHelper.openSubspace(tx, tableSubdirectory));
+      CatalogCache.bumpVersion(tx);
+      return StatusCode.SUCCESS;
+    });
   }
 
   @Override
   public StatusCode deleteTable(String tableName) {
     // your code
     // First, check if table exists
-    Transaction tx = FDBHelper.openTransaction(db);
     List<String> tableSubdirectory = new ArrayList<>();
-
     tableSubdirectory.add(tableName);
-    if (!FDBHelper.doesSubdirectoryExists(tx, tableSubdirectory)) {
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.TABLE_NOT_FOUND;
-    }
-    FDBHelper.dropSubspace(tx, tableSubdirectory);
-    FDBHelper.commitTransaction(tx);
-    return StatusCode.SUCCESS;
+
+    return FDBHelper.runTransaction(db, tx -> {
+      if (!FDBHelper.doesSubdirectoryExists(tx, tableSubdirectory)) {
+        return StatusCode.TABLE_NOT_FOUND;
+      }
+      FDBHelper.dropSubspace(tx, tableSubdirectory);
+      CatalogCache.bumpVersion(tx);
+      return StatusCode.SUCCESS;
+    });
   }
 
   @Override
@@ -116,68 +131,103 @@ public class TableManagerImpl implements TableManager{
   @Override
   public StatusCode addAttribute(String tableName, String attributeName, AttributeType attributeType) {
     // your code
-    Transaction tx = FDBHelper.openTransaction(db);
-    // check if the table exists
-    if (!FDBHelper.doesSubdirectoryExists(tx,Collections.singletonList(tableName))) {
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.TABLE_NOT_FOUND;
-    }
-    // retrieve attributes of the table, check if attributes exists
-    TableMetadataTransformer tblTransformer = new TableMetadataTransformer(tableName);
-    List<String> tblAttributeDirPath = tblTransformer.getTableAttributeStorePath();
-    DirectorySubspace tableAttrDir = FDBHelper.openSubspace(tx, tblAttributeDirPath);
-
-    // retrieve the target attribute, check if that attribute exists
-    FDBKVPair pair = FDBHelper.getCertainKeyValuePairInSubdirectory(tableAttrDir, tx, TableMetadataTransformer.getTableAttributeKeyTuple(attributeName), tblAttributeDirPath);
-    if (pair != null) {
-      // KVPair exists
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.ATTRIBUTE_ALREADY_EXISTS;
+    // finish the clears left by earlier drops, the attribute may be one of them
+    StatusCode clearStatus = new DroppedAttributeCleaner(db, tableName).clear();
+    if (clearStatus != StatusCode.SUCCESS) {
+      return clearStatus;
     }
-
-    FDBHelper.setFDBKVPair(tableAttrDir, tx, tblTransformer.getAttributeKVPair(attributeName, attributeType));
-
-    FDBHelper.commitTransaction(tx);
-    return StatusCode.SUCCESS;
+    return FDBHelper.runTransaction(db, tx -> {
+      // check if the table exists
+      if (!FDBHelper.doesSubdirectoryExists(tx,Collections.singletonList(tableName))) {
+        return StatusCode.TABLE_NOT_FOUND;
+      }
+      // retrieve attributes of the table, check if attributes exists
+      TableMetadataTransformer tblTransformer = new TableMetadataTransformer(tableName);
+      List<String> tblAttributeDirPath = tblTransformer.getTableAttributeStorePath();
+      DirectorySubspace tableAttrDir = FDBHelper.openSubspace(tx, tblAttributeDirPath);
+      TableMetadata tblMetadata = tblTransformer.convertBackToTableMetadata(FDBHelper.getAllKeyValuePairsOfSubdirectory(tx, tblAttributeDirPath));
+
+      // check if that attribute exists
+      if (tblMetadata.doesAttributeExist(attributeName)) {
+        return StatusCode.ATTRIBUTE_ALREADY_EXISTS;
+      }
+      // the values of the attribute dropped before are not cleared yet, e.g. by a concurrent drop
+      DirectorySubspace tableDir = FDBHelper.openSubspace(tx, Collections.singletonList(tableName));
+      if (tx.get(tableDir.pack(TableMetadataTransformer.getDroppedAttributeKeyTuple(attributeName))).join() != null) {
+        return StatusCode.ATTRIBUTE_DROP_PENDING;
+      }
+
+      // allocate a fresh column slot for the attribute
+      tblMetadata.addAttribute(attributeName, attributeType);
+      FDBHelper.setFDBKVPair(tableAttrDir, tx, tblTransformer.getAttributeKVPair(attributeName, attributeType, tblMetadata.getColumnOrdinal(attributeName)));
+      FDBHelper.setFDBKVPair(tableAttrDir, tx, tblTransformer.getLayoutVersionKVPair(tblMetadata.getLayoutVersion()));
+      CatalogCache.bumpVersion(tx);
+      return StatusCode.SUCCESS;
+    });
   }
 
   @Override
   public StatusCode dropAttribute(String tableName, String attributeName) {
-    Transaction tx = FDBHelper.openTransaction(db);
-    // check if the table exists
-    if (!FDBHelper.doesSubdirectoryExists(tx,Collections.singletonList(tableName))) {
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.TABLE_NOT_FOUND;
+    DroppedAttributeCleaner cleaner = new DroppedAttributeCleaner(db, tableName);
+    // finish the clears left by earlier drops first
+    StatusCode clearStatus = cleaner.clear();
+    if (clearStatus != StatusCode.SUCCESS) {
+      return clearStatus;
     }
-
-    TableMetadataTransformer transformer = new TableMetadataTransformer(tableName);
-    List<String> tblAttributeDirPath = transformer.getTableAttributeStorePath();
-    DirectorySubspace tableAttrDir = FDBHelper.openSubspace(tx, tblAttributeDirPath);
-
-    // retrieve the target attribute, check if that attribute exists
-    FDBKVPair pair = FDBHelper.getCertainKeyValuePairInSubdirectory(tableAttrDir, tx, TableMetadataTransformer.getTableAttributeKeyTuple(attributeName), tblAttributeDirPath);
-    if (pair == null) {
-      // KVPair not exists
-      FDBHelper.abortTransaction(tx);
-      return StatusCode.ATTRIBUTE_NOT_FOUND;
+    StatusCode status = FDBHelper.runTransaction(db, tx -> {
+      // check if the table exists
+      if (!FDBHelper.doesSubdirectoryExists(tx,Collections.singletonList(tableName))) {
+        return StatusCode.TABLE_NOT_FOUND;
+      }
+
+      TableMetadataTransformer transformer = new TableMetadataTransformer(tableName);
+      List<String> tblAttributeDirPath = transformer.getTableAttributeStorePath();
+      DirectorySubspace tableAttrDir = FDBHelper.openSubspace(tx, tblAttributeDirPath);
+      DirectorySubspace tableDir = FDBHelper.openSubspace(tx, Collections.singletonList(tableName));
+
+      // retrieve the target attribute, check if that attribute exists
+      FDBKVPair pair = FDBHelper.getCertainKeyValuePairInSubdirectory(tableAttrDir, tx, TableMetadataTransformer.getTableAttributeKeyTuple(attributeName), tblAttributeDirPath);
+      if (pair == null) {
+        // KVPair not exists
+        return StatusCode.ATTRIBUTE_NOT_FOUND;
+      }
+      TableMetadata tblMetadata = transformer.convertBackToTableMetadata(FDBHelper.getAllKeyValuePairsOfSubdirectory(tx, tblAttributeDirPath));
+
+      // if exists, remove the attribute corresponding kvPair, its index and its count
+      FDBHelper.removeKeyValuePair(tableAttrDir, tx, pair.getKey());
+      IndexTransformer.dropIndex(tx, tableName, attributeName);
+      AttributeCounter.removeAttribute(tx, tableDir, attributeName);
+      // a ROW_PACKED attribute added again gets a new column slot, the dropped column is never read
+      if (tblMetadata.getStorageFormat() == StorageFormat.KEY_PER_ATTRIBUTE) {
+        DroppedAttributeCleaner.markDropped(tx, tableDir, attributeName);
+      }
+      CatalogCache.bumpVersion(tx);
+      return StatusCode.SUCCESS;
+    });
+    if (status != StatusCode.SUCCESS) {
+      return status;
     }
-    // if exists, remove the attribute corresponding kvPair
-    FDBHelper.removeKeyValuePair(tableAttrDir, tx, pair.getKey());
-    FDBHelper.commitTransaction(tx);
-
+    // the drop is committed whether or not the values are cleared now, a clear that fails is resumed by the next
+    // addAttribute or dropAttribute of the table
+    cleaner.clear();
     return StatusCode.SUCCESS;
   }
 
   @Override
   public StatusCode dropAllTables() {
-    // your code
-    FDBHelper.clear(db);
-    return StatusCode.SUCCESS;
+    return FDBHelper.runTransaction(db, tx -> {
+      tx.clear(new byte[]{(byte) 0x00}, new byte[]{(byte) 0xFF});
+      // written after the clear, so the catalog version keeps growing and no cache keeps the dropped tables
+      CatalogCache.bumpVersion(tx);
+      return StatusCode.SUCCESS;
+    });
   }
 
   @Override
   public void closeDatabase() {
-    FDBHelper.close(db);
+    if (isOwningDatabase) {
+      FDBHelper.close(db);
+    }
   }
 
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package CSCI485ClassProject;
 
 import CSCI485ClassProject.fdb.FDBKVPair;
 import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.StorageFormat;
 import CSCI485ClassProject.models.TableMetadata;
 import com.apple.foundationdb.tuple.Tuple;
 
@@ -12,19 +13,43 @@ import java.util.Map;
 
 public class TableMetadataTransformer {
 
+  // Table-level properties live next to the attributes, under keys (null, propertyName)
+  public static String STORAGE_FORMAT_PROPERTY = "storageFormat";
+  public static String LAYOUT_VERSION_PROPERTY = "layoutVersion";
+
   private List<String> tableAttributeStorePath;
 
-  public FDBKVPair getAttributeKVPair(String attributeName, AttributeType attributeType) {
+  public FDBKVPair getAttributeKVPair(String attributeName, AttributeType attributeType, int columnOrdinal) {
     Tuple keyTuple = getTableAttributeKeyTuple(attributeName);
-    Tuple valueTuple = new Tuple().add(attributeType.ordinal()).add(false);
+    Tuple valueTuple = new Tuple().add(attributeType.ordinal()).add(false).add(columnOrdinal);
 
     return new FDBKVPair(tableAttributeStorePath, keyTuple, valueTuple);
   }
 
+  public FDBKVPair getLayoutVersionKVPair(int layoutVersion) {
+    return new FDBKVPair(tableAttributeStorePath, getTablePropertyKeyTuple(LAYOUT_VERSION_PROPERTY), new Tuple().add(layoutVersion));
+  }
+
   public static Tuple getTableAttributeKeyTuple(String attributeName) {
     return new Tuple().add(attributeName);
   }
 
+  public static Tuple getTablePropertyKeyTuple(String propertyName) {
+    // null sorts before every string, so a property key can never collide with an attribute name
+    return new Tuple().addObject(null).add(propertyName);
+  }
+
+  /**
+   * Get the key, in the table directory, marking the dropped attribute whose values are not cleared yet.
+   */
+  public static Tuple getDroppedAttributeKeyTuple(String attributeName) {
+    return new Tuple().add(DBConf.DROPPED_ATTRIBUTE_KEY).add(attributeName);
+  }
+
+  public static Tuple getDroppedAttributesKeyTuple() {
+    return new Tuple().add(DBConf.DROPPED_ATTRIBUTE_KEY);
+  }
+
   public TableMetadataTransformer(String tableName) {
     tableAttributeStorePath = new ArrayList<>();
     tableAttributeStorePath.add(tableName);
@@ -42,8 +67,24 @@ public class TableMetadataTransformer {
       Tuple key = kv.getKey();
       Tuple value = kv.getValue();
 
+      if (key.get(0) == null) {
+        // table-level property
+        String propertyName = key.getString(1);
+        if (propertyName.equals(STORAGE_FORMAT_PROPERTY)) {
+          tableMetadata.setStorageFormat(StorageFormat.values() [Math.toIntExact(value.getLong(0))]);
+        } else if (propertyName.equals(LAYOUT_VERSION_PROPERTY)) {
+          tableMetadata.setLayoutVersion(Math.toIntExact(value.getLong(0)));
+        }
+        continue;
+      }
+
       String attributeName = key.getString(0);
-      tableMetadata.addAttribute(attributeName, AttributeType.values() [Math.toIntExact((Long) value.get(0))]);
+      AttributeType attributeType = AttributeType.values() [Math.toIntExact((Long) value.get(0))];
+      if (value.size() > 2) {
+        tableMetadata.addAttribute(attributeName, attributeType, Math.toIntExact(value.getLong(2)));
+      } else {
+        tableMetadata.addAttribute(attributeName, attributeType);
+      }
       boolean isPrimaryKey = value.getBoolean(1);
       if (isPrimaryKey) {
         primaryKeys.add(attributeName);
@@ -65,10 +106,15 @@ public class TableMetadataTransformer {
     for (Map.Entry<String, AttributeType> kv : attributeMap.entrySet()) {
       Tuple keyTuple = getTableAttributeKeyTuple(kv.getKey());
       boolean isPrimaryKey = primaryKeys.contains(kv.getKey());
-      Tuple valueTuple = new Tuple().add(kv.getValue().ordinal()).add(isPrimaryKey);
+      Tuple valueTuple = new Tuple().add(kv.getValue().ordinal()).add(isPrimaryKey).add(table.getColumnOrdinal(kv.getKey()));
 
       res.add(new FDBKVPair(tableAttributeStorePath, keyTuple, valueTuple));
     }
+
+    // prepare kv pairs for table-level properties
+    res.add(new FDBKVPair(tableAttributeStorePath, getTablePropertyKeyTuple(STORAGE_FORMAT_PROPERTY),
+        new Tuple().add(table.getStorageFormat().ordinal())));
+    res.add(getLayoutVersionKVPair(table.getLayoutVersion()));
     return res;
   }
-}
\ No newline at end of file
+}
@@ -1,6 +1,9 @@
 package CSCI485ClassProject.fdb;
 
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.metrics.Metrics;
 import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.ScanHint;
 import com.apple.foundationdb.Database;
 import com.apple.foundationdb.FDB;
 import com.apple.foundationdb.FDBException;
@@ -8,6 +11,7 @@ import com.apple.foundationdb.KeySelector;
 import com.apple.foundationdb.KeyValue;
 import com.apple.foundationdb.Range;
 import com.apple.foundationdb.ReadTransaction;
+import com.apple.foundationdb.StreamingMode;
 import com.apple.foundationdb.Transaction;
 import com.apple.foundationdb.async.AsyncIterable;
 import com.apple.foundationdb.directory.DirectoryLayer;
@@ -17,6 +21,10 @@ import com.apple.foundationdb.tuple.Tuple;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 public class FDBHelper {
 
@@ -24,40 +32,96 @@ public class FDBHelper {
 
   public static int MAX_TRANSACTION_COMMIT_RETRY_TIMES = 20;
 
+  // transaction_too_old: the transaction's read version is older than the 5 seconds of history kept by FDB
+  public static int TRANSACTION_TOO_OLD_ERROR_CODE = 1007;
+
+  // not_committed: the transaction conflicted with another one
+  public static int NOT_COMMITTED_ERROR_CODE = 1020;
+
   public static Database initialization() {
+    return initialization(null);
+  }
+
+  /**
+   * Open the database, running the callbacks of its futures on the executor, or on FDB's default executor if null.
+   * Callbacks the executor rejects once it is shut down run on FDB's default executor, as its last tasks may wait for them.
+   */
+  public static Database initialization(ExecutorService executor) {
     FDB fdb = FDB.selectAPIVersion(FDB_API_VERSION);
 
     Database db = null;
     try {
-      db = fdb.open();
+      if (executor == null) {
+        db = fdb.open();
+      } else {
+        db = fdb.open(null, task -> {
+          try {
+            executor.execute(task);
+          } catch (RejectedExecutionException e) {
+            FDB.DEFAULT_EXECUTOR.execute(task);
+          }
+        });
+      }
     } catch (Exception e) {
       System.out.println("ERROR: the database is not successfully opened: " + e);
     }
     return db;
   }
 
+  /**
+   * Get the streaming mode of range reads made with the scan hint. Only a read with a row limit can fetch exactly.
+   */
+  public static StreamingMode getStreamingMode(ScanHint scanHint, int limit) {
+    if (scanHint == null) {
+      return StreamingMode.ITERATOR;
+    }
+    switch (scanHint) {
+      case POINT_LOOKUP:
+        return limit == ReadTransaction.ROW_LIMIT_UNLIMITED ? StreamingMode.SMALL : StreamingMode.EXACT;
+      case SMALL:
+        return StreamingMode.SMALL;
+      case BULK:
+        return StreamingMode.WANT_ALL;
+      default:
+        return StreamingMode.ITERATOR;
+    }
+  }
+
   // Iterator Helpers
-  public static AsyncIterable<KeyValue> getKVPairIterableOfDirectory(DirectorySubspace dir, Transaction tx, boolean isReverse) {
+  public static AsyncIterable<KeyValue> getKVPairIterableOfDirectory(DirectorySubspace dir, ReadTransaction tx, boolean isReverse) {
+    return getKVPairIterableOfDirectory(dir, tx, ReadTransaction.ROW_LIMIT_UNLIMITED, isReverse, StreamingMode.ITERATOR);
+  }
+
+  public static AsyncIterable<KeyValue> getKVPairIterableOfDirectory(DirectorySubspace dir, ReadTransaction tx, int limit,
+                                                                     boolean isReverse, StreamingMode streamingMode) {
     if (dir == null) {
       return null;
     }
 
     Range dirRange = dir.range();
-    return tx.getRange(dirRange, ReadTransaction.ROW_LIMIT_UNLIMITED, isReverse);
+    Metrics.increment(Metrics.RANGE_READS);
+    return tx.getRange(dirRange, limit, isReverse, streamingMode);
+  }
+
+  public static AsyncIterable<KeyValue> getKVPairIterableWithPrefixInDirectory(DirectorySubspace dir, ReadTransaction tx, Tuple prefixTuple, boolean isReverse) {
+    return getKVPairIterableWithPrefixInDirectory(dir, tx, prefixTuple, isReverse, StreamingMode.ITERATOR);
   }
 
-  public static AsyncIterable<KeyValue> getKVPairIterableWithPrefixInDirectory(DirectorySubspace dir, Transaction tx, Tuple prefixTuple, boolean isReverse) {
+  public static AsyncIterable<KeyValue> getKVPairIterableWithPrefixInDirectory(DirectorySubspace dir, ReadTransaction tx, Tuple prefixTuple,
+                                                                               boolean isReverse, StreamingMode streamingMode) {
     if (dir == null) {
       return null;
     }
-    return tx.getRange(Range.startsWith(dir.pack(prefixTuple)), ReadTransaction.ROW_LIMIT_UNLIMITED, isReverse);
+    Metrics.increment(Metrics.RANGE_READS);
+    return tx.getRange(Range.startsWith(dir.pack(prefixTuple)), ReadTransaction.ROW_LIMIT_UNLIMITED, isReverse, streamingMode);
   }
 
-  public static AsyncIterable<KeyValue> getKVPairIterableStartWithPrefixInDirectory(DirectorySubspace dir, Transaction tx, Tuple prefixTuple, boolean isReverse) {
+  public static AsyncIterable<KeyValue> getKVPairIterableStartWithPrefixInDirectory(DirectorySubspace dir, ReadTransaction tx, Tuple prefixTuple, boolean isReverse) {
     if (dir == null) {
       return null;
     }
 
+    Metrics.increment(Metrics.RANGE_READS);
     if (!isReverse) {
       KeySelector beginKeySelector = KeySelector.firstGreaterOrEqual(dir.pack(prefixTuple));
 
@@ -82,21 +146,34 @@ public class FDBHelper {
     tx.set(tgtSubspace.pack(kv.getKey()), kv.getValue().pack());
   }
 
-  public static List<String> getAllDirectSubspaceName(Transaction tx) {
+  public static List<String> getAllDirectSubspaceName(ReadTransaction tx) {
+    long startNanos = Metrics.startTimer();
     List<String> subpaths = DirectoryLayer.getDefault().list(tx).join();
+    recordDirectoryOperation(startNanos);
     return subpaths;
   }
 
-  public static List<FDBKVPair> getAllKeyValuePairsOfSubdirectory(Transaction tx, List<String> path) {
+  public static List<String> getAllDirectSubspaceName(ReadTransaction tx, List<String> path) {
+    long startNanos = Metrics.startTimer();
+    List<String> subpaths = DirectoryLayer.getDefault().list(tx, path).join();
+    recordDirectoryOperation(startNanos);
+    return subpaths;
+  }
+
+  public static List<FDBKVPair> getAllKeyValuePairsOfSubdirectory(ReadTransaction tx, List<String> path) {
     List<FDBKVPair> res = new ArrayList<>();
     if (!doesSubdirectoryExists(tx, path)) {
       return res;
     }
 
-    DirectorySubspace dir = FDBHelper.createOrOpenSubspace(tx, path);
+    DirectorySubspace dir = FDBHelper.openSubspace(tx, path);
     Range range = dir.range();
 
+    long startNanos = Metrics.startTimer();
     List<KeyValue> kvs = tx.getRange(range).asList().join();
+    Metrics.recordLatency(Metrics.READ_LATENCY, startNanos);
+    Metrics.increment(Metrics.RANGE_READS);
+    Metrics.increment(Metrics.KEYS_SCANNED, kvs.size());
     for (KeyValue kv : kvs) {
       Tuple key = dir.unpack(kv.getKey());
       Tuple value = Tuple.fromBytes(kv.getValue());
@@ -106,11 +183,14 @@ public class FDBHelper {
     return res;
   }
 
-  public static FDBKVPair getCertainKeyValuePairInSubdirectory(DirectorySubspace dir, Transaction tx, Tuple keyTuple, List<String> path) {
+  public static FDBKVPair getCertainKeyValuePairInSubdirectory(DirectorySubspace dir, ReadTransaction tx, Tuple keyTuple, List<String> path) {
     if (dir == null) {
       return null;
     }
+    long startNanos = Metrics.startTimer();
     byte[] valBytes = tx.get(dir.pack(keyTuple)).join();
+    Metrics.recordLatency(Metrics.READ_LATENCY, startNanos);
+    Metrics.increment(Metrics.READS);
     if (valBytes == null) {
       return null;
     }
@@ -118,28 +198,45 @@ public class FDBHelper {
     return new FDBKVPair(path, keyTuple, value);
   }
 
-  public static void clear(Database db) {
-    Transaction tx = openTransaction(db);
+  public static StatusCode clear(Database db) {
     final byte[] st = new Subspace(new byte[]{(byte) 0x00}).getKey();
     final byte[] en = new Subspace(new byte[]{(byte) 0xFF}).getKey();
-    tx.clear(st, en);
-    commitTransaction(tx);
+    return runTransaction(db, tx -> {
+      tx.clear(st, en);
+      return StatusCode.SUCCESS;
+    });
   }
 
   public static DirectorySubspace createOrOpenSubspace(Transaction tx, List<String> path) {
-    return DirectoryLayer.getDefault().createOrOpen(tx, path).join();
+    long startNanos = Metrics.startTimer();
+    DirectorySubspace dir = DirectoryLayer.getDefault().createOrOpen(tx, path).join();
+    recordDirectoryOperation(startNanos);
+    return dir;
   }
 
-  public static DirectorySubspace openSubspace(Transaction tx, List<String> path) {
-    return DirectoryLayer.getDefault().open(tx, path).join();
+  public static DirectorySubspace openSubspace(ReadTransaction tx, List<String> path) {
+    long startNanos = Metrics.startTimer();
+    DirectorySubspace dir = DirectoryLayer.getDefault().open(tx, path).join();
+    recordDirectoryOperation(startNanos);
+    return dir;
   }
 
-  public static boolean doesSubdirectoryExists(Transaction tx, List<String> path) {
-    return DirectoryLayer.getDefault().exists(tx, path).join();
+  public static boolean doesSubdirectoryExists(ReadTransaction tx, List<String> path) {
+    long startNanos = Metrics.startTimer();
+    boolean isExisting = DirectoryLayer.getDefault().exists(tx, path).join();
+    recordDirectoryOperation(startNanos);
+    return isExisting;
   }
 
   public static void dropSubspace(Transaction tx, List<String> path) {
+    long startNanos = Metrics.startTimer();
     DirectoryLayer.getDefault().remove(tx, path).join();
+    recordDirectoryOperation(startNanos);
+  }
+
+  private static void recordDirectoryOperation(long startNanos) {
+    Metrics.increment(Metrics.DIRECTORY_LOOKUPS);
+    Metrics.recordLatency(Metrics.DIRECTORY_LATENCY, startNanos);
   }
 
   public static void removeKeyValuePair(DirectorySubspace dir, Transaction tx, Tuple keyTuple) {
@@ -150,26 +247,165 @@ public class FDBHelper {
     return db.createTransaction();
   }
 
+  /**
+   * Commit the transaction once. On failure the transaction is cancelled, its writes are lost.
+   * Operations that can be re-executed should use runTransaction, which retries them.
+   * @return true if the transaction is committed
+   */
   public static boolean commitTransaction(Transaction tx) {
-    return tryCommitTx(tx, 0);
+    try {
+      long startNanos = Metrics.startTimer();
+      tx.commit().join();
+      recordCommit(startNanos);
+      return true;
+    } catch (RuntimeException e) {
+      System.out.println("ERROR: the transaction is not committed: " + e);
+      FDBException fdbException = getFDBException(e);
+      if (fdbException != null) {
+        recordError(fdbException);
+      }
+      Metrics.increment(Metrics.COMMIT_FAILURES);
+      tx.cancel();
+      return false;
+    } finally {
+      tx.close();
+    }
   }
 
-  public static boolean tryCommitTx(Transaction tx, int retryCounter) {
+  /**
+   * Run the body in a new transaction and commit it. The body returns the StatusCode of the operation, a status other
+   * than SUCCESS aborts the transaction and is returned as is.
+   *
+   * When the body or the commit fails with a retryable FDB error (e.g. a conflict), the transaction is reset with
+   * onError, which waits with FDB's exponential backoff, and the whole body runs again. The body must therefore only
+   * act through the transaction. Non-retryable errors, and running out of attempts, give INTERNAL_STORAGE_FAILURE.
+   */
+  public static StatusCode runTransaction(Database db, Function<Transaction, StatusCode> body) {
+    Transaction tx = openTransaction(db);
     try {
-      tx.commit().join();
+      for (int attempt = 0; ; attempt++) {
+        try {
+          StatusCode status = body.apply(tx);
+          if (status != StatusCode.SUCCESS) {
+            tx.cancel();
+            return status;
+          }
+          long startNanos = Metrics.startTimer();
+          tx.commit().join();
+          recordCommit(startNanos);
+          return StatusCode.SUCCESS;
+        } catch (RuntimeException e) {
+          FDBException fdbException = getFDBException(e);
+          if (fdbException == null) {
+            // not a storage error, the body itself is broken
+            throw e;
+          }
+          recordError(fdbException);
+          if (attempt >= MAX_TRANSACTION_COMMIT_RETRY_TIMES) {
+            System.out.println("ERROR: the transaction is not committed after " + attempt + " retries: " + fdbException);
+            Metrics.increment(Metrics.COMMIT_FAILURES);
+            return StatusCode.INTERNAL_STORAGE_FAILURE;
+          }
+          try {
+            // throws the error again if it is not retryable
+            tx = tx.onError(fdbException).join();
+            Metrics.increment(Metrics.RETRIES);
+          } catch (RuntimeException fatal) {
+            System.out.println("ERROR: the transaction is not committed: " + fdbException);
+            Metrics.increment(Metrics.COMMIT_FAILURES);
+            return StatusCode.INTERNAL_STORAGE_FAILURE;
+          }
+        }
+      }
+    } finally {
       tx.close();
-      return true;
-    } catch (FDBException e) {
-      if (retryCounter < MAX_TRANSACTION_COMMIT_RETRY_TIMES) {
-        retryCounter++;
-        tryCommitTx(tx, retryCounter);
-      } else {
+    }
+  }
+
+  /**
+   * The asynchronous counterpart of runTransaction. The body returns a future of the operation's StatusCode instead of
+   * blocking, and the retries chain on FDB's futures, so no thread waits for the storage while the operation runs.
+   */
+  public static CompletableFuture<StatusCode> runTransactionAsync(Database db, Function<Transaction, CompletableFuture<StatusCode>> body) {
+    return runTransactionAsync(openTransaction(db), body, 0);
+  }
+
+  private static CompletableFuture<StatusCode> runTransactionAsync(Transaction tx, Function<Transaction, CompletableFuture<StatusCode>> body, int attempt) {
+    CompletableFuture<StatusCode> result;
+    try {
+      result = body.apply(tx);
+    } catch (RuntimeException e) {
+      result = CompletableFuture.failedFuture(e);
+    }
+
+    return result.thenCompose(status -> {
+      if (status != StatusCode.SUCCESS) {
         tx.cancel();
+        return CompletableFuture.completedFuture(status);
+      }
+      long startNanos = Metrics.startTimer();
+      return tx.commit().thenApply(v -> {
+        recordCommit(startNanos);
+        return StatusCode.SUCCESS;
+      });
+    }).handle((status, e) -> {
+      if (e == null) {
         tx.close();
-        return false;
+        return CompletableFuture.completedFuture(status);
       }
+      FDBException fdbException = getFDBException(e);
+      if (fdbException == null) {
+        // not a storage error, the body itself is broken
+        tx.close();
+        return CompletableFuture.<StatusCode>failedFuture(e);
+      }
+      recordError(fdbException);
+      if (attempt >= MAX_TRANSACTION_COMMIT_RETRY_TIMES) {
+        System.out.println("ERROR: the transaction is not committed after " + attempt + " retries: " + fdbException);
+        Metrics.increment(Metrics.COMMIT_FAILURES);
+        tx.close();
+        return CompletableFuture.completedFuture(StatusCode.INTERNAL_STORAGE_FAILURE);
+      }
+      // onError fails with the error again if it is not retryable, and closes the transaction then
+      return tx.onError(fdbException).handle((retryTx, fatal) -> {
+        if (fatal != null) {
+          System.out.println("ERROR: the transaction is not committed: " + fdbException);
+          Metrics.increment(Metrics.COMMIT_FAILURES);
+          return CompletableFuture.completedFuture(StatusCode.INTERNAL_STORAGE_FAILURE);
+        }
+        Metrics.increment(Metrics.RETRIES);
+        return runTransactionAsync(retryTx, body, attempt + 1);
+      }).thenCompose(retried -> retried);
+    }).thenCompose(done -> done);
+  }
+
+  private static void recordCommit(long startNanos) {
+    Metrics.recordLatency(Metrics.COMMIT_LATENCY, startNanos);
+    Metrics.increment(Metrics.COMMITS);
+  }
+
+  private static void recordError(FDBException fdbException) {
+    if (fdbException.getCode() == NOT_COMMITTED_ERROR_CODE) {
+      Metrics.increment(Metrics.CONFLICTS);
     }
-    return false;
+  }
+
+  private static FDBException getFDBException(Throwable e) {
+    while (e != null) {
+      if (e instanceof FDBException) {
+        return (FDBException) e;
+      }
+      e = e.getCause();
+    }
+    return null;
+  }
+
+  /**
+   * Check if the exception, or one of its causes, is the error of a transaction that outlived FDB's 5-second limit.
+   */
+  public static boolean isTransactionTooOld(Throwable e) {
+    FDBException fdbException = getFDBException(e);
+    return fdbException != null && fdbException.getCode() == TRANSACTION_TOO_OLD_ERROR_CODE;
   }
 
   public static void abortTransaction(Transaction tx) {
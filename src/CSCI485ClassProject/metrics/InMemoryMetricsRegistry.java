@@ -0,0 +1,165 @@
+package CSCI485ClassProject.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * InMemoryMetricsRegistry keeps the counters and latency histograms in memory, and hands every closed span to an
+ * optional trace sink, e.g. System.out::println.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+  /**
+   * Latencies in power-of-two buckets of nanoseconds, precise enough to compare runs at a constant recording cost.
+   */
+  public static class LatencyHistogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+      nanos = Math.max(0, nanos);
+      buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos) - (nanos == 0 ? 0 : 1));
+      count.increment();
+      sumNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    public long getMeanNanos() {
+      long n = count.sum();
+      return n == 0 ? 0 : sumNanos.sum() / n;
+    }
+
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
+
+    /**
+     * Get the upper bound of the bucket holding the given percentile, e.g. 99 for the p99 latency.
+     */
+    public long getPercentileNanos(double percentile) {
+      long n = count.sum();
+      long rank = (long) Math.ceil(n * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < buckets.length(); i++) {
+        seen += buckets.get(i);
+        if (seen >= rank && seen > 0) {
+          return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+        }
+      }
+      return 0;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + getCount() + " mean=" + getMeanNanos() / 1000 + "us p50=" + getPercentileNanos(50) / 1000
+          + "us p99=" + getPercentileNanos(99) / 1000 + "us max=" + getMaxNanos() / 1000 + "us";
+    }
+  }
+
+  private class RecordingSpan implements TraceSpan {
+    private final String operationName;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+    private boolean isClosed = false;
+
+    private RecordingSpan(String operationName) {
+      this.operationName = operationName;
+    }
+
+    @Override
+    public synchronized void setAttribute(String name, Object value) {
+      attributes.put(name, value);
+    }
+
+    @Override
+    public synchronized void close() {
+      if (isClosed) {
+        return;
+      }
+      isClosed = true;
+      long nanos = System.nanoTime() - startNanos;
+      recordLatency(operationName, nanos);
+      Consumer<String> sink = traceSink;
+      if (sink != null) {
+        sink.accept(operationName + " " + nanos / 1000 + "us " + attributes);
+      }
+    }
+  }
+
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+  private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+  private volatile Consumer<String> traceSink = null;
+
+  /**
+   * Hand every closed span, formatted as one line, to the sink. Null stops tracing.
+   */
+  public void setTraceSink(Consumer<String> traceSink) {
+    this.traceSink = traceSink;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public void increment(String counterName, long delta) {
+    counters.computeIfAbsent(counterName, name -> new LongAdder()).add(delta);
+  }
+
+  @Override
+  public void recordLatency(String histogramName, long nanos) {
+    histograms.computeIfAbsent(histogramName, name -> new LatencyHistogram()).record(nanos);
+  }
+
+  @Override
+  public TraceSpan startSpan(String operationName) {
+    return new RecordingSpan(operationName);
+  }
+
+  public long getCounter(String counterName) {
+    LongAdder counter = counters.get(counterName);
+    return counter == null ? 0 : counter.sum();
+  }
+
+  /**
+   * Get the histogram, or null if nothing was recorded in it.
+   */
+  public LatencyHistogram getHistogram(String histogramName) {
+    return histograms.get(histogramName);
+  }
+
+  public void reset() {
+    counters.clear();
+    histograms.clear();
+  }
+
+  /**
+   * Report every counter and histogram, one per line in name order.
+   */
+  @Override
+  public String toString() {
+    StringBuilder report = new StringBuilder();
+    for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+      report.append(counter.getKey()).append(' ').append(counter.getValue().sum()).append('\n');
+    }
+    for (Map.Entry<String, LatencyHistogram> histogram : new TreeMap<>(histograms).entrySet()) {
+      report.append(histogram.getKey()).append(' ').append(histogram.getValue()).append('\n');
+    }
+    return report.toString();
+  }
+}
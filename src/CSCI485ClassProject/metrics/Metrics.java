@@ -0,0 +1,74 @@
+package CSCI485ClassProject.metrics;
+
+/**
+ * Metrics holds the registry the database reports to, and the names of the counters and histograms it reports.
+ * Nothing is measured until a registry is set.
+ */
+public class Metrics {
+
+  // single key reads, and range reads issued
+  public static final String READS = "fdb.reads";
+  public static final String RANGE_READS = "fdb.rangeReads";
+  public static final String READ_LATENCY = "fdb.read.latency";
+
+  // keys and bytes read by scans, and the records the scans returned
+  public static final String KEYS_SCANNED = "fdb.keysScanned";
+  public static final String BYTES_SCANNED = "fdb.bytesScanned";
+  public static final String RECORDS_RETURNED = "records.returned";
+
+  // commits, commits retried after a retryable error, conflicts among them, and transactions given up
+  public static final String COMMITS = "fdb.commits";
+  public static final String RETRIES = "fdb.retries";
+  public static final String CONFLICTS = "fdb.conflicts";
+  public static final String COMMIT_FAILURES = "fdb.commitFailures";
+  public static final String COMMIT_LATENCY = "fdb.commit.latency";
+
+  // directory layer operations: lookups, existence checks, listings, creations and removals
+  public static final String DIRECTORY_LOOKUPS = "fdb.directoryLookups";
+  public static final String DIRECTORY_LATENCY = "fdb.directory.latency";
+
+  private static volatile MetricsRegistry registry = MetricsRegistry.NOOP;
+
+  /**
+   * Report to the registry from now on, null to stop reporting.
+   */
+  public static void setRegistry(MetricsRegistry metricsRegistry) {
+    registry = metricsRegistry == null ? MetricsRegistry.NOOP : metricsRegistry;
+  }
+
+  public static MetricsRegistry getRegistry() {
+    return registry;
+  }
+
+  public static boolean isEnabled() {
+    return registry.isEnabled();
+  }
+
+  public static void increment(String counterName) {
+    registry.increment(counterName, 1);
+  }
+
+  public static void increment(String counterName, long delta) {
+    registry.increment(counterName, delta);
+  }
+
+  /**
+   * Start timing, 0 if nothing is measured.
+   */
+  public static long startTimer() {
+    return registry.isEnabled() ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Record the latency since a startTimer() call.
+   */
+  public static void recordLatency(String histogramName, long startNanos) {
+    if (startNanos != 0) {
+      registry.recordLatency(histogramName, System.nanoTime() - startNanos);
+    }
+  }
+
+  public static TraceSpan startSpan(String operationName) {
+    return registry.startSpan(operationName);
+  }
+}
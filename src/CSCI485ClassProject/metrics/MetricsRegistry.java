@@ -0,0 +1,42 @@
+package CSCI485ClassProject.metrics;
+
+/**
+ * MetricsRegistry receives the counters, latencies and spans of the database operations.
+ * Implementations must be thread-safe, and cheap, as they are called on the hot paths.
+ */
+public interface MetricsRegistry {
+
+  MetricsRegistry NOOP = new MetricsRegistry() {
+    @Override
+    public boolean isEnabled() {
+      return false;
+    }
+
+    @Override
+    public void increment(String counterName, long delta) {
+    }
+
+    @Override
+    public void recordLatency(String histogramName, long nanos) {
+    }
+
+    @Override
+    public TraceSpan startSpan(String operationName) {
+      return TraceSpan.NOOP;
+    }
+  };
+
+  /**
+   * False if the registry drops everything, so that callers can skip measuring.
+   */
+  boolean isEnabled();
+
+  void increment(String counterName, long delta);
+
+  void recordLatency(String histogramName, long nanos);
+
+  /**
+   * Start the span of an operation. Its latency is recorded in the histogram of the operation's name when it closes.
+   */
+  TraceSpan startSpan(String operationName);
+}
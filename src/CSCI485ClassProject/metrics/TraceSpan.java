@@ -0,0 +1,25 @@
+package CSCI485ClassProject.metrics;
+
+/**
+ * TraceSpan covers one operation from its start to its close, carrying attributes describing what it did.
+ */
+public interface TraceSpan extends AutoCloseable {
+
+  TraceSpan NOOP = new TraceSpan() {
+    @Override
+    public void setAttribute(String name, Object value) {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  void setAttribute(String name, Object value);
+
+  /**
+   * End the span. Closing twice has no further effect.
+   */
+  @Override
+  void close();
+}
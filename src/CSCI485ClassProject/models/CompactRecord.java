@@ -0,0 +1,234 @@
+package CSCI485ClassProject.models;
+
+import com.apple.foundationdb.tuple.Tuple;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CompactRecord stores the values of a record in the column slots of its table, the slots of TableMetadata's column
+ * ordinals. INT values are kept in a long[] and DOUBLE values in a double[], without boxing, VARCHAR values in an
+ * Object[], and a bitmap tells which slots hold a value. A value can also be kept as its packed tuple bytes, and is
+ * only decoded when it is read.
+ */
+public class CompactRecord {
+
+  /**
+   * Layout maps the attributes of a table to their slots and types. It is shared by the records of a scan.
+   */
+  public static class Layout {
+    private final String[] attrNames;
+    private final AttributeType[] attrTypes;
+    private final Map<String, Integer> slotOfAttrName;
+
+    /**
+     * Build the layout of the given attributes. Slots of dropped attributes stay empty, slots are never reused.
+     */
+    public Layout(Map<String, AttributeType> attributes, Map<String, Integer> columnOrdinals) {
+      int slotCount = 0;
+      for (String attrName : attributes.keySet()) {
+        slotCount = Math.max(slotCount, columnOrdinals.get(attrName) + 1);
+      }
+      attrNames = new String[slotCount];
+      attrTypes = new AttributeType[slotCount];
+      for (Map.Entry<String, AttributeType> attribute : attributes.entrySet()) {
+        int slot = columnOrdinals.get(attribute.getKey());
+        attrNames[slot] = attribute.getKey();
+        attrTypes[slot] = attribute.getValue();
+      }
+      slotOfAttrName = new HashMap<>(columnOrdinals);
+    }
+
+    public int getSlotCount() {
+      return attrNames.length;
+    }
+
+    /**
+     * Get the slot of the attribute, -1 if the table does not have the attribute.
+     */
+    public int getSlot(String attrName) {
+      Integer slot = slotOfAttrName.get(attrName);
+      return slot == null || slot >= attrNames.length || !attrName.equals(attrNames[slot]) ? -1 : slot;
+    }
+
+    /**
+     * Get the attribute of the slot, null if no attribute of the table has the slot.
+     */
+    public String getAttrName(int slot) {
+      return attrNames[slot];
+    }
+
+    public AttributeType getAttrType(int slot) {
+      return attrTypes[slot];
+    }
+  }
+
+  private final Layout layout;
+
+  private final long[] longValues;
+  private final double[] doubleValues;
+  // VARCHAR values, and values not of their attribute's type
+  private final Object[] objectValues;
+  // packed tuples (value) of the values not decoded yet
+  private final byte[][] rawValues;
+  // bit i is set if slot i holds a value
+  private final long[] presentSlots;
+
+  public CompactRecord(Layout layout) {
+    this.layout = layout;
+    int slotCount = layout.getSlotCount();
+    longValues = new long[slotCount];
+    doubleValues = new double[slotCount];
+    objectValues = new Object[slotCount];
+    rawValues = new byte[slotCount][];
+    presentSlots = new long[(slotCount + 63) / 64];
+  }
+
+  public Layout getLayout() {
+    return layout;
+  }
+
+  public boolean isPresent(int slot) {
+    return (presentSlots[slot >>> 6] & (1L << slot)) != 0;
+  }
+
+  /**
+   * Check if the slot holds a value of its attribute's type stored unboxed, an INT value getLong returns or a DOUBLE
+   * value getDouble returns.
+   */
+  public boolean isPrimitive(int slot) {
+    return isPresent(slot) && objectValues[slot] == null && rawValues[slot] == null;
+  }
+
+  /**
+   * Check if the slot holds an INT value, which getLong returns without boxing.
+   */
+  public boolean isLong(int slot) {
+    return isPrimitive(slot) && layout.getAttrType(slot) == AttributeType.INT;
+  }
+
+  /**
+   * Check if the slot holds a DOUBLE value, which getDouble returns without boxing.
+   */
+  public boolean isDouble(int slot) {
+    return isPrimitive(slot) && layout.getAttrType(slot) == AttributeType.DOUBLE;
+  }
+
+  /**
+   * Get the packed tuple (value) of the slot, null if the slot holds no value or its value was decoded.
+   */
+  public byte[] getRawValue(int slot) {
+    return isPresent(slot) ? rawValues[slot] : null;
+  }
+
+  public long getLong(int slot) {
+    return longValues[slot];
+  }
+
+  public double getDouble(int slot) {
+    return doubleValues[slot];
+  }
+
+  /**
+   * Get the value of the slot, boxed, or null if the slot holds no value.
+   */
+  public Object getValue(int slot) {
+    if (!isPresent(slot)) {
+      return null;
+    }
+    if (rawValues[slot] != null) {
+      objectValues[slot] = Tuple.fromBytes(rawValues[slot]).get(0);
+      rawValues[slot] = null;
+    }
+    if (objectValues[slot] != null) {
+      return objectValues[slot];
+    }
+    if (layout.getAttrType(slot) == AttributeType.INT) {
+      return longValues[slot];
+    }
+    return doubleValues[slot];
+  }
+
+  public Object getValue(String attrName) {
+    int slot = layout.getSlot(attrName);
+    return slot < 0 ? null : getValue(slot);
+  }
+
+  public void setLong(int slot, long value) {
+    longValues[slot] = value;
+    objectValues[slot] = null;
+    rawValues[slot] = null;
+    presentSlots[slot >>> 6] |= 1L << slot;
+  }
+
+  public void setDouble(int slot, double value) {
+    doubleValues[slot] = value;
+    objectValues[slot] = null;
+    rawValues[slot] = null;
+    presentSlots[slot >>> 6] |= 1L << slot;
+  }
+
+  /**
+   * Set the value of the slot, a null value empties the slot. INT and DOUBLE values of attributes of their type are
+   * stored unboxed.
+   */
+  public void setValue(int slot, Object value) {
+    AttributeType attrType = layout.getAttrType(slot);
+    if (value == null) {
+      clearSlot(slot);
+    } else if (attrType == AttributeType.INT && (value instanceof Long || value instanceof Integer)) {
+      setLong(slot, ((Number) value).longValue());
+    } else if (attrType == AttributeType.DOUBLE && value instanceof Double) {
+      setDouble(slot, (Double) value);
+    } else {
+      objectValues[slot] = value;
+      rawValues[slot] = null;
+      presentSlots[slot >>> 6] |= 1L << slot;
+    }
+  }
+
+  /**
+   * Set the value of the slot to the packed tuple (value), decoded when it is first read.
+   */
+  public void setRawValue(int slot, byte[] rawValue) {
+    objectValues[slot] = null;
+    rawValues[slot] = rawValue;
+    presentSlots[slot >>> 6] |= 1L << slot;
+  }
+
+  public void clearSlot(int slot) {
+    objectValues[slot] = null;
+    rawValues[slot] = null;
+    presentSlots[slot >>> 6] &= ~(1L << slot);
+  }
+
+  /**
+   * Empty every slot, so that the record can be filled again.
+   */
+  public void clear() {
+    Arrays.fill(objectValues, null);
+    Arrays.fill(rawValues, null);
+    Arrays.fill(presentSlots, 0);
+  }
+
+  /**
+   * Get the next slot holding a value from the given slot on, -1 if there is none.
+   */
+  public int nextPresentSlot(int slot) {
+    int word = slot >>> 6;
+    if (word >= presentSlots.length) {
+      return -1;
+    }
+    long bits = presentSlots[word] & (-1L << slot);
+    while (true) {
+      if (bits != 0) {
+        return word * 64 + Long.numberOfTrailingZeros(bits);
+      }
+      if (++word == presentSlots.length) {
+        return -1;
+      }
+      bits = presentSlots[word];
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package CSCI485ClassProject.models;
+
+/**
+ * IndexState defines whether an index can be used by queries.
+ * - BUILDING: entries of the existing records are still being added, the index is maintained but not readable
+ * - READABLE: the index covers every record of the table
+ */
+public enum IndexState {
+  BUILDING,
+  READABLE
+}
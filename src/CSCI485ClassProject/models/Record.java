@@ -16,6 +16,9 @@ import static CSCI485ClassProject.StatusCode.SUCCESS;
  * Record represents the data stored in the database
  * - for a record in a table, it maps the attribute names to the corresponding values
  * - for an index record, it maps your defined attributes to the corresponding values
+ *
+ * A record read by a cursor is backed by a CompactRecord. Its values are read from the compact form, and the map is
+ * only built when it is asked for or the record is changed.
  */
 public class Record {
 
@@ -92,28 +95,56 @@ public class Record {
   }
 
   /**
-   * Map from the attribute name to the corresponding value
+   * Map from the attribute name to the corresponding value, null until built from the compact record
    */
   private HashMap<String, Value> mapAttrNameToValue;
 
+  /**
+   * The values of the record, until the map is built
+   */
+  private CompactRecord compactRecord = null;
+
   public Record() {
     mapAttrNameToValue = new HashMap<>();
   }
 
+  public Record(CompactRecord compactRecord) {
+    mapAttrNameToValue = null;
+    this.compactRecord = compactRecord;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
     if (o == null || getClass() != o.getClass()) return false;
     Record record = (Record) o;
-    return Objects.equals(mapAttrNameToValue, record.mapAttrNameToValue);
+    return Objects.equals(getMapAttrNameToValue(), record.getMapAttrNameToValue());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(mapAttrNameToValue);
+    return Objects.hash(getMapAttrNameToValue());
+  }
+
+  /**
+   * Get the compact form of the record, null once the map view was built.
+   */
+  public CompactRecord getCompactRecord() {
+    return compactRecord;
   }
 
   public HashMap<String, Value> getMapAttrNameToValue() {
+    if (mapAttrNameToValue == null) {
+      // the map takes over, later changes of the record are made to the map only
+      mapAttrNameToValue = new HashMap<>();
+      CompactRecord.Layout layout = compactRecord.getLayout();
+      for (int slot = compactRecord.nextPresentSlot(0); slot >= 0; slot = compactRecord.nextPresentSlot(slot + 1)) {
+        Value val = new Value();
+        val.setValue(compactRecord.getValue(slot));
+        mapAttrNameToValue.put(layout.getAttrName(slot), val);
+      }
+      compactRecord = null;
+    }
     return mapAttrNameToValue;
   }
 
@@ -130,7 +161,7 @@ public class Record {
       return status;
     }
 
-    mapAttrNameToValue.put(attrName, val);
+    getMapAttrNameToValue().put(attrName, val);
     return SUCCESS;
   }
 
@@ -155,7 +186,7 @@ public class Record {
 
     int i = 0;
     for (String key : mapAttrNameToValue.keySet()) {
-      this.mapAttrNameToValue.put(key, values.get(i));
+      getMapAttrNameToValue().put(key, values.get(i));
       i++;
     }
 
@@ -163,6 +194,9 @@ public class Record {
   }
 
   public Object getValueForGivenAttrName(String attrName) {
+    if (compactRecord != null) {
+      return compactRecord.getValue(attrName);
+    }
     if (mapAttrNameToValue.containsKey(attrName)) {
       return mapAttrNameToValue.get(attrName).getValue();
     }
@@ -170,13 +204,22 @@ public class Record {
   }
 
   public int getHashCodeForGivenAttrName(String attrName) {
-    if (mapAttrNameToValue.containsKey(attrName)) {
+    if (getMapAttrNameToValue().containsKey(attrName)) {
       return mapAttrNameToValue.get(attrName).hashCode();
     }
     return 0;
   }
 
   public AttributeType getTypeForGivenAttrName(String attrName) {
+    if (compactRecord != null) {
+      Object value = compactRecord.getValue(attrName);
+      if (value == null) {
+        return null;
+      }
+      Value val = new Value();
+      val.setValue(value);
+      return val.getType();
+    }
     if (mapAttrNameToValue.containsKey(attrName)) {
       return mapAttrNameToValue.get(attrName).getType();
     }
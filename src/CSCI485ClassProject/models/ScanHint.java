@@ -0,0 +1,16 @@
+package CSCI485ClassProject.models;
+
+/**
+ * ScanHint tells a cursor how many records it is expected to read, so that its range reads fetch batches of the
+ * right size.
+ * - POINT_LOOKUP: one or a few records, nothing is read ahead
+ * - SMALL: a small part of the table
+ * - ITERATOR: an unknown number of records, batches grow as the scan goes on
+ * - BULK: the whole range is read, as fast as possible, e.g. for exports
+ */
+public enum ScanHint {
+  POINT_LOOKUP,
+  SMALL,
+  ITERATOR,
+  BULK
+}
@@ -0,0 +1,11 @@
+package CSCI485ClassProject.models;
+
+/**
+ * StorageFormat defines how the data records of a table are laid out in FDB.
+ * - KEY_PER_ATTRIBUTE: one key (primaryKeyValues..., attrName) per attribute, value (attrValue)
+ * - ROW_PACKED: one key (primaryKeyValues...) per record, value (layoutVersion, column0, column1, ...)
+ */
+public enum StorageFormat {
+  KEY_PER_ATTRIBUTE,
+  ROW_PACKED
+}
@@ -22,28 +22,48 @@ public class TableMetadata {
   // A list contains names of the primary key attribute.
   private Set<String> primaryKeys;
 
+  // How the data records of the table are stored
+  private StorageFormat storageFormat = StorageFormat.KEY_PER_ATTRIBUTE;
+
+  // Map from AttributeName to its column slot in the ROW_PACKED layout
+  private HashMap<String, Integer> columnOrdinals;
+
+  // Number of column slots ever allocated. Slots are never reused, so it doubles as the layout version.
+  private int layoutVersion = 0;
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
     if (o == null || getClass() != o.getClass()) return false;
     TableMetadata table = (TableMetadata) o;
-    return Objects.equals(attributes, table.attributes) && Objects.equals(primaryKeys, table.primaryKeys);
+    return Objects.equals(attributes, table.attributes) && Objects.equals(primaryKeys, table.primaryKeys)
+        && storageFormat == table.storageFormat;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(attributes, primaryKeys);
+    return Objects.hash(attributes, primaryKeys, storageFormat);
   }
 
   public TableMetadata() {
     attributes = new HashMap<>();
     primaryKeys = new HashSet<>();
+    columnOrdinals = new HashMap<>();
+  }
+
+  public TableMetadata(TableMetadata tableMetadata) {
+    attributes = new HashMap<>(tableMetadata.attributes);
+    primaryKeys = new HashSet<>(tableMetadata.primaryKeys);
+    storageFormat = tableMetadata.storageFormat;
+    columnOrdinals = new HashMap<>(tableMetadata.columnOrdinals);
+    layoutVersion = tableMetadata.layoutVersion;
   }
 
   public TableMetadata(String[] attributeNames, AttributeType[] attributeTypes, String[] primaryKeys) {
     attributes = new HashMap<>();
+    columnOrdinals = new HashMap<>();
     for (int i = 0; i < attributeTypes.length; i++) {
-      attributes.put(attributeNames[i], attributeTypes[i]);
+      addAttribute(attributeNames[i], attributeTypes[i]);
     }
     this.primaryKeys = new HashSet<>();
     this.primaryKeys.addAll(Arrays.asList(primaryKeys));
@@ -55,6 +75,19 @@ public class TableMetadata {
 
   public void addAttribute(String attributeName, AttributeType attributeType) {
     attributes.put(attributeName, attributeType);
+    if (!columnOrdinals.containsKey(attributeName)) {
+      columnOrdinals.put(attributeName, layoutVersion);
+      layoutVersion++;
+    }
+  }
+
+  /**
+   * Add an attribute whose column slot has already been allocated, e.g. when loading the schema from FDB.
+   */
+  public void addAttribute(String attributeName, AttributeType attributeType, int columnOrdinal) {
+    attributes.put(attributeName, attributeType);
+    columnOrdinals.put(attributeName, columnOrdinal);
+    layoutVersion = Math.max(layoutVersion, columnOrdinal + 1);
   }
 
   public HashMap<String, AttributeType> getAttributes() {
@@ -63,6 +96,40 @@ public class TableMetadata {
 
   public void setAttributes(HashMap<String, AttributeType> attributes) {
     this.attributes = attributes;
+    for (String attributeName : attributes.keySet()) {
+      if (!columnOrdinals.containsKey(attributeName)) {
+        columnOrdinals.put(attributeName, layoutVersion);
+        layoutVersion++;
+      }
+    }
+  }
+
+  public StorageFormat getStorageFormat() {
+    return storageFormat;
+  }
+
+  public void setStorageFormat(StorageFormat storageFormat) {
+    this.storageFormat = storageFormat;
+  }
+
+  /**
+   * Get the column slot of the attribute in the ROW_PACKED layout, or -1 if the attribute does not exist.
+   */
+  public int getColumnOrdinal(String attributeName) {
+    Integer ordinal = columnOrdinals.get(attributeName);
+    return ordinal == null ? -1 : ordinal;
+  }
+
+  public HashMap<String, Integer> getColumnOrdinals() {
+    return columnOrdinals;
+  }
+
+  public int getLayoutVersion() {
+    return layoutVersion;
+  }
+
+  public void setLayoutVersion(int layoutVersion) {
+    this.layoutVersion = Math.max(this.layoutVersion, layoutVersion);
   }
 
   public List<String> getPrimaryKeys() {
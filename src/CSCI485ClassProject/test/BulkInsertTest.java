@@ -0,0 +1,225 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.DBConf;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.RecordsImpl;
+import CSCI485ClassProject.RecordsTransformer;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.fdb.FDBKVPair;
+import CSCI485ClassProject.metrics.InMemoryMetricsRegistry;
+import CSCI485ClassProject.metrics.Metrics;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.TableMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BulkInsertTest covers Records.insertRecords: the split of the rows into transactions by the batch limits, and the
+ * rejection of primary keys duplicated in the rows or already stored.
+ */
+public class BulkInsertTest {
+
+  public static String EmployeeTableName = "Employee";
+  public static String SSN = "SSN";
+  public static String Name = "Name";
+  public static String Salary = "Salary";
+
+  public static String[] EmployeeTableAttributeNames = new String[]{SSN, Name};
+  public static AttributeType[] EmployeeTableAttributeTypes = new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR};
+  public static String[] EmployeeTablePKAttributes = new String[]{SSN};
+
+  public static int numberOfRecords = 100;
+
+  private TableManager tableManager;
+  private Records records;
+  private InMemoryMetricsRegistry registry;
+
+  private final int defaultBatchRecords = DBConf.BULK_INSERT_MAX_BATCH_RECORDS;
+  private final int defaultBatchBytes = DBConf.BULK_INSERT_MAX_BATCH_BYTES;
+
+  private String getName(long i) {
+    return "Name" + i;
+  }
+
+  private long getSalary(long i) {
+    return i + 100;
+  }
+
+  private Record getRecord(long i) {
+    Record record = new Record();
+    record.setAttrNameAndValue(SSN, i);
+    record.setAttrNameAndValue(Name, getName(i));
+    record.setAttrNameAndValue(Salary, getSalary(i));
+    return record;
+  }
+
+  private List<Record> getRecordsWithSSNs(long... ids) {
+    List<Record> res = new ArrayList<>();
+    for (long id : ids) {
+      res.add(getRecord(id));
+    }
+    return res;
+  }
+
+  private List<Record> getFirstRecords(int count) {
+    List<Record> res = new ArrayList<>();
+    for (long i = 0; i < count; i++) {
+      res.add(getRecord(i));
+    }
+    return res;
+  }
+
+  private List<Long> getStoredSSNs() {
+    List<Long> ssns = new ArrayList<>();
+    Cursor cursor = records.openCursor(EmployeeTableName, Cursor.Mode.READ);
+    assertNotNull(cursor);
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      assertEquals(getName((long) rec.getValueForGivenAttrName(SSN)), rec.getValueForGivenAttrName(Name));
+      assertEquals(getSalary((long) rec.getValueForGivenAttrName(SSN)), rec.getValueForGivenAttrName(Salary));
+      ssns.add((long) rec.getValueForGivenAttrName(SSN));
+    }
+    records.commitCursor(cursor);
+    return ssns;
+  }
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    records = new RecordsImpl();
+    registry = new InMemoryMetricsRegistry();
+    Metrics.setRegistry(registry);
+    tableManager.dropAllTables();
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(EmployeeTableName,
+        EmployeeTableAttributeNames, EmployeeTableAttributeTypes, EmployeeTablePKAttributes));
+  }
+
+  @After
+  public void close() {
+    DBConf.BULK_INSERT_MAX_BATCH_RECORDS = defaultBatchRecords;
+    DBConf.BULK_INSERT_MAX_BATCH_BYTES = defaultBatchBytes;
+    Metrics.setRegistry(null);
+    tableManager.closeDatabase();
+    records.closeDatabase();
+  }
+
+  /**
+   * The rows are committed in batches of at most BULK_INSERT_MAX_BATCH_RECORDS records, and the new column is added
+   * to the schema once.
+   */
+  @Test
+  public void unitTest1() {
+    DBConf.BULK_INSERT_MAX_BATCH_RECORDS = 7;
+    registry.reset();
+    assertEquals(StatusCode.SUCCESS, records.insertRecords(EmployeeTableName, getFirstRecords(numberOfRecords)));
+    assertEquals((numberOfRecords + 6) / 7, registry.getCounter(Metrics.COMMITS));
+
+    assertEquals(numberOfRecords, getStoredSSNs().size());
+    assertTrue(tableManager.listTables().get(EmployeeTableName).doesAttributeExist(Salary));
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * Get the bytes the record writes, its pairs once Salary is in the schema.
+   */
+  private long getRecordBytes(Record record) {
+    TableMetadata tblMetadata = new TableMetadata(new String[]{SSN, Name, Salary},
+        new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR, AttributeType.INT}, EmployeeTablePKAttributes);
+    long bytes = 0;
+    for (FDBKVPair kv : new RecordsTransformer(EmployeeTableName, tblMetadata).convertToFDBKVPairs(record)) {
+      bytes += kv.getKey().getPackedSize() + kv.getValue().getPackedSize();
+    }
+    return bytes;
+  }
+
+  /**
+   * A batch never goes past BULK_INSERT_MAX_BATCH_BYTES: a record whose bytes would take it past the limit goes to the
+   * next batch, and a record larger than the limit is a batch of its own.
+   */
+  @Test
+  public void unitTest2() {
+    DBConf.BULK_INSERT_MAX_BATCH_BYTES = 1;
+    registry.reset();
+    assertEquals(StatusCode.SUCCESS, records.insertRecords(EmployeeTableName, getFirstRecords(numberOfRecords / 10)));
+    assertEquals(numberOfRecords / 10, registry.getCounter(Metrics.COMMITS));
+    assertEquals(numberOfRecords / 10, getStoredSSNs().size());
+
+    // records of the same size, two of them fit the limit exactly, then one byte less
+    long[] ids = new long[]{10, 11, 12, 13, 14, 15, 16, 17};
+    long recordBytes = getRecordBytes(getRecord(ids[0]));
+    for (long id : ids) {
+      assertEquals(recordBytes, getRecordBytes(getRecord(id)));
+    }
+    DBConf.BULK_INSERT_MAX_BATCH_BYTES = (int) (2 * recordBytes);
+    registry.reset();
+    assertEquals(StatusCode.SUCCESS, records.insertRecords(EmployeeTableName, getRecordsWithSSNs(10, 11, 12, 13)));
+    assertEquals(2, registry.getCounter(Metrics.COMMITS));
+
+    DBConf.BULK_INSERT_MAX_BATCH_BYTES = (int) (2 * recordBytes - 1);
+    registry.reset();
+    assertEquals(StatusCode.SUCCESS, records.insertRecords(EmployeeTableName, getRecordsWithSSNs(14, 15, 16, 17)));
+    assertEquals(4, registry.getCounter(Metrics.COMMITS));
+    assertEquals(numberOfRecords / 10 + ids.length, getStoredSSNs().size());
+    System.out.println("Test2 pass!");
+  }
+
+  /**
+   * Primary keys duplicated inside one batch, across batches, or already stored are rejected. The batches before the
+   * failing one stay committed.
+   */
+  @Test
+  public void unitTest3() {
+    assertEquals(StatusCode.DATA_RECORD_CREATION_RECORD_ALREADY_EXISTS,
+        records.insertRecords(EmployeeTableName, getRecordsWithSSNs(0, 1, 0)));
+    assertTrue(getStoredSSNs().isEmpty());
+
+    DBConf.BULK_INSERT_MAX_BATCH_RECORDS = 2;
+    assertEquals(StatusCode.DATA_RECORD_CREATION_RECORD_ALREADY_EXISTS,
+        records.insertRecords(EmployeeTableName, getRecordsWithSSNs(0, 1, 2, 0)));
+    assertEquals(Arrays.asList(0L, 1L), getStoredSSNs());
+
+    assertEquals(StatusCode.DATA_RECORD_CREATION_RECORD_ALREADY_EXISTS,
+        records.insertRecords(EmployeeTableName, getRecordsWithSSNs(2, 1)));
+    assertEquals(Arrays.asList(0L, 1L), getStoredSSNs());
+
+    assertEquals(StatusCode.SUCCESS, records.insertRecords(EmployeeTableName, getRecordsWithSSNs(2, 3, 4)));
+    assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), getStoredSSNs());
+    System.out.println("Test3 pass!");
+  }
+
+  /**
+   * Invalid rows are rejected before anything is written.
+   */
+  @Test
+  public void unitTest4() {
+    Record noPrimaryKey = new Record();
+    noPrimaryKey.setAttrNameAndValue(Name, getName(0));
+    assertEquals(StatusCode.DATA_RECORD_PRIMARY_KEYS_UNMATCHED,
+        records.insertRecords(EmployeeTableName, Collections.singletonList(noPrimaryKey)));
+
+    Record wrongType = new Record();
+    wrongType.setAttrNameAndValue(SSN, 1L);
+    wrongType.setAttrNameAndValue(Name, 12345L);
+    List<Record> rows = getRecordsWithSSNs(0);
+    rows.add(wrongType);
+    assertEquals(StatusCode.DATA_RECORD_CREATION_ATTRIBUTE_TYPE_UNMATCHED, records.insertRecords(EmployeeTableName, rows));
+
+    assertEquals(StatusCode.DATA_RECORD_CREATION_ATTRIBUTES_INVALID, records.insertRecords(EmployeeTableName, null));
+    assertEquals(StatusCode.TABLE_NOT_FOUND, records.insertRecords("Department", getRecordsWithSSNs(0)));
+    assertTrue(getStoredSSNs().isEmpty());
+    System.out.println("Test4 pass!");
+  }
+}
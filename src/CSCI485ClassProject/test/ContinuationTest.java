@@ -0,0 +1,189 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.Indexes;
+import CSCI485ClassProject.IndexesImpl;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.RecordsImpl;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.StorageFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * ContinuationTest covers the round trip of a cursor's continuation: a scan read in pages, each by a new cursor
+ * resuming after the previous one, returns every record once and in order, for the table scan in both storage formats
+ * and for the index scan, in both directions.
+ */
+public class ContinuationTest {
+
+  public static String EmployeeTableName = "Employee";
+  public static String SSN = "SSN";
+  public static String Name = "Name";
+  public static String Salary = "Salary";
+
+  public static String[] EmployeeTableAttributeNames = new String[]{SSN, Name, Salary};
+  public static String[] EmployeeTableNonPKAttributeNames = new String[]{Name, Salary};
+  public static AttributeType[] EmployeeTableAttributeTypes =
+      new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR, AttributeType.INT};
+  public static String[] EmployeeTablePKAttributes = new String[]{SSN};
+
+  public static int initialNumberOfRecords = 100;
+  public static int numberOfSalaries = 15;
+  public static int pageSize = 7;
+
+  private TableManager tableManager;
+  private Records records;
+  private Indexes indexes;
+
+  private String getName(long i) {
+    return "Name" + i;
+  }
+
+  private long getSalary(long i) {
+    return (i * 11) % numberOfSalaries;
+  }
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    records = new RecordsImpl();
+    indexes = new IndexesImpl();
+    tableManager.dropAllTables();
+  }
+
+  @After
+  public void close() {
+    tableManager.closeDatabase();
+    records.closeDatabase();
+    indexes.closeDatabase();
+  }
+
+  private void createTable(StorageFormat storageFormat) {
+    tableManager.dropAllTables();
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(EmployeeTableName, EmployeeTableAttributeNames,
+        EmployeeTableAttributeTypes, EmployeeTablePKAttributes, storageFormat));
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+          new Object[]{i}, EmployeeTableNonPKAttributeNames, new Object[]{getName(i), getSalary(i)}));
+    }
+  }
+
+  private Cursor openCursor(boolean isUsingIndex) {
+    Cursor cursor = isUsingIndex
+        ? records.openCursor(EmployeeTableName, Salary, 0L, ComparisonOperator.GREATER_THAN_OR_EQUAL_TO, Cursor.Mode.READ, true)
+        : records.openCursor(EmployeeTableName, Cursor.Mode.READ);
+    assertNotNull(cursor);
+    return cursor;
+  }
+
+  /**
+   * Read the scan in pages of pageSize records, each by a new cursor starting at the continuation of the previous one.
+   * @return the SSNs in the order they were returned
+   */
+  private List<Long> scanInPages(boolean isUsingIndex, boolean isBackward) {
+    List<Long> ssns = new ArrayList<>();
+    byte[] continuation = null;
+    while (true) {
+      Cursor cursor = openCursor(isUsingIndex);
+      cursor.setContinuation(continuation);
+      int count = 0;
+      Record rec = isBackward ? records.getLast(cursor) : records.getFirst(cursor);
+      while (rec != null) {
+        long ssn = (long) rec.getValueForGivenAttrName(SSN);
+        assertEquals(getName(ssn), rec.getValueForGivenAttrName(Name));
+        assertEquals(getSalary(ssn), rec.getValueForGivenAttrName(Salary));
+        ssns.add(ssn);
+        if (++count == pageSize) {
+          break;
+        }
+        rec = isBackward ? records.getPrevious(cursor) : records.getNext(cursor);
+      }
+      continuation = cursor.getContinuation();
+      assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+      if (count < pageSize) {
+        return ssns;
+      }
+    }
+  }
+
+  /**
+   * The SSNs in the order of the scan, by primary key for the table, by Salary then primary key for the index.
+   */
+  private List<Long> getExpectedSSNs(boolean isUsingIndex, boolean isBackward) {
+    List<Long> ssns = new ArrayList<>();
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      ssns.add(i);
+    }
+    if (isUsingIndex) {
+      ssns.sort(Comparator.comparingLong(this::getSalary).thenComparingLong(i -> i));
+    }
+    if (isBackward) {
+      Collections.reverse(ssns);
+    }
+    return ssns;
+  }
+
+  /**
+   * A table scan read in pages returns every record once, in primary key order, in both storage formats and
+   * directions.
+   */
+  @Test
+  public void unitTest1() {
+    for (StorageFormat storageFormat : StorageFormat.values()) {
+      createTable(storageFormat);
+      assertEquals(getExpectedSSNs(false, false), scanInPages(false, false));
+      assertEquals(getExpectedSSNs(false, true), scanInPages(false, true));
+    }
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * An index scan read in pages returns every record once, in index order, in both directions, also across the
+   * records sharing a Salary.
+   */
+  @Test
+  public void unitTest2() {
+    createTable(StorageFormat.KEY_PER_ATTRIBUTE);
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+    assertEquals(getExpectedSSNs(true, false), scanInPages(true, false));
+    assertEquals(getExpectedSSNs(true, true), scanInPages(true, true));
+    System.out.println("Test2 pass!");
+  }
+
+  /**
+   * A cursor has no continuation before its first record, and one resuming after the last record finds nothing.
+   */
+  @Test
+  public void unitTest3() {
+    createTable(StorageFormat.KEY_PER_ATTRIBUTE);
+    Cursor cursor = openCursor(false);
+    assertNull(cursor.getContinuation());
+    assertNotNull(records.getLast(cursor));
+    byte[] continuation = cursor.getContinuation();
+    assertNotNull(continuation);
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+
+    cursor = openCursor(false);
+    cursor.setContinuation(continuation);
+    assertNull(records.getFirst(cursor));
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    System.out.println("Test3 pass!");
+  }
+}
@@ -0,0 +1,281 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.DBConf;
+import CSCI485ClassProject.Indexes;
+import CSCI485ClassProject.IndexesImpl;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.RecordsImpl;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.Record;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DeleteTest covers deleting records, through a cursor and with deleteDataRecord, and the schema and index changes
+ * the deletions make.
+ */
+public class DeleteTest {
+
+  public static String EmployeeTableName = "Employee";
+  public static String SSN = "SSN";
+  public static String Name = "Name";
+  public static String Email = "Email";
+  public static String Salary = "Salary";
+
+  public static String[] EmployeeTableAttributeNames = new String[]{SSN, Name, Salary};
+  public static AttributeType[] EmployeeTableAttributeTypes =
+      new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR, AttributeType.INT};
+  public static String[] EmployeeTablePKAttributes = new String[]{SSN};
+
+  public static String AssignmentTableName = "Assignment";
+  public static String ProjectId = "ProjectId";
+  public static String Hours = "Hours";
+
+  public static String[] AssignmentTableAttributeNames = new String[]{ProjectId, SSN, Hours};
+  public static AttributeType[] AssignmentTableAttributeTypes =
+      new AttributeType[]{AttributeType.INT, AttributeType.INT, AttributeType.INT};
+  public static String[] AssignmentTablePKAttributes = new String[]{ProjectId, SSN};
+
+  public static int initialNumberOfRecords = 20;
+  public static int numberOfProjects = 4;
+
+  private TableManager tableManager;
+  private Records records;
+  private Indexes indexes;
+
+  private final int defaultDeleteBatchRecords = DBConf.DELETE_BATCH_RECORDS;
+
+  private String getName(long i) {
+    return "Name" + i;
+  }
+
+  private String getEmail(long i) {
+    return "ABCDEFGH" + i + "@usc.edu";
+  }
+
+  private long getSalary(long i) {
+    return i % 10;
+  }
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    records = new RecordsImpl();
+    indexes = new IndexesImpl();
+    tableManager.dropAllTables();
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(EmployeeTableName,
+        EmployeeTableAttributeNames, EmployeeTableAttributeTypes, EmployeeTablePKAttributes));
+  }
+
+  @After
+  public void close() {
+    DBConf.DELETE_BATCH_RECORDS = defaultDeleteBatchRecords;
+    tableManager.closeDatabase();
+    records.closeDatabase();
+    indexes.closeDatabase();
+  }
+
+  private void insertRecords(long from, long to) {
+    for (long i = from; i < to; i++) {
+      assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+          new Object[]{i}, new String[]{Name, Salary}, new Object[]{getName(i), getSalary(i)}));
+    }
+  }
+
+  private List<Long> getStoredSSNs() {
+    List<Long> ssns = new ArrayList<>();
+    Cursor cursor = records.openCursor(EmployeeTableName, Cursor.Mode.READ);
+    assertNotNull(cursor);
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      ssns.add((long) rec.getValueForGivenAttrName(SSN));
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    return ssns;
+  }
+
+  private List<Long> getExpectedSSNs(long deletedSalary) {
+    List<Long> ssns = new ArrayList<>();
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      if (getSalary(i) != deletedSalary) {
+        ssns.add(i);
+      }
+    }
+    return ssns;
+  }
+
+  private int countIndexedRecords(long salary) {
+    Cursor cursor = records.openCursor(EmployeeTableName, Salary, salary, ComparisonOperator.EQUAL_TO, Cursor.Mode.READ, true);
+    assertNotNull(cursor);
+    int count = 0;
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      assertEquals(salary, rec.getValueForGivenAttrName(Salary));
+      count++;
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    return count;
+  }
+
+  /**
+   * A cursor deletes several records in one transaction even if the first deletion drops an attribute, and with it
+   * the attribute's index, from the schema.
+   */
+  @Test
+  public void unitTest1() {
+    // only the first record has an Email
+    assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+        new Object[]{0L}, new String[]{Name, Email}, new Object[]{getName(0), getEmail(0)}));
+    insertRecords(1, initialNumberOfRecords);
+    assertTrue(tableManager.listTables().get(EmployeeTableName).doesAttributeExist(Email));
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Email, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+
+    Cursor cursor = records.openCursor(EmployeeTableName, Cursor.Mode.READ_WRITE);
+    assertNotNull(cursor);
+    Record rec = records.getFirst(cursor);
+    assertEquals(0L, rec.getValueForGivenAttrName(SSN));
+    assertEquals(StatusCode.SUCCESS, records.deleteRecord(cursor));
+    rec = records.getNext(cursor);
+    assertEquals(1L, rec.getValueForGivenAttrName(SSN));
+    assertEquals(StatusCode.SUCCESS, records.deleteRecord(cursor));
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+
+    assertFalse(tableManager.listTables().get(EmployeeTableName).doesAttributeExist(Email));
+    assertEquals(StatusCode.INDEX_NOT_FOUND, indexes.dropIndex(EmployeeTableName, Email));
+    List<Long> ssns = getStoredSSNs();
+    assertEquals(initialNumberOfRecords - 2, ssns.size());
+    assertEquals(2L, (long) ssns.get(0));
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * A whole primary key deletes its record only if the record also has the other given values.
+   */
+  @Test
+  public void unitTest2() {
+    insertRecords(0, initialNumberOfRecords);
+
+    assertEquals(StatusCode.SUCCESS, records.deleteDataRecord(EmployeeTableName, new String[]{SSN, Name},
+        new Object[]{5L, getName(6)}));
+    assertEquals(initialNumberOfRecords, getStoredSSNs().size());
+
+    assertEquals(StatusCode.SUCCESS, records.deleteDataRecord(EmployeeTableName, new String[]{SSN}, new Object[]{5L}));
+    List<Long> ssns = getStoredSSNs();
+    assertEquals(initialNumberOfRecords - 1, ssns.size());
+    assertFalse(ssns.contains(5L));
+
+    // deleting a missing record is not an error
+    assertEquals(StatusCode.SUCCESS, records.deleteDataRecord(EmployeeTableName, new String[]{SSN}, new Object[]{5L}));
+    System.out.println("Test2 pass!");
+  }
+
+  /**
+   * The leading primary key values delete the records under their key prefix.
+   */
+  @Test
+  public void unitTest3() {
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(AssignmentTableName,
+        AssignmentTableAttributeNames, AssignmentTableAttributeTypes, AssignmentTablePKAttributes));
+    for (long projectId = 0; projectId < numberOfProjects; projectId++) {
+      for (long i = 0; i < initialNumberOfRecords; i++) {
+        assertEquals(StatusCode.SUCCESS, records.insertRecord(AssignmentTableName, AssignmentTablePKAttributes,
+            new Object[]{projectId, i}, new String[]{Hours}, new Object[]{i % 2}));
+      }
+    }
+
+    assertEquals(StatusCode.SUCCESS, records.deleteDataRecord(AssignmentTableName, new String[]{ProjectId}, new Object[]{1L}));
+    assertEquals(StatusCode.SUCCESS, records.deleteDataRecord(AssignmentTableName, new String[]{Hours, ProjectId},
+        new Object[]{0L, 2L}));
+
+    Cursor cursor = records.openCursor(AssignmentTableName, Cursor.Mode.READ);
+    assertNotNull(cursor);
+    int[] counts = new int[numberOfProjects];
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      long projectId = (long) rec.getValueForGivenAttrName(ProjectId);
+      if (projectId == 2) {
+        assertEquals(1L, rec.getValueForGivenAttrName(Hours));
+      }
+      counts[(int) projectId]++;
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    assertEquals(initialNumberOfRecords, counts[0]);
+    assertEquals(0, counts[1]);
+    assertEquals(initialNumberOfRecords / 2, counts[2]);
+    assertEquals(initialNumberOfRecords, counts[3]);
+    System.out.println("Test3 pass!");
+  }
+
+  /**
+   * A value of an indexed attribute deletes the records through the index, with their index entries, also when the
+   * deletion takes several transactions.
+   */
+  @Test
+  public void unitTest4() {
+    insertRecords(0, initialNumberOfRecords);
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+    DBConf.DELETE_BATCH_RECORDS = 1;
+
+    long deletedSalary = 3;
+    assertEquals(initialNumberOfRecords / 10, countIndexedRecords(deletedSalary));
+    assertEquals(StatusCode.SUCCESS, records.deleteDataRecord(EmployeeTableName, new String[]{Salary}, new Object[]{deletedSalary}));
+    assertEquals(getExpectedSSNs(deletedSalary), getStoredSSNs());
+    assertEquals(0, countIndexedRecords(deletedSalary));
+    assertEquals(initialNumberOfRecords / 10, countIndexedRecords(deletedSalary + 1));
+    System.out.println("Test4 pass!");
+  }
+
+  /**
+   * A value of an attribute without index deletes the records found by a scan, resumed across more transactions than
+   * DELETE_BATCH_RECORDS records fit in.
+   */
+  @Test
+  public void unitTest5() {
+    insertRecords(0, initialNumberOfRecords);
+    DBConf.DELETE_BATCH_RECORDS = 3;
+
+    long deletedSalary = 7;
+    assertEquals(StatusCode.SUCCESS, records.deleteDataRecord(EmployeeTableName, new String[]{Salary}, new Object[]{deletedSalary}));
+    assertEquals(getExpectedSSNs(deletedSalary), getStoredSSNs());
+
+    // every record is deleted, batch after batch
+    for (long salary = 0; salary < 10; salary++) {
+      assertEquals(StatusCode.SUCCESS, records.deleteDataRecord(EmployeeTableName, new String[]{Salary}, new Object[]{salary}));
+    }
+    assertTrue(getStoredSSNs().isEmpty());
+    System.out.println("Test5 pass!");
+  }
+
+  /**
+   * A filter without values, or with a null value, is rejected and deletes nothing.
+   */
+  @Test
+  public void unitTest6() {
+    insertRecords(0, initialNumberOfRecords);
+
+    assertEquals(StatusCode.DATA_RECORD_CREATION_ATTRIBUTES_INVALID,
+        records.deleteDataRecord(EmployeeTableName, new String[]{}, new Object[]{}));
+    assertEquals(StatusCode.DATA_RECORD_CREATION_ATTRIBUTES_INVALID,
+        records.deleteDataRecord(EmployeeTableName, new String[]{Salary}, new Object[]{null}));
+    assertEquals(StatusCode.DATA_RECORD_CREATION_ATTRIBUTES_INVALID,
+        records.deleteDataRecord(EmployeeTableName, new String[]{Salary, Name}, new Object[]{1L}));
+    assertEquals(StatusCode.ATTRIBUTE_NOT_FOUND,
+        records.deleteDataRecord(EmployeeTableName, new String[]{Email}, new Object[]{getEmail(0)}));
+    assertEquals(StatusCode.TABLE_NOT_FOUND,
+        records.deleteDataRecord(AssignmentTableName, new String[]{SSN}, new Object[]{0L}));
+    assertEquals(initialNumberOfRecords, getStoredSSNs().size());
+    System.out.println("Test6 pass!");
+  }
+}
@@ -0,0 +1,264 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.DBConf;
+import CSCI485ClassProject.IndexBuilder;
+import CSCI485ClassProject.IndexTransformer;
+import CSCI485ClassProject.Indexes;
+import CSCI485ClassProject.IndexesImpl;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.RecordsImpl;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.fdb.FDBHelper;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.IndexState;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.Record;
+import com.apple.foundationdb.Database;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.directory.DirectorySubspace;
+import com.apple.foundationdb.tuple.Tuple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * IndexBuildTest covers IndexBuilder: a build interrupted after some of its batches resumes every shard from its
+ * progress, also across a record with more keys than a batch, and a build whose index is dropped writes nothing more.
+ */
+public class IndexBuildTest {
+
+  public static String EmployeeTableName = "Employee";
+  public static String SSN = "SSN";
+  public static String Name = "Name";
+  public static String Salary = "Salary";
+  public static String Extra = "Extra";
+
+  public static String[] EmployeeTableAttributeNames = new String[]{SSN, Name, Salary};
+  public static AttributeType[] EmployeeTableAttributeTypes =
+      new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR, AttributeType.INT};
+  public static String[] EmployeeTablePKAttributes = new String[]{SSN};
+
+  public static int initialNumberOfRecords = 60;
+  public static int numberOfSalaries = 7;
+  public static int batchKeys = 5;
+  // the record with more keys than a batch
+  public static long wideSSN = 30;
+  public static int numberOfExtraAttributes = 2 * batchKeys;
+
+  private TableManager tableManager;
+  private Records records;
+  private Indexes indexes;
+  private Database db;
+
+  private final int defaultBatchKeys = DBConf.INDEX_BUILD_BATCH_KEYS;
+
+  private final IndexTransformer indexTransformer =
+      new IndexTransformer(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX);
+
+  private String getName(long i) {
+    return "Name" + i;
+  }
+
+  // every tenth record has no Salary, so no index entry
+  private boolean hasSalary(long i) {
+    return i % 10 != 9;
+  }
+
+  private long getSalary(long i) {
+    return (i * 3) % numberOfSalaries;
+  }
+
+  private Record getRecord(long i) {
+    Record record = new Record();
+    record.setAttrNameAndValue(SSN, i);
+    record.setAttrNameAndValue(Name, getName(i));
+    if (hasSalary(i)) {
+      record.setAttrNameAndValue(Salary, getSalary(i));
+    }
+    if (i == wideSSN) {
+      for (int j = 0; j < numberOfExtraAttributes; j++) {
+        record.setAttrNameAndValue(Extra + j, (long) j);
+      }
+    }
+    return record;
+  }
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    records = new RecordsImpl();
+    indexes = new IndexesImpl();
+    db = FDBHelper.initialization();
+    DBConf.INDEX_BUILD_BATCH_KEYS = batchKeys;
+    tableManager.dropAllTables();
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(EmployeeTableName,
+        EmployeeTableAttributeNames, EmployeeTableAttributeTypes, EmployeeTablePKAttributes));
+    List<Record> rows = new ArrayList<>();
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      rows.add(getRecord(i));
+    }
+    assertEquals(StatusCode.SUCCESS, records.insertRecords(EmployeeTableName, rows));
+  }
+
+  @After
+  public void close() {
+    DBConf.INDEX_BUILD_BATCH_KEYS = defaultBatchKeys;
+    FDBHelper.close(db);
+    tableManager.closeDatabase();
+    records.closeDatabase();
+    indexes.closeDatabase();
+  }
+
+  /**
+   * Create the index as a build interrupted after some batches would have left it: BUILDING, with the entries of
+   * the records before each shard's resume key. Each shard is (begin, end, resume) as SSNs, initialNumberOfRecords
+   * standing for the end of the records.
+   */
+  private void createInterruptedBuild(long[][] shards) {
+    assertEquals(StatusCode.SUCCESS, FDBHelper.runTransaction(db, tx -> {
+      DirectorySubspace recordsSubspace = FDBHelper.openSubspace(tx,
+          Arrays.asList(EmployeeTableName, DBConf.TABLE_RECORDS_STORE));
+      DirectorySubspace indexSubspace = FDBHelper.createOrOpenSubspace(tx, indexTransformer.getIndexStorePath());
+      DirectorySubspace indexDir = FDBHelper.openSubspace(tx, IndexTransformer.getIndexPath(EmployeeTableName, Salary));
+      IndexBuilder.setIndexState(tx, indexDir, IndexState.BUILDING);
+      for (int shardNo = 0; shardNo < shards.length; shardNo++) {
+        long[] shard = shards[shardNo];
+        byte[] begin = recordsSubspace.pack(new Tuple().add(shard[0]));
+        byte[] end = shard[1] == initialNumberOfRecords ? recordsSubspace.range().end : recordsSubspace.pack(new Tuple().add(shard[1]));
+        byte[] resume = shard[2] == initialNumberOfRecords ? end : recordsSubspace.pack(new Tuple().add(shard[2]));
+        if (shardNo == 0) {
+          begin = recordsSubspace.range().begin;
+        }
+        tx.set(indexDir.pack(IndexTransformer.getBuildShardKeyTuple(shardNo)), new Tuple().add(begin).add(end).add(resume).pack());
+        for (long i = shard[0]; i < shard[2]; i++) {
+          Record record = getRecord(i);
+          if (hasSalary(i)) {
+            FDBHelper.setFDBKVPair(indexSubspace, tx, indexTransformer.convertToIndexKVPair(record, new Tuple().add(i)));
+          }
+        }
+      }
+      return StatusCode.SUCCESS;
+    }));
+  }
+
+  /**
+   * The index entries expected from a table scan: (Salary, SSN) of the records having a Salary.
+   */
+  private Set<Tuple> getScannedIndexKeys() {
+    Set<Tuple> keys = new HashSet<>();
+    Cursor cursor = records.openCursor(EmployeeTableName, Cursor.Mode.READ);
+    assertNotNull(cursor);
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      Object salary = rec.getValueForGivenAttrName(Salary);
+      if (salary != null) {
+        keys.add(new Tuple().addObject(salary).addObject(rec.getValueForGivenAttrName(SSN)));
+      }
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    return keys;
+  }
+
+  private List<Tuple> getIndexKeys(DirectorySubspace indexSubspace) {
+    List<Tuple> keys = new ArrayList<>();
+    assertEquals(StatusCode.SUCCESS, FDBHelper.runTransaction(db, tx -> {
+      keys.clear();
+      for (KeyValue kv : tx.getRange(indexSubspace.range()).asList().join()) {
+        keys.add(indexSubspace.unpack(kv.getKey()));
+      }
+      return StatusCode.SUCCESS;
+    }));
+    return keys;
+  }
+
+  /**
+   * A build interrupted in several shards resumes each from its progress, also across the record with more keys than
+   * a batch. The index then holds exactly one entry per record having a Salary, its progress is cleared and it is
+   * READABLE.
+   */
+  @Test
+  public void unitTest1() {
+    createInterruptedBuild(new long[][]{
+        {0, 20, 20},
+        {20, 40, 25},
+        {40, initialNumberOfRecords, 40}});
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+
+    DirectorySubspace[] subspaces = new DirectorySubspace[2];
+    boolean[] isReadable = new boolean[1];
+    assertEquals(StatusCode.SUCCESS, FDBHelper.runTransaction(db, tx -> {
+      List<String> indexPath = IndexTransformer.getIndexPath(EmployeeTableName, Salary);
+      subspaces[0] = FDBHelper.openSubspace(tx, indexPath);
+      subspaces[1] = FDBHelper.openSubspace(tx, indexTransformer.getIndexStorePath());
+      isReadable[0] = IndexTransformer.isIndexReadable(tx, indexPath);
+      assertTrue(tx.getRange(subspaces[0].range(IndexTransformer.getBuildShardPrefixTuple())).asList().join().isEmpty());
+      return StatusCode.SUCCESS;
+    }));
+    assertTrue(isReadable[0]);
+
+    List<Tuple> indexKeys = getIndexKeys(subspaces[1]);
+    Set<Tuple> scannedKeys = getScannedIndexKeys();
+    assertEquals(scannedKeys.size(), indexKeys.size());
+    assertEquals(scannedKeys, new HashSet<>(indexKeys));
+    assertTrue(scannedKeys.contains(new Tuple().add(getSalary(wideSSN)).add(wideSSN)));
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * An index dropped while its build is running gets no entry from the build, which stops with INDEX_NOT_FOUND.
+   */
+  @Test
+  public void unitTest2() {
+    createInterruptedBuild(new long[][]{
+        {0, 30, 10},
+        {30, initialNumberOfRecords, 30}});
+    DirectorySubspace[] indexSubspaceHolder = new DirectorySubspace[1];
+    assertEquals(StatusCode.SUCCESS, FDBHelper.runTransaction(db, tx -> {
+      indexSubspaceHolder[0] = FDBHelper.openSubspace(tx, indexTransformer.getIndexStorePath());
+      return StatusCode.SUCCESS;
+    }));
+
+    // the index is dropped once the build is set up, before its shards are scanned
+    AtomicBoolean isDropped = new AtomicBoolean(false);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+      @Override
+      public void execute(Runnable command) {
+        if (isDropped.compareAndSet(false, true)) {
+          assertEquals(StatusCode.SUCCESS, indexes.dropIndex(EmployeeTableName, Salary));
+        }
+        super.execute(command);
+      }
+    };
+    IndexBuilder builder = new IndexBuilder(db, EmployeeTableName, tableManager.listTables().get(EmployeeTableName),
+        indexTransformer, executor);
+    assertEquals(StatusCode.INDEX_NOT_FOUND, builder.build());
+    executor.shutdown();
+
+    assertTrue(isDropped.get());
+    assertTrue(getIndexKeys(indexSubspaceHolder[0]).isEmpty());
+    boolean[] doesIndexExist = new boolean[1];
+    assertEquals(StatusCode.SUCCESS, FDBHelper.runTransaction(db, tx -> {
+      doesIndexExist[0] = FDBHelper.doesSubdirectoryExists(tx, IndexTransformer.getIndexPath(EmployeeTableName, Salary));
+      return StatusCode.SUCCESS;
+    }));
+    assertFalse(doesIndexExist[0]);
+    System.out.println("Test2 pass!");
+  }
+}
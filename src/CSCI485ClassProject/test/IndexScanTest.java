@@ -0,0 +1,234 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.DBConf;
+import CSCI485ClassProject.Indexes;
+import CSCI485ClassProject.IndexesImpl;
+import CSCI485ClassProject.Predicate;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.RecordsImpl;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.Record;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * IndexScanTest covers the scans of the index cursors: the B+ tree index range of every comparison operator, the
+ * bucket lookups of the hash index, and the table scan an index cursor falls back to when its predicate cannot use the
+ * index.
+ */
+public class IndexScanTest {
+
+  public static String EmployeeTableName = "Employee";
+  public static String SSN = "SSN";
+  public static String Name = "Name";
+  public static String Salary = "Salary";
+
+  public static String[] EmployeeTableAttributeNames = new String[]{SSN, Name, Salary};
+  public static AttributeType[] EmployeeTableAttributeTypes =
+      new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR, AttributeType.INT};
+  public static String[] EmployeeTablePKAttributes = new String[]{SSN};
+
+  public static int initialNumberOfRecords = 100;
+  // the records from here on have no Salary, so they have no index entry
+  public static int numberOfRecordsWithSalary = 90;
+  public static int numberOfSalaries = 20;
+
+  private TableManager tableManager;
+  private Records records;
+  private Indexes indexes;
+
+  private final int defaultHashIndexBuckets = DBConf.HASH_INDEX_BUCKETS;
+
+  private String getName(long i) {
+    return "Name" + i;
+  }
+
+  private long getSalary(long i) {
+    return (i * 7) % numberOfSalaries;
+  }
+
+  private boolean compare(long salary, ComparisonOperator operator, long value) {
+    switch (operator) {
+      case EQUAL_TO:
+        return salary == value;
+      case GREATER_THAN_OR_EQUAL_TO:
+        return salary >= value;
+      case LESS_THAN_OR_EQUAL_TO:
+        return salary <= value;
+      case GREATER_THAN:
+        return salary > value;
+      default:
+        return salary < value;
+    }
+  }
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    records = new RecordsImpl();
+    indexes = new IndexesImpl();
+    tableManager.dropAllTables();
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(EmployeeTableName,
+        EmployeeTableAttributeNames, EmployeeTableAttributeTypes, EmployeeTablePKAttributes));
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      if (i < numberOfRecordsWithSalary) {
+        assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+            new Object[]{i}, new String[]{Name, Salary}, new Object[]{getName(i), getSalary(i)}));
+      } else {
+        assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+            new Object[]{i}, new String[]{Name}, new Object[]{getName(i)}));
+      }
+    }
+  }
+
+  @After
+  public void close() {
+    DBConf.HASH_INDEX_BUCKETS = defaultHashIndexBuckets;
+    tableManager.closeDatabase();
+    records.closeDatabase();
+    indexes.closeDatabase();
+  }
+
+  /**
+   * Scan the index cursor forwards or backwards, checking the records satisfy the comparison, and come in Salary order
+   * if the index is ordered.
+   * @return the SSNs of the records
+   */
+  private Set<Long> scanIndex(ComparisonOperator operator, long value, boolean isBackward, boolean isOrdered) {
+    Cursor cursor = records.openCursor(EmployeeTableName, Salary, value, operator, Cursor.Mode.READ, true);
+    assertNotNull(cursor);
+    Set<Long> ssns = new HashSet<>();
+    Long lastSalary = null;
+    Record rec = isBackward ? records.getLast(cursor) : records.getFirst(cursor);
+    while (rec != null) {
+      long ssn = (long) rec.getValueForGivenAttrName(SSN);
+      long salary = (long) rec.getValueForGivenAttrName(Salary);
+      assertEquals(getSalary(ssn), salary);
+      assertEquals(getName(ssn), rec.getValueForGivenAttrName(Name));
+      assertTrue(compare(salary, operator, value));
+      if (isOrdered && lastSalary != null) {
+        assertTrue(isBackward ? salary <= lastSalary : salary >= lastSalary);
+      }
+      lastSalary = salary;
+      assertTrue(ssns.add(ssn));
+      rec = isBackward ? records.getPrevious(cursor) : records.getNext(cursor);
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    return ssns;
+  }
+
+  private Set<Long> getExpectedSSNs(ComparisonOperator operator, long value) {
+    Set<Long> ssns = new HashSet<>();
+    for (long i = 0; i < numberOfRecordsWithSalary; i++) {
+      if (compare(getSalary(i), operator, value)) {
+        ssns.add(i);
+      }
+    }
+    return ssns;
+  }
+
+  /**
+   * A B+ tree index cursor returns exactly the records satisfying its comparison, in Salary order, for every operator
+   * and in both directions, including the values at and beyond the ends of the index.
+   */
+  @Test
+  public void unitTest1() {
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+
+    long[] values = new long[]{-1, 0, 10, numberOfSalaries - 1, numberOfSalaries};
+    for (ComparisonOperator operator : ComparisonOperator.values()) {
+      for (long value : values) {
+        Set<Long> expectedSSNs = getExpectedSSNs(operator, value);
+        assertEquals(expectedSSNs, scanIndex(operator, value, false, true));
+        assertEquals(expectedSSNs, scanIndex(operator, value, true, true));
+      }
+    }
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * An index cursor whose predicate has no conjunct on the indexed attribute scans the table, so it also returns the
+   * records that have no index entry.
+   */
+  @Test
+  public void unitTest2() {
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+
+    long ssnWithoutSalary = initialNumberOfRecords - 1;
+    Cursor cursor = records.openCursor(EmployeeTableName, Salary, 0L, ComparisonOperator.EQUAL_TO, Cursor.Mode.READ, true);
+    assertNotNull(cursor);
+    cursor.enablePredicate(Predicate.or(
+        Predicate.compare(Salary, ComparisonOperator.EQUAL_TO, getSalary(1)),
+        Predicate.compare(Name, ComparisonOperator.EQUAL_TO, getName(ssnWithoutSalary))));
+
+    Set<Long> ssns = new HashSet<>();
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      assertTrue(ssns.add((long) rec.getValueForGivenAttrName(SSN)));
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+
+    Set<Long> expectedSSNs = getExpectedSSNs(ComparisonOperator.EQUAL_TO, getSalary(1));
+    expectedSSNs.add(ssnWithoutSalary);
+    assertEquals(expectedSSNs, ssns);
+    System.out.println("Test2 pass!");
+  }
+
+  /**
+   * An equality on a hash index reads the bucket of the value only, and returns none of the other values sharing the
+   * bucket. Integer and Long values that are equal find the same bucket.
+   */
+  @Test
+  public void unitTest3() {
+    // fewer buckets than values, so the buckets are shared
+    DBConf.HASH_INDEX_BUCKETS = 4;
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_HASH_INDEX));
+
+    for (long value = -1; value <= numberOfSalaries; value++) {
+      Set<Long> expectedSSNs = getExpectedSSNs(ComparisonOperator.EQUAL_TO, value);
+      assertEquals(expectedSSNs, scanIndex(ComparisonOperator.EQUAL_TO, value, false, false));
+      assertEquals(expectedSSNs, scanIndex(ComparisonOperator.EQUAL_TO, value, true, false));
+    }
+
+    long value = getSalary(3);
+    Cursor cursor = records.openCursor(EmployeeTableName, Salary, (int) value, ComparisonOperator.EQUAL_TO,
+        Cursor.Mode.READ, true);
+    assertNotNull(cursor);
+    Set<Long> ssns = new HashSet<>();
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      ssns.add((long) rec.getValueForGivenAttrName(SSN));
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    assertEquals(getExpectedSSNs(ComparisonOperator.EQUAL_TO, value), ssns);
+    System.out.println("Test3 pass!");
+  }
+
+  /**
+   * A range comparison cannot be narrowed on a hash index: the cursor reads every bucket and still returns exactly the
+   * records satisfying it.
+   */
+  @Test
+  public void unitTest4() {
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_HASH_INDEX));
+
+    for (ComparisonOperator operator : ComparisonOperator.values()) {
+      Set<Long> expectedSSNs = getExpectedSSNs(operator, 10);
+      assertEquals(expectedSSNs, scanIndex(operator, 10, false, false));
+      assertEquals(expectedSSNs, scanIndex(operator, 10, true, false));
+    }
+    System.out.println("Test4 pass!");
+  }
+}
@@ -0,0 +1,168 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.AsyncCursor;
+import CSCI485ClassProject.AsyncRecords;
+import CSCI485ClassProject.DBEngine;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.Record;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LoadTest drives thousands of concurrent operations through one DBEngine, to show how the number of operations in
+ * flight scales when each one runs on its own (virtual) thread of the engine's executor.
+ */
+public class LoadTest {
+
+  public static String LoadTableName = "LoadTest";
+  public static String Id = "Id";
+  public static String Payload = "Payload";
+
+  public static String[] LoadTableAttributeNames = new String[]{Id, Payload};
+  public static AttributeType[] LoadTableAttributeTypes = new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR};
+  public static String[] LoadTablePKAttributes = new String[]{Id};
+
+  public static int[] concurrencyLevels = new int[]{10, 100, 1000, 4000};
+  public static int asyncInsertCount = 5000;
+
+  private DBEngine engine;
+  private TableManager tableManager;
+  private Records records;
+
+  private String getPayload(long i) {
+    return "ABCDEFGHIJKLMNOPQRSTUVWXYZ" + i;
+  }
+
+  @Before
+  public void init() {
+    engine = new DBEngine();
+    tableManager = engine.getTableManager();
+    records = engine.getRecords();
+    tableManager.dropAllTables();
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(LoadTableName,
+        LoadTableAttributeNames, LoadTableAttributeTypes, LoadTablePKAttributes));
+  }
+
+  @After
+  public void tearDown() {
+    tableManager.dropAllTables();
+    engine.close();
+  }
+
+  private int countRecords() {
+    AsyncCursor cursor = engine.getAsyncRecords().openCursorAsync(LoadTableName).join();
+    assertNotNull(cursor);
+    int count = 0;
+    while (cursor.next().join() != null) {
+      count++;
+    }
+    cursor.close();
+    return count;
+  }
+
+  /**
+   * Each level releases all its operations at once, every one on its own task of the engine's executor, blocking in
+   * the synchronous Records API.
+   */
+  @Test
+  public void unitTest1() throws Exception {
+    ExecutorService executor = engine.getExecutor();
+    long nextId = 0;
+    int totalInserted = 0;
+
+    for (int level : concurrencyLevels) {
+      CountDownLatch ready = new CountDownLatch(level);
+      CountDownLatch start = new CountDownLatch(1);
+      AtomicInteger inFlight = new AtomicInteger();
+      AtomicInteger maxInFlight = new AtomicInteger();
+
+      List<Future<StatusCode>> results = new ArrayList<>();
+      for (int i = 0; i < level; i++) {
+        final long id = nextId++;
+        results.add(executor.submit(() -> {
+          ready.countDown();
+          start.await();
+          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          try {
+            return records.insertRecord(LoadTableName, LoadTablePKAttributes, new Object[]{id},
+                new String[]{Payload}, new Object[]{getPayload(id)});
+          } finally {
+            inFlight.decrementAndGet();
+          }
+        }));
+      }
+
+      // every operation is parked on its own thread before any starts
+      ready.await();
+      long startTime = System.nanoTime();
+      start.countDown();
+      for (Future<StatusCode> result : results) {
+        assertEquals(StatusCode.SUCCESS, result.get());
+      }
+      long elapsedMillis = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+      totalInserted += level;
+
+      System.out.println("concurrency " + level + ": " + elapsedMillis + "ms, "
+          + (level * 1000L / elapsedMillis) + " inserts/s, at most " + maxInFlight.get() + " in flight");
+    }
+
+    assertEquals(totalInserted, countRecords());
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * One thread issues every insert through AsyncRecords without waiting, then waits for all of them together.
+   */
+  @Test
+  public void unitTest2() {
+    AsyncRecords asyncRecords = engine.getAsyncRecords();
+
+    long startTime = System.nanoTime();
+    List<CompletableFuture<StatusCode>> results = new ArrayList<>();
+    for (long id = 0; id < asyncInsertCount; id++) {
+      results.add(asyncRecords.insertRecordAsync(LoadTableName, LoadTablePKAttributes, new Object[]{id},
+          new String[]{Payload}, new Object[]{getPayload(id)}));
+    }
+    int inFlight = 0;
+    for (CompletableFuture<StatusCode> result : results) {
+      if (!result.isDone()) {
+        inFlight++;
+      }
+    }
+    CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+    long elapsedMillis = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+
+    for (CompletableFuture<StatusCode> result : results) {
+      assertEquals(StatusCode.SUCCESS, result.join());
+    }
+    assertTrue(inFlight > 0);
+    System.out.println("async: " + asyncInsertCount + " inserts from one thread in " + elapsedMillis + "ms, "
+        + inFlight + " in flight once issued");
+
+    assertEquals(asyncInsertCount, countRecords());
+
+    // the records read back are the inserted ones
+    AsyncCursor cursor = asyncRecords.openCursorAsync(LoadTableName).join();
+    Record record = cursor.next().join();
+    assertNotNull(record);
+    assertEquals(getPayload((long) record.getValueForGivenAttrName(Id)), record.getValueForGivenAttrName(Payload));
+    cursor.close();
+    System.out.println("Test2 pass!");
+  }
+}
@@ -0,0 +1,419 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.Indexes;
+import CSCI485ClassProject.IndexesImpl;
+import CSCI485ClassProject.Predicate;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.RecordsImpl;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.CompactRecord;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.ScanHint;
+import com.apple.foundationdb.tuple.Tuple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PredicateTest covers the cursors filtered by AND/OR predicate trees, with and without an index narrowing the scan,
+ * the cursors returning a projection of the records, and the evaluators predicates are compiled into.
+ */
+public class PredicateTest {
+
+  public static String EmployeeTableName = "Employee";
+  public static String SSN = "SSN";
+  public static String Name = "Name";
+  public static String Age = "Age";
+  public static String Salary = "Salary";
+
+  public static String[] EmployeeTableAttributeNames = new String[]{SSN, Name, Age, Salary};
+  public static AttributeType[] EmployeeTableAttributeTypes =
+      new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR, AttributeType.INT, AttributeType.DOUBLE};
+  public static String[] EmployeeTablePKAttributes = new String[]{SSN};
+
+  public static int initialNumberOfRecords = 100;
+
+  private TableManager tableManager;
+  private Records records;
+  private Indexes indexes;
+
+  private String getName(long i) {
+    return "Name" + i;
+  }
+
+  // every tenth record has no Age
+  private boolean hasAge(long i) {
+    return i % 10 != 9;
+  }
+
+  private long getAge(long i) {
+    return (i * 7) % 50 - 10;
+  }
+
+  private double getSalary(long i) {
+    return i * 1.5 - 30;
+  }
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    records = new RecordsImpl();
+    indexes = new IndexesImpl();
+    tableManager.dropAllTables();
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(EmployeeTableName,
+        EmployeeTableAttributeNames, EmployeeTableAttributeTypes, EmployeeTablePKAttributes));
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      if (hasAge(i)) {
+        assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+            new Object[]{i}, new String[]{Name, Age, Salary}, new Object[]{getName(i), getAge(i), getSalary(i)}));
+      } else {
+        assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+            new Object[]{i}, new String[]{Name, Salary}, new Object[]{getName(i), getSalary(i)}));
+      }
+    }
+  }
+
+  @After
+  public void close() {
+    tableManager.closeDatabase();
+    records.closeDatabase();
+    indexes.closeDatabase();
+  }
+
+  /**
+   * Scan the records satisfying the predicate, checking their values.
+   * @return the SSNs of the records
+   */
+  private Set<Long> scan(Predicate predicate) {
+    Cursor cursor = records.openCursor(EmployeeTableName, predicate, Cursor.Mode.READ, ScanHint.ITERATOR, 0);
+    assertNotNull(cursor);
+    Set<Long> ssns = new HashSet<>();
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      long ssn = (long) rec.getValueForGivenAttrName(SSN);
+      assertEquals(getName(ssn), rec.getValueForGivenAttrName(Name));
+      assertEquals(hasAge(ssn) ? getAge(ssn) : null, rec.getValueForGivenAttrName(Age));
+      assertEquals(getSalary(ssn), rec.getValueForGivenAttrName(Salary));
+      assertTrue(predicate.matches(rec));
+      assertTrue(ssns.add(ssn));
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    return ssns;
+  }
+
+  /**
+   * Scan the records satisfying the predicate, checking they hold the projected attributes only.
+   * @return the Names of the records
+   */
+  private Set<String> scanNames(String[] projection, Predicate predicate) {
+    Cursor cursor = records.openCursor(EmployeeTableName, projection, predicate, Cursor.Mode.READ, ScanHint.ITERATOR, 0);
+    assertNotNull(cursor);
+    Set<String> names = new HashSet<>();
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      assertEquals(new HashSet<>(Arrays.asList(projection)), rec.getMapAttrNameToValue().keySet());
+      assertTrue(names.add((String) rec.getValueForGivenAttrName(Name)));
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    return names;
+  }
+
+  private Set<String> getNames(Set<Long> ssns) {
+    Set<String> names = new HashSet<>();
+    for (long ssn : ssns) {
+      names.add(getName(ssn));
+    }
+    return names;
+  }
+
+  private Set<Long> getExpectedSSNs(LongPredicate isExpected) {
+    Set<Long> ssns = new HashSet<>();
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      if (isExpected.test(i)) {
+        ssns.add(i);
+      }
+    }
+    return ssns;
+  }
+
+  private Predicate getAndPredicate() {
+    return Predicate.and(
+        Predicate.compare(Age, ComparisonOperator.GREATER_THAN_OR_EQUAL_TO, 0L),
+        Predicate.compare(Salary, ComparisonOperator.LESS_THAN, 60.0),
+        Predicate.compare(Name, ComparisonOperator.GREATER_THAN, getName(3)));
+  }
+
+  private Set<Long> getExpectedAndSSNs() {
+    return getExpectedSSNs(i -> hasAge(i) && getAge(i) >= 0 && getSalary(i) < 60.0 && getName(i).compareTo(getName(3)) > 0);
+  }
+
+  private Predicate getOrPredicate() {
+    return Predicate.or(
+        Predicate.compare(Age, ComparisonOperator.EQUAL_TO, -3),
+        Predicate.and(
+            Predicate.compare(Salary, ComparisonOperator.GREATER_THAN_OR_EQUAL_TO, 100.0),
+            Predicate.compare(Name, ComparisonOperator.LESS_THAN_OR_EQUAL_TO, getName(9))));
+  }
+
+  private Set<Long> getExpectedOrSSNs() {
+    return getExpectedSSNs(i -> (hasAge(i) && getAge(i) == -3)
+        || (getSalary(i) >= 100.0 && getName(i).compareTo(getName(9)) <= 0));
+  }
+
+  /**
+   * An AND predicate returns the records satisfying all of its comparisons. A record missing a compared attribute
+   * satisfies none of them.
+   */
+  @Test
+  public void unitTest1() {
+    Set<Long> expectedSSNs = getExpectedAndSSNs();
+    assertFalse(expectedSSNs.isEmpty());
+    assertEquals(expectedSSNs, scan(getAndPredicate()));
+
+    assertEquals(getExpectedSSNs(i -> hasAge(i) && getAge(i) < 0),
+        scan(Predicate.and(Predicate.compare(Age, ComparisonOperator.LESS_THAN, 0))));
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * An OR predicate returns the records satisfying any of its branches, also the ones missing the attribute of
+   * another branch.
+   */
+  @Test
+  public void unitTest2() {
+    Set<Long> expectedSSNs = getExpectedOrSSNs();
+    assertTrue(expectedSSNs.stream().anyMatch(i -> !hasAge(i)));
+    assertEquals(expectedSSNs, scan(getOrPredicate()));
+    System.out.println("Test2 pass!");
+  }
+
+  /**
+   * With an index on a conjunct, the AND predicate returns the same records as the table scan. The index does not
+   * narrow an OR predicate, which still returns the records without an index entry.
+   */
+  @Test
+  public void unitTest3() {
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Age, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+    assertEquals(getExpectedAndSSNs(), scan(getAndPredicate()));
+    assertEquals(getExpectedOrSSNs(), scan(getOrPredicate()));
+
+    assertEquals(getExpectedSSNs(i -> hasAge(i) && getAge(i) == 4 && getSalary(i) > 0),
+        scan(Predicate.and(
+            Predicate.compare(Salary, ComparisonOperator.GREATER_THAN, 0.0),
+            Predicate.compare(Age, ComparisonOperator.EQUAL_TO, 4L))));
+    System.out.println("Test3 pass!");
+  }
+
+  /**
+   * A predicate comparing an attribute the table does not have, or a value of another type than the attribute's,
+   * opens no cursor.
+   */
+  @Test
+  public void unitTest4() {
+    Predicate[] invalidPredicates = new Predicate[]{
+        Predicate.compare("Department", ComparisonOperator.EQUAL_TO, 1L),
+        Predicate.compare(Age, ComparisonOperator.EQUAL_TO, "1"),
+        Predicate.compare(Salary, ComparisonOperator.EQUAL_TO, 1L),
+        Predicate.and(),
+        Predicate.or(Predicate.compare(Age, ComparisonOperator.EQUAL_TO, 1L), Predicate.compare(Name, ComparisonOperator.EQUAL_TO, 1L)),
+    };
+    for (Predicate predicate : invalidPredicates) {
+      assertNull(records.openCursor(EmployeeTableName, predicate, Cursor.Mode.READ, ScanHint.ITERATOR, 0));
+    }
+    System.out.println("Test4 pass!");
+  }
+
+  /**
+   * A projection returns the projected attributes only, also when the predicate compares other attributes, with and
+   * without an index narrowing the scan.
+   */
+  @Test
+  public void unitTest5() {
+    String[] projection = new String[]{Name};
+    assertEquals(getNames(getExpectedSSNs(i -> true)), scanNames(projection, null));
+    assertEquals(getNames(getExpectedAndSSNs()), scanNames(projection, getAndPredicate()));
+    assertEquals(getNames(getExpectedOrSSNs()), scanNames(projection, getOrPredicate()));
+
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Age, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+    assertEquals(getNames(getExpectedAndSSNs()), scanNames(projection, getAndPredicate()));
+
+    // a record without Age has no value for it in the projection either
+    projection = new String[]{Name, Age};
+    Cursor cursor = records.openCursor(EmployeeTableName, projection, null, Cursor.Mode.READ, ScanHint.ITERATOR, 0);
+    assertNotNull(cursor);
+    int count = 0;
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      assertNull(rec.getValueForGivenAttrName(SSN));
+      assertNull(rec.getValueForGivenAttrName(Salary));
+      count++;
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    assertEquals(initialNumberOfRecords, count);
+    System.out.println("Test5 pass!");
+  }
+
+  /**
+   * A projection of an attribute the table does not have, or a projection of a cursor that is not READ, opens no
+   * cursor.
+   */
+  @Test
+  public void unitTest6() {
+    assertNull(records.openCursor(EmployeeTableName, new String[]{Name, "Department"}, null, Cursor.Mode.READ,
+        ScanHint.ITERATOR, 0));
+    assertNull(records.openCursor(EmployeeTableName, new String[]{Name}, getAndPredicate(), Cursor.Mode.READ_WRITE,
+        ScanHint.ITERATOR, 0));
+    System.out.println("Test6 pass!");
+  }
+
+  private Predicate getRandomComparison(Random random) {
+    ComparisonOperator operator = ComparisonOperator.values()[random.nextInt(ComparisonOperator.values().length)];
+    switch (random.nextInt(4)) {
+      case 0:
+        return Predicate.compare(Age, operator, random.nextInt(5) - 2L);
+      case 1:
+        return Predicate.compare(Age, operator, random.nextInt(5) - 2);
+      case 2:
+        return Predicate.compare(Salary, operator, random.nextInt(5) - 2.0);
+      default:
+        return Predicate.compare(Name, operator, getName(random.nextInt(3)));
+    }
+  }
+
+  private Predicate getRandomPredicate(Random random, int depth) {
+    if (depth == 0 || random.nextInt(3) == 0) {
+      return getRandomComparison(random);
+    }
+    List<Predicate> predicates = new ArrayList<>();
+    for (int i = 0; i < 1 + random.nextInt(3); i++) {
+      predicates.add(getRandomPredicate(random, depth - 1));
+    }
+    Predicate[] children = predicates.toArray(new Predicate[0]);
+    return random.nextBoolean() ? Predicate.and(children) : Predicate.or(children);
+  }
+
+  /**
+   * Fill the row with random values, each missing, unboxed, or still packed.
+   */
+  private CompactRecord getRandomRow(Random random, CompactRecord.Layout layout) {
+    CompactRecord row = new CompactRecord(layout);
+    int ageSlot = layout.getSlot(Age);
+    int salarySlot = layout.getSlot(Salary);
+    int nameSlot = layout.getSlot(Name);
+    switch (random.nextInt(3)) {
+      case 0:
+        break;
+      case 1:
+        row.setLong(ageSlot, random.nextInt(5) - 2);
+        break;
+      default:
+        row.setRawValue(ageSlot, Tuple.from(random.nextInt(5) - 2L).pack());
+    }
+    switch (random.nextInt(3)) {
+      case 0:
+        break;
+      case 1:
+        row.setDouble(salarySlot, random.nextInt(5) - 2.0);
+        break;
+      default:
+        row.setRawValue(salarySlot, Tuple.from(random.nextInt(5) - 2.0).pack());
+    }
+    switch (random.nextInt(3)) {
+      case 0:
+        break;
+      case 1:
+        row.setValue(nameSlot, getName(random.nextInt(3)));
+        break;
+      default:
+        row.setRawValue(nameSlot, Tuple.from(getName(random.nextInt(3))).pack());
+    }
+    return row;
+  }
+
+  /**
+   * The evaluator a predicate is compiled into matches the same rows as the predicate, for every attribute type and
+   * operator, and for rows whose values are missing or still packed. Reading a packed value decodes it, so each check
+   * gets its own copy of the row.
+   */
+  @Test
+  public void unitTest7() {
+    Map<String, AttributeType> attributes = new HashMap<>();
+    Map<String, Integer> columnOrdinals = new HashMap<>();
+    for (int i = 0; i < EmployeeTableAttributeNames.length; i++) {
+      attributes.put(EmployeeTableAttributeNames[i], EmployeeTableAttributeTypes[i]);
+      columnOrdinals.put(EmployeeTableAttributeNames[i], i);
+    }
+    CompactRecord.Layout layout = new CompactRecord.Layout(attributes, columnOrdinals);
+
+    Random random = new Random(485);
+    for (int i = 0; i < 2000; i++) {
+      Predicate predicate = getRandomPredicate(random, 3);
+      Predicate.Evaluator evaluator = predicate.compile(layout);
+      for (int j = 0; j < 10; j++) {
+        long seed = random.nextLong();
+        CompactRecord row = getRandomRow(new Random(seed), layout);
+        boolean isMatching = predicate.matches((Function<String, Object>) row::getValue);
+        assertEquals(predicate.toString(), isMatching, evaluator.matches(getRandomRow(new Random(seed), layout)));
+        assertEquals(predicate.toString(), isMatching, predicate.matches(getRandomRow(new Random(seed), layout)));
+      }
+    }
+    System.out.println("Test7 pass!");
+  }
+
+  /**
+   * A predicate fixing the primary key with EQUAL_TO reads only that record's keys, and still returns the records
+   * the whole predicate matches, in both directions and across a continuation. Under an OR it does not narrow the scan.
+   */
+  @Test
+  public void unitTest8() {
+    long ssn = 42;
+    Predicate ssnPredicate = Predicate.compare(SSN, ComparisonOperator.EQUAL_TO, ssn);
+    assertEquals(getExpectedSSNs(i -> i == ssn), scan(ssnPredicate));
+    assertEquals(getExpectedSSNs(i -> i == ssn), scan(Predicate.compare(SSN, ComparisonOperator.EQUAL_TO, (int) ssn)));
+    assertEquals(getExpectedSSNs(i -> false), scan(Predicate.compare(SSN, ComparisonOperator.EQUAL_TO, -1L)));
+    assertEquals(getExpectedSSNs(i -> false), scan(Predicate.and(ssnPredicate,
+        Predicate.compare(Salary, ComparisonOperator.LESS_THAN, getSalary(ssn)))));
+    assertEquals(getExpectedSSNs(i -> false), scan(Predicate.and(ssnPredicate,
+        Predicate.compare(SSN, ComparisonOperator.EQUAL_TO, ssn + 1))));
+    assertEquals(getExpectedSSNs(i -> i == ssn || i == ssn + 1), scan(Predicate.or(ssnPredicate,
+        Predicate.compare(SSN, ComparisonOperator.EQUAL_TO, ssn + 1))));
+
+    Cursor cursor = records.openCursor(EmployeeTableName, ssnPredicate, Cursor.Mode.READ, ScanHint.ITERATOR, 0);
+    assertNotNull(cursor);
+    Record rec = records.getLast(cursor);
+    assertNotNull(rec);
+    assertEquals(ssn, rec.getValueForGivenAttrName(SSN));
+    assertNull(records.getPrevious(cursor));
+    byte[] continuation = cursor.getContinuation();
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+
+    for (boolean isBackward : new boolean[]{false, true}) {
+      cursor = records.openCursor(EmployeeTableName, ssnPredicate, Cursor.Mode.READ, ScanHint.ITERATOR, 0);
+      assertNotNull(cursor);
+      cursor.setContinuation(continuation);
+      assertNull(isBackward ? records.getLast(cursor) : records.getFirst(cursor));
+      assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    }
+    System.out.println("Test8 pass!");
+  }
+}
@@ -0,0 +1,128 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.RecordsImpl;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.CompactRecord;
+import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.StorageFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RecordDecodingTest covers the decoding of scanned INT and DOUBLE values from their tuple encoding, at the edges of
+ * the encoding's integer lengths and for negative values, in both storage formats, and the unboxed slots they are
+ * decoded into.
+ */
+public class RecordDecodingTest {
+
+  public static String ValueTableName = "Value";
+  public static String Id = "Id";
+  public static String IntValue = "IntValue";
+  public static String DoubleValue = "DoubleValue";
+
+  public static String[] ValueTableAttributeNames = new String[]{Id, IntValue, DoubleValue};
+  public static String[] ValueTableNonPKAttributeNames = new String[]{IntValue, DoubleValue};
+  public static AttributeType[] ValueTableAttributeTypes =
+      new AttributeType[]{AttributeType.INT, AttributeType.INT, AttributeType.DOUBLE};
+  public static String[] ValueTablePKAttributes = new String[]{Id};
+
+  public static long[] intValues = new long[]{
+      0, 1, -1, 255, -255, 256, -256, 65535, -65536, Integer.MAX_VALUE, Integer.MIN_VALUE,
+      (1L << 56) - 1, -(1L << 56) + 1, 1L << 56, -(1L << 56), Long.MAX_VALUE, Long.MIN_VALUE + 1, Long.MIN_VALUE};
+  public static double[] doubleValues = new double[]{
+      0.0, -0.0, 1.5, -1.5, 1e-300, -1e300, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+      Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN};
+
+  private TableManager tableManager;
+  private Records records;
+
+  private int getNumberOfRecords() {
+    return Math.max(intValues.length, doubleValues.length);
+  }
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    records = new RecordsImpl();
+    tableManager.dropAllTables();
+  }
+
+  @After
+  public void close() {
+    tableManager.closeDatabase();
+    records.closeDatabase();
+  }
+
+  private void createTable(StorageFormat storageFormat) {
+    tableManager.dropAllTables();
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(ValueTableName, ValueTableAttributeNames,
+        ValueTableAttributeTypes, ValueTablePKAttributes, storageFormat));
+    for (int i = 0; i < getNumberOfRecords(); i++) {
+      assertEquals(StatusCode.SUCCESS, records.insertRecord(ValueTableName, ValueTablePKAttributes,
+          new Object[]{(long) i}, ValueTableNonPKAttributeNames,
+          new Object[]{intValues[i % intValues.length], doubleValues[i % doubleValues.length]}));
+    }
+  }
+
+  /**
+   * Every INT and DOUBLE value is scanned back as it was inserted, including negative integers of every length and
+   * negative zero, infinite and NaN doubles.
+   */
+  @Test
+  public void unitTest1() {
+    for (StorageFormat storageFormat : StorageFormat.values()) {
+      createTable(storageFormat);
+      Cursor cursor = records.openCursor(ValueTableName, Cursor.Mode.READ);
+      assertNotNull(cursor);
+      long id = 0;
+      for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+        assertEquals(id, rec.getValueForGivenAttrName(Id));
+        assertEquals(intValues[(int) id % intValues.length], rec.getValueForGivenAttrName(IntValue));
+        assertEquals(doubleValues[(int) id % doubleValues.length], rec.getValueForGivenAttrName(DoubleValue));
+        id++;
+      }
+      assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+      assertEquals(getNumberOfRecords(), id);
+    }
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * The scanned INT and DOUBLE values are held unboxed in the slots of their attributes.
+   */
+  @Test
+  public void unitTest2() {
+    for (StorageFormat storageFormat : StorageFormat.values()) {
+      createTable(storageFormat);
+      Cursor cursor = records.openCursor(ValueTableName, Cursor.Mode.READ);
+      assertNotNull(cursor);
+      long id = 0;
+      for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+        CompactRecord row = rec.getCompactRecord();
+        assertNotNull(row);
+        int intSlot = row.getLayout().getSlot(IntValue);
+        int doubleSlot = row.getLayout().getSlot(DoubleValue);
+        assertTrue(row.isLong(row.getLayout().getSlot(Id)));
+        assertTrue(row.isLong(intSlot));
+        assertTrue(row.isDouble(doubleSlot));
+        assertEquals(intValues[(int) id % intValues.length], row.getLong(intSlot));
+        assertEquals(Double.doubleToRawLongBits(doubleValues[(int) id % doubleValues.length]),
+            Double.doubleToRawLongBits(row.getDouble(doubleSlot)));
+        id++;
+      }
+      assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+      assertEquals(getNumberOfRecords(), id);
+    }
+    System.out.println("Test2 pass!");
+  }
+}
@@ -0,0 +1,185 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.Indexes;
+import CSCI485ClassProject.IndexesImpl;
+import CSCI485ClassProject.Predicate;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.RecordsImpl;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.ScanHint;
+import CSCI485ClassProject.models.StorageFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * RowLimitTest covers the row limit of a cursor: it returns at most that many records, the first ones of the scan, in
+ * both storage formats, with and without a predicate or an index, in both directions and for every scan hint.
+ */
+public class RowLimitTest {
+
+  public static String EmployeeTableName = "Employee";
+  public static String SSN = "SSN";
+  public static String Name = "Name";
+  public static String Salary = "Salary";
+
+  public static String[] EmployeeTableAttributeNames = new String[]{SSN, Name, Salary};
+  public static String[] EmployeeTableNonPKAttributeNames = new String[]{Name, Salary};
+  public static AttributeType[] EmployeeTableAttributeTypes =
+      new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR, AttributeType.INT};
+  public static String[] EmployeeTablePKAttributes = new String[]{SSN};
+
+  public static int initialNumberOfRecords = 50;
+  public static int numberOfSalaries = 10;
+  public static long minSalary = 6;
+  // a limit of 1, a limit within the matching records, and a limit past all of them
+  public static int[] rowLimits = new int[]{1, 7, initialNumberOfRecords + 1};
+
+  private TableManager tableManager;
+  private Records records;
+  private Indexes indexes;
+
+  private String getName(long i) {
+    return "Name" + i;
+  }
+
+  private long getSalary(long i) {
+    return i % numberOfSalaries;
+  }
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    records = new RecordsImpl();
+    indexes = new IndexesImpl();
+    tableManager.dropAllTables();
+  }
+
+  @After
+  public void close() {
+    tableManager.closeDatabase();
+    records.closeDatabase();
+    indexes.closeDatabase();
+  }
+
+  private void createTable(StorageFormat storageFormat) {
+    tableManager.dropAllTables();
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(EmployeeTableName, EmployeeTableAttributeNames,
+        EmployeeTableAttributeTypes, EmployeeTablePKAttributes, storageFormat));
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+          new Object[]{i}, EmployeeTableNonPKAttributeNames, new Object[]{getName(i), getSalary(i)}));
+    }
+  }
+
+  /**
+   * Read the cursor to its end in the given direction.
+   * @return the SSNs in the order they were returned
+   */
+  private List<Long> scan(Cursor cursor, boolean isBackward) {
+    assertNotNull(cursor);
+    List<Long> ssns = new ArrayList<>();
+    Record rec = isBackward ? records.getLast(cursor) : records.getFirst(cursor);
+    while (rec != null) {
+      long ssn = (long) rec.getValueForGivenAttrName(SSN);
+      assertEquals(getName(ssn), rec.getValueForGivenAttrName(Name));
+      assertEquals(getSalary(ssn), rec.getValueForGivenAttrName(Salary));
+      ssns.add(ssn);
+      rec = isBackward ? records.getPrevious(cursor) : records.getNext(cursor);
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    return ssns;
+  }
+
+  /**
+   * The first rowLimit SSNs of the scan, in primary key order or in Salary then primary key order for the index.
+   */
+  private List<Long> getExpectedSSNs(boolean hasPredicate, boolean isUsingIndex, boolean isBackward, int rowLimit) {
+    List<Long> ssns = new ArrayList<>();
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      if (!hasPredicate || getSalary(i) >= minSalary) {
+        ssns.add(i);
+      }
+    }
+    if (isUsingIndex) {
+      ssns.sort((a, b) -> getSalary(a) != getSalary(b) ? Long.compare(getSalary(a), getSalary(b)) : Long.compare(a, b));
+    }
+    if (isBackward) {
+      Collections.reverse(ssns);
+    }
+    return ssns.subList(0, Math.min(rowLimit, ssns.size()));
+  }
+
+  /**
+   * A table cursor without a predicate returns the first rowLimit records, in both storage formats and directions.
+   */
+  @Test
+  public void unitTest1() {
+    for (StorageFormat storageFormat : StorageFormat.values()) {
+      createTable(storageFormat);
+      for (ScanHint scanHint : ScanHint.values()) {
+        for (int rowLimit : rowLimits) {
+          for (boolean isBackward : new boolean[]{false, true}) {
+            Cursor cursor = records.openCursor(EmployeeTableName, Cursor.Mode.READ, scanHint, rowLimit);
+            assertEquals(getExpectedSSNs(false, false, isBackward, rowLimit), scan(cursor, isBackward));
+          }
+        }
+      }
+    }
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * A table cursor with a predicate returns the first rowLimit matching records, the rejected records not counting,
+   * in both storage formats and directions.
+   */
+  @Test
+  public void unitTest2() {
+    Predicate predicate = Predicate.compare(Salary, ComparisonOperator.GREATER_THAN_OR_EQUAL_TO, minSalary);
+    for (StorageFormat storageFormat : StorageFormat.values()) {
+      createTable(storageFormat);
+      for (ScanHint scanHint : ScanHint.values()) {
+        for (int rowLimit : rowLimits) {
+          for (boolean isBackward : new boolean[]{false, true}) {
+            Cursor cursor = records.openCursor(EmployeeTableName, predicate, Cursor.Mode.READ, scanHint, rowLimit);
+            assertEquals(getExpectedSSNs(true, false, isBackward, rowLimit), scan(cursor, isBackward));
+          }
+        }
+      }
+    }
+    System.out.println("Test2 pass!");
+  }
+
+  /**
+   * An index cursor returns the first rowLimit records in index order, in both directions.
+   */
+  @Test
+  public void unitTest3() {
+    createTable(StorageFormat.KEY_PER_ATTRIBUTE);
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+    for (ScanHint scanHint : ScanHint.values()) {
+      for (int rowLimit : rowLimits) {
+        for (boolean isBackward : new boolean[]{false, true}) {
+          Cursor cursor = records.openCursor(EmployeeTableName, Salary, minSalary,
+              ComparisonOperator.GREATER_THAN_OR_EQUAL_TO, Cursor.Mode.READ, true, scanHint, rowLimit);
+          assertEquals(getExpectedSSNs(true, true, isBackward, rowLimit), scan(cursor, isBackward));
+        }
+      }
+    }
+    System.out.println("Test3 pass!");
+  }
+}
@@ -0,0 +1,241 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.CatalogCache;
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.DroppedAttributeCleaner;
+import CSCI485ClassProject.Indexes;
+import CSCI485ClassProject.IndexesImpl;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.RecordsImpl;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.TableMetadataTransformer;
+import CSCI485ClassProject.fdb.FDBHelper;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.Record;
+import CSCI485ClassProject.models.StorageFormat;
+import CSCI485ClassProject.models.TableMetadata;
+import com.apple.foundationdb.Database;
+import com.apple.foundationdb.directory.DirectorySubspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * StorageFormatTest covers the ROW_PACKED storage format, its column layout across schema changes, and dropping an
+ * attribute in both storage formats, also when the clear of its values is interrupted.
+ */
+public class StorageFormatTest {
+
+  public static String EmployeeTableName = "Employee";
+  public static String SSN = "SSN";
+  public static String Name = "Name";
+  public static String Age = "Age";
+  public static String Salary = "Salary";
+
+  public static String[] EmployeeTableAttributeNames = new String[]{SSN, Name, Age};
+  public static String[] EmployeeTableNonPKAttributeNames = new String[]{Name, Age};
+  public static AttributeType[] EmployeeTableAttributeTypes =
+      new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR, AttributeType.INT};
+  public static String[] EmployeeTablePKAttributes = new String[]{SSN};
+
+  public static int initialNumberOfRecords = 50;
+
+  private TableManager tableManager;
+  private Records records;
+  private Indexes indexes;
+
+  private String getName(long i) {
+    return "Name" + i;
+  }
+
+  private long getAge(long i) {
+    return (i+25)%90;
+  }
+
+  private long getSalary(long i) {
+    return i + 100;
+  }
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    records = new RecordsImpl();
+    indexes = new IndexesImpl();
+    tableManager.dropAllTables();
+  }
+
+  @After
+  public void close() {
+    tableManager.closeDatabase();
+    records.closeDatabase();
+    indexes.closeDatabase();
+  }
+
+  private void createTable(StorageFormat storageFormat) {
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(EmployeeTableName, EmployeeTableAttributeNames,
+        EmployeeTableAttributeTypes, EmployeeTablePKAttributes, storageFormat));
+  }
+
+  private void insertRecords(long from, long to) {
+    for (long i = from; i < to; i++) {
+      assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+          new Object[]{i}, EmployeeTableNonPKAttributeNames, new Object[]{getName(i), getAge(i)}));
+    }
+  }
+
+  private void insertRecordsWithSalary(long from, long to) {
+    for (long i = from; i < to; i++) {
+      assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+          new Object[]{i}, new String[]{Name, Age, Salary}, new Object[]{getName(i), getAge(i), getSalary(i)}));
+    }
+  }
+
+  /**
+   * Check that the table holds the records [0, count), with their Salary from salaryFrom on.
+   */
+  private void verifyRecords(long count, long salaryFrom) {
+    Cursor cursor = records.openCursor(EmployeeTableName, Cursor.Mode.READ);
+    assertNotNull(cursor);
+    long ssn = 0;
+    Record rec = records.getFirst(cursor);
+    while (rec != null) {
+      assertEquals(ssn, rec.getValueForGivenAttrName(SSN));
+      assertEquals(getName(ssn), rec.getValueForGivenAttrName(Name));
+      assertEquals(getAge(ssn), rec.getValueForGivenAttrName(Age));
+      if (ssn >= salaryFrom) {
+        assertEquals(getSalary(ssn), rec.getValueForGivenAttrName(Salary));
+      } else {
+        assertNull(rec.getValueForGivenAttrName(Salary));
+      }
+      ssn++;
+      rec = records.getNext(cursor);
+    }
+    assertEquals(count, ssn);
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+  }
+
+  /**
+   * The storage format is part of the table's metadata.
+   */
+  @Test
+  public void unitTest1() {
+    createTable(StorageFormat.ROW_PACKED);
+
+    TableMetadata packedTable = new TableMetadata(EmployeeTableAttributeNames, EmployeeTableAttributeTypes,
+        EmployeeTablePKAttributes);
+    packedTable.setStorageFormat(StorageFormat.ROW_PACKED);
+    TableMetadata keyPerAttributeTable = new TableMetadata(EmployeeTableAttributeNames, EmployeeTableAttributeTypes,
+        EmployeeTablePKAttributes);
+
+    TableMetadata listedTable = tableManager.listTables().get(EmployeeTableName);
+    assertEquals(packedTable, listedTable);
+    assertEquals(packedTable.hashCode(), listedTable.hashCode());
+    assertNotEquals(keyPerAttributeTable, listedTable);
+    assertEquals(EmployeeTableAttributeNames.length, listedTable.getLayoutVersion());
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * ROW_PACKED records written before addAttribute are read with the old layout, the later ones with the new one.
+   */
+  @Test
+  public void unitTest2() {
+    createTable(StorageFormat.ROW_PACKED);
+    insertRecords(0, initialNumberOfRecords);
+    verifyRecords(initialNumberOfRecords, Long.MAX_VALUE);
+
+    assertEquals(StatusCode.SUCCESS, tableManager.addAttribute(EmployeeTableName, Salary, AttributeType.INT));
+    TableMetadata table = tableManager.listTables().get(EmployeeTableName);
+    assertEquals(EmployeeTableAttributeNames.length + 1, table.getLayoutVersion());
+    assertEquals(EmployeeTableAttributeNames.length, table.getColumnOrdinal(Salary));
+
+    insertRecordsWithSalary(initialNumberOfRecords, 2L * initialNumberOfRecords);
+    verifyRecords(2L * initialNumberOfRecords, initialNumberOfRecords);
+    System.out.println("Test2 pass!");
+  }
+
+  /**
+   * An attribute dropped and added again does not bring back the dropped values or index, in either storage format.
+   */
+  @Test
+  public void unitTest3() {
+    for (StorageFormat storageFormat : StorageFormat.values()) {
+      tableManager.dropAllTables();
+      createTable(storageFormat);
+      insertRecordsWithSalary(0, initialNumberOfRecords);
+      assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+
+      assertEquals(StatusCode.SUCCESS, tableManager.dropAttribute(EmployeeTableName, Salary));
+      assertFalse(tableManager.listTables().get(EmployeeTableName).doesAttributeExist(Salary));
+      assertEquals(StatusCode.INDEX_NOT_FOUND, indexes.dropIndex(EmployeeTableName, Salary));
+
+      assertEquals(StatusCode.SUCCESS, tableManager.addAttribute(EmployeeTableName, Salary, AttributeType.INT));
+      verifyRecords(initialNumberOfRecords, Long.MAX_VALUE);
+      assertNull(records.openCursor(EmployeeTableName, Salary, getSalary(0), ComparisonOperator.EQUAL_TO,
+          Cursor.Mode.READ, true));
+    }
+    System.out.println("Test3 pass!");
+  }
+
+  /**
+   * Drop Salary the way dropAttribute's transaction does, leaving the clear of its values pending as if it was
+   * interrupted before its first batch.
+   */
+  private void dropSalaryWithoutClearing() {
+    Database db = FDBHelper.initialization();
+    assertEquals(StatusCode.SUCCESS, FDBHelper.runTransaction(db, tx -> {
+      TableMetadataTransformer transformer = new TableMetadataTransformer(EmployeeTableName);
+      DirectorySubspace tableAttrDir = FDBHelper.openSubspace(tx, transformer.getTableAttributeStorePath());
+      FDBHelper.removeKeyValuePair(tableAttrDir, tx, TableMetadataTransformer.getTableAttributeKeyTuple(Salary));
+      DroppedAttributeCleaner.markDropped(tx, FDBHelper.openSubspace(tx, Collections.singletonList(EmployeeTableName)), Salary);
+      CatalogCache.bumpVersion(tx);
+      return StatusCode.SUCCESS;
+    }));
+    FDBHelper.close(db);
+  }
+
+  /**
+   * The values of a dropped KEY_PER_ATTRIBUTE attribute not cleared yet are not read back, and are cleared before the
+   * attribute is added again, by addAttribute or by an insert, even with another type.
+   */
+  @Test
+  public void unitTest4() {
+    createTable(StorageFormat.KEY_PER_ATTRIBUTE);
+    insertRecordsWithSalary(0, initialNumberOfRecords);
+    dropSalaryWithoutClearing();
+    verifyRecords(initialNumberOfRecords, Long.MAX_VALUE);
+
+    assertEquals(StatusCode.SUCCESS, tableManager.addAttribute(EmployeeTableName, Salary, AttributeType.VARCHAR));
+    verifyRecords(initialNumberOfRecords, Long.MAX_VALUE);
+
+    assertEquals(StatusCode.SUCCESS, tableManager.dropAttribute(EmployeeTableName, Salary));
+    insertRecordsWithSalary(initialNumberOfRecords, initialNumberOfRecords + 1);
+    dropSalaryWithoutClearing();
+    assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+        new Object[]{(long) initialNumberOfRecords + 1}, new String[]{Name, Age, Salary},
+        new Object[]{getName(initialNumberOfRecords + 1), getAge(initialNumberOfRecords + 1), "x"}));
+
+    Cursor cursor = records.openCursor(EmployeeTableName, Cursor.Mode.READ);
+    assertNotNull(cursor);
+    long ssn = 0;
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      assertEquals(ssn == initialNumberOfRecords + 1 ? "x" : null, rec.getValueForGivenAttrName(Salary));
+      ssn++;
+    }
+    assertEquals(initialNumberOfRecords + 2, ssn);
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    System.out.println("Test4 pass!");
+  }
+}
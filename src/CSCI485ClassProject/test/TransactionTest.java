@@ -0,0 +1,177 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.fdb.FDBHelper;
+import CSCI485ClassProject.metrics.InMemoryMetricsRegistry;
+import CSCI485ClassProject.metrics.Metrics;
+import com.apple.foundationdb.Database;
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.Tuple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * TransactionTest covers FDBHelper.runTransaction and runTransactionAsync: a body conflicting with a concurrent writer
+ * runs again and succeeds, a body returning another status than SUCCESS commits nothing, and an exception that is not
+ * an FDB error is rethrown to the caller without a retry.
+ */
+public class TransactionTest {
+
+  public static Subspace TestSubspace = new Subspace(new Tuple().add("TransactionTest"));
+  public static byte[] CounterKey = TestSubspace.pack(new Tuple().add("counter"));
+  public static byte[] OtherKey = TestSubspace.pack(new Tuple().add("other"));
+
+  private TableManager tableManager;
+  private Database db;
+  private InMemoryMetricsRegistry registry;
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    db = FDBHelper.initialization();
+    registry = new InMemoryMetricsRegistry();
+    Metrics.setRegistry(registry);
+    tableManager.dropAllTables();
+  }
+
+  @After
+  public void close() {
+    Metrics.setRegistry(null);
+    FDBHelper.close(db);
+    tableManager.closeDatabase();
+  }
+
+  private static long decode(byte[] value) {
+    return value == null ? 0 : Tuple.fromBytes(value).getLong(0);
+  }
+
+  private static byte[] encode(long value) {
+    return new Tuple().add(value).pack();
+  }
+
+  private byte[] read(byte[] key) {
+    byte[][] valueHolder = new byte[1][];
+    assertEquals(StatusCode.SUCCESS, FDBHelper.runTransaction(db, tx -> {
+      valueHolder[0] = tx.get(key).join();
+      return StatusCode.SUCCESS;
+    }));
+    return valueHolder[0];
+  }
+
+  /**
+   * Commit a write of the key from another transaction.
+   */
+  private void writeConcurrently(byte[] key, long value) {
+    assertEquals(StatusCode.SUCCESS, FDBHelper.runTransaction(db, tx -> {
+      tx.set(key, encode(value));
+      return StatusCode.SUCCESS;
+    }));
+  }
+
+  /**
+   * Increment the counter, after a concurrent writer changed it on the first attempt only.
+   */
+  private StatusCode incrementWithConflict(Transaction tx, AtomicInteger attempts) {
+    long counter = decode(tx.get(CounterKey).join());
+    if (attempts.incrementAndGet() == 1) {
+      writeConcurrently(CounterKey, 10);
+    }
+    tx.set(CounterKey, encode(counter + 1));
+    return StatusCode.SUCCESS;
+  }
+
+  /**
+   * A body whose read is overwritten by a concurrent writer before its commit conflicts, runs again on the new value
+   * and succeeds.
+   */
+  @Test
+  public void unitTest1() {
+    AtomicInteger attempts = new AtomicInteger();
+    assertEquals(StatusCode.SUCCESS, FDBHelper.runTransaction(db, tx -> incrementWithConflict(tx, attempts)));
+    assertEquals(2, attempts.get());
+    assertEquals(11, decode(read(CounterKey)));
+    assertEquals(1, registry.getCounter(Metrics.CONFLICTS));
+    assertEquals(1, registry.getCounter(Metrics.RETRIES));
+
+    attempts.set(0);
+    assertEquals(StatusCode.SUCCESS, FDBHelper.runTransactionAsync(db,
+        tx -> CompletableFuture.supplyAsync(() -> incrementWithConflict(tx, attempts), db.getExecutor())).join());
+    assertEquals(2, attempts.get());
+    assertEquals(11, decode(read(CounterKey)));
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * A body returning another status than SUCCESS gets that status back and commits none of its writes.
+   */
+  @Test
+  public void unitTest2() {
+    assertEquals(StatusCode.TABLE_NOT_FOUND, FDBHelper.runTransaction(db, tx -> {
+      tx.set(OtherKey, encode(1));
+      return StatusCode.TABLE_NOT_FOUND;
+    }));
+    assertNull(read(OtherKey));
+
+    assertEquals(StatusCode.TABLE_NOT_FOUND, FDBHelper.runTransactionAsync(db, tx -> {
+      tx.set(OtherKey, encode(1));
+      return CompletableFuture.completedFuture(StatusCode.TABLE_NOT_FOUND);
+    }).join());
+    assertNull(read(OtherKey));
+    System.out.println("Test2 pass!");
+  }
+
+  /**
+   * An exception of the body that is not an FDB error reaches the caller, the body is not run again and its writes
+   * are not committed, whether the body throws or fails its future.
+   */
+  @Test
+  public void unitTest3() {
+    IllegalStateException bodyException = new IllegalStateException("broken body");
+    AtomicInteger attempts = new AtomicInteger();
+    try {
+      FDBHelper.runTransaction(db, tx -> {
+        attempts.incrementAndGet();
+        tx.set(OtherKey, encode(1));
+        throw bodyException;
+      });
+      fail("the exception of the body is swallowed");
+    } catch (IllegalStateException e) {
+      assertSame(bodyException, e);
+    }
+    assertEquals(1, attempts.get());
+    assertNull(read(OtherKey));
+
+    for (boolean isThrowing : new boolean[]{true, false}) {
+      attempts.set(0);
+      try {
+        FDBHelper.runTransactionAsync(db, tx -> {
+          attempts.incrementAndGet();
+          tx.set(OtherKey, encode(1));
+          if (isThrowing) {
+            throw bodyException;
+          }
+          return CompletableFuture.failedFuture(bodyException);
+        }).join();
+        fail("the exception of the body is swallowed");
+      } catch (CompletionException e) {
+        assertSame(bodyException, e.getCause());
+      }
+      assertEquals(1, attempts.get());
+      assertNull(read(OtherKey));
+    }
+    System.out.println("Test3 pass!");
+  }
+}
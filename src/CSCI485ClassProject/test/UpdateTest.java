@@ -0,0 +1,268 @@
+package CSCI485ClassProject.test;
+
+import CSCI485ClassProject.Cursor;
+import CSCI485ClassProject.Indexes;
+import CSCI485ClassProject.IndexesImpl;
+import CSCI485ClassProject.Records;
+import CSCI485ClassProject.RecordsImpl;
+import CSCI485ClassProject.StatusCode;
+import CSCI485ClassProject.TableManager;
+import CSCI485ClassProject.TableManagerImpl;
+import CSCI485ClassProject.models.AttributeType;
+import CSCI485ClassProject.models.ComparisonOperator;
+import CSCI485ClassProject.models.IndexType;
+import CSCI485ClassProject.models.Record;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * UpdateTest covers Records.updateRecord: the maintenance of the index entries when a value or the primary key
+ * changes, the checks of the new values, and the updates an index cursor does not allow.
+ */
+public class UpdateTest {
+
+  public static String EmployeeTableName = "Employee";
+  public static String SSN = "SSN";
+  public static String Name = "Name";
+  public static String Salary = "Salary";
+
+  public static String[] EmployeeTableAttributeNames = new String[]{SSN, Name, Salary};
+  public static AttributeType[] EmployeeTableAttributeTypes =
+      new AttributeType[]{AttributeType.INT, AttributeType.VARCHAR, AttributeType.INT};
+  public static String[] EmployeeTablePKAttributes = new String[]{SSN};
+
+  public static int initialNumberOfRecords = 50;
+  public static int numberOfSalaries = 10;
+
+  private TableManager tableManager;
+  private Records records;
+  private Indexes indexes;
+
+  private String getName(long i) {
+    return "Name" + i;
+  }
+
+  private long getSalary(long i) {
+    return i % numberOfSalaries;
+  }
+
+  @Before
+  public void init(){
+    tableManager = new TableManagerImpl();
+    records = new RecordsImpl();
+    indexes = new IndexesImpl();
+    tableManager.dropAllTables();
+    assertEquals(StatusCode.SUCCESS, tableManager.createTable(EmployeeTableName,
+        EmployeeTableAttributeNames, EmployeeTableAttributeTypes, EmployeeTablePKAttributes));
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      assertEquals(StatusCode.SUCCESS, records.insertRecord(EmployeeTableName, EmployeeTablePKAttributes,
+          new Object[]{i}, new String[]{Name, Salary}, new Object[]{getName(i), getSalary(i)}));
+    }
+    assertEquals(StatusCode.SUCCESS, indexes.createIndex(EmployeeTableName, Salary, IndexType.NON_CLUSTERED_B_PLUS_TREE_INDEX));
+  }
+
+  @After
+  public void close() {
+    tableManager.closeDatabase();
+    records.closeDatabase();
+    indexes.closeDatabase();
+  }
+
+  /**
+   * Scan the Salary index for the given value.
+   * @return the SSNs of the records found
+   */
+  private Set<Long> getSSNsWithSalary(long salary) {
+    Cursor cursor = records.openCursor(EmployeeTableName, Salary, salary, ComparisonOperator.EQUAL_TO,
+        Cursor.Mode.READ, true);
+    assertNotNull(cursor);
+    Set<Long> ssns = new HashSet<>();
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      assertEquals(salary, rec.getValueForGivenAttrName(Salary));
+      ssns.add((long) rec.getValueForGivenAttrName(SSN));
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    return ssns;
+  }
+
+  private Set<Long> getExpectedSSNsWithSalary(long salary) {
+    Set<Long> ssns = new HashSet<>();
+    for (long i = 0; i < initialNumberOfRecords; i++) {
+      if (getSalary(i) == salary) {
+        ssns.add(i);
+      }
+    }
+    return ssns;
+  }
+
+  /**
+   * Open a table cursor on the record of the given SSN.
+   */
+  private Cursor openCursorOn(long ssn) {
+    Cursor cursor = records.openCursor(EmployeeTableName, SSN, ssn, ComparisonOperator.EQUAL_TO,
+        Cursor.Mode.READ_WRITE, false);
+    assertNotNull(cursor);
+    return cursor;
+  }
+
+  /**
+   * Changing an indexed value moves the record's index entry to the new value.
+   */
+  @Test
+  public void unitTest1() {
+    long newSalary = numberOfSalaries + 1;
+    Cursor cursor = openCursorOn(0);
+    assertNotNull(records.getFirst(cursor));
+    assertEquals(StatusCode.SUCCESS, records.updateRecord(cursor, new String[]{Salary}, new Object[]{newSalary}));
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+
+    Set<Long> expectedSSNs = getExpectedSSNsWithSalary(getSalary(0));
+    expectedSSNs.remove(0L);
+    assertEquals(expectedSSNs, getSSNsWithSalary(getSalary(0)));
+    Set<Long> ssns = getSSNsWithSalary(newSalary);
+    assertEquals(1, ssns.size());
+    assertEquals(Long.valueOf(0), ssns.iterator().next());
+    System.out.println("Test1 pass!");
+  }
+
+  /**
+   * Changing the primary key moves the record and every index entry of it to the new key.
+   */
+  @Test
+  public void unitTest2() {
+    long newSSN = initialNumberOfRecords + 10;
+    Cursor cursor = openCursorOn(3);
+    assertNotNull(records.getFirst(cursor));
+    assertEquals(StatusCode.SUCCESS, records.updateRecord(cursor, new String[]{SSN}, new Object[]{newSSN}));
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+
+    Set<Long> expectedSSNs = getExpectedSSNsWithSalary(getSalary(3));
+    expectedSSNs.remove(3L);
+    expectedSSNs.add(newSSN);
+    assertEquals(expectedSSNs, getSSNsWithSalary(getSalary(3)));
+
+    cursor = openCursorOn(3);
+    assertNull(records.getFirst(cursor));
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+
+    cursor = openCursorOn(newSSN);
+    Record rec = records.getFirst(cursor);
+    assertNotNull(rec);
+    assertEquals(getName(3), rec.getValueForGivenAttrName(Name));
+    assertEquals(getSalary(3), rec.getValueForGivenAttrName(Salary));
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    System.out.println("Test2 pass!");
+  }
+
+  /**
+   * Values equal to the stored ones are no change, even of another integer type; values of the wrong type and
+   * primary keys already taken are rejected and leave the record as it was.
+   */
+  @Test
+  public void unitTest3() {
+    Cursor cursor = openCursorOn(1);
+    assertNotNull(records.getFirst(cursor));
+    assertEquals(StatusCode.SUCCESS, records.updateRecord(cursor, new String[]{SSN, Salary},
+        new Object[]{1, (int) getSalary(1)}));
+    assertEquals(StatusCode.DATA_RECORD_CREATION_ATTRIBUTE_TYPE_UNMATCHED,
+        records.updateRecord(cursor, new String[]{Name}, new Object[]{1L}));
+    assertEquals(StatusCode.DATA_RECORD_CREATION_ATTRIBUTE_TYPE_UNMATCHED,
+        records.updateRecord(cursor, new String[]{Salary}, new Object[]{"1"}));
+    assertEquals(StatusCode.DATA_RECORD_CREATION_ATTRIBUTE_TYPE_UNMATCHED,
+        records.updateRecord(cursor, new String[]{Salary}, new Object[]{null}));
+    assertEquals(StatusCode.DATA_RECORD_PRIMARY_KEYS_DUPLICATED,
+        records.updateRecord(cursor, new String[]{SSN, Name}, new Object[]{2L, getName(2)}));
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+
+    for (long ssn = 1; ssn <= 2; ssn++) {
+      cursor = openCursorOn(ssn);
+      Record rec = records.getFirst(cursor);
+      assertNotNull(rec);
+      assertEquals(getName(ssn), rec.getValueForGivenAttrName(Name));
+      assertEquals(getSalary(ssn), rec.getValueForGivenAttrName(Salary));
+      assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    }
+    assertEquals(getExpectedSSNsWithSalary(getSalary(1)), getSSNsWithSalary(getSalary(1)));
+    System.out.println("Test3 pass!");
+  }
+
+  /**
+   * An index cursor updates the other attributes of the records it visits, but not the indexed attribute or the
+   * primary key.
+   */
+  @Test
+  public void unitTest4() {
+    long salary = getSalary(5);
+    Cursor cursor = records.openCursor(EmployeeTableName, Salary, salary, ComparisonOperator.GREATER_THAN_OR_EQUAL_TO,
+        Cursor.Mode.READ_WRITE, true);
+    assertNotNull(cursor);
+    int numberOfUpdates = 0;
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      long ssn = (long) rec.getValueForGivenAttrName(SSN);
+      assertEquals(StatusCode.CURSOR_UPDATE_INDEXED_ATTRIBUTE,
+          records.updateRecord(cursor, new String[]{Salary}, new Object[]{salary + numberOfSalaries}));
+      assertEquals(StatusCode.CURSOR_UPDATE_INDEXED_ATTRIBUTE,
+          records.updateRecord(cursor, new String[]{SSN}, new Object[]{ssn + initialNumberOfRecords}));
+      assertEquals(StatusCode.SUCCESS,
+          records.updateRecord(cursor, new String[]{Name, Salary}, new Object[]{getName(ssn) + "x", rec.getValueForGivenAttrName(Salary)}));
+      numberOfUpdates++;
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+
+    int expectedNumberOfUpdates = 0;
+    for (long s = salary; s < numberOfSalaries; s++) {
+      expectedNumberOfUpdates += getExpectedSSNsWithSalary(s).size();
+      assertEquals(getExpectedSSNsWithSalary(s), getSSNsWithSalary(s));
+    }
+    assertEquals(expectedNumberOfUpdates, numberOfUpdates);
+
+    cursor = records.openCursor(EmployeeTableName, Cursor.Mode.READ);
+    assertNotNull(cursor);
+    for (Record rec = records.getFirst(cursor); rec != null; rec = records.getNext(cursor)) {
+      long ssn = (long) rec.getValueForGivenAttrName(SSN);
+      assertEquals(getSalary(ssn) >= salary ? getName(ssn) + "x" : getName(ssn), rec.getValueForGivenAttrName(Name));
+    }
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    System.out.println("Test4 pass!");
+  }
+
+  /**
+   * A cursor that lost its table entry resolves the table's indexes again before updating, so the index entries
+   * still move; without the table's indexes the cursor itself refuses the update and writes nothing.
+   */
+  @Test
+  public void unitTest5() {
+    long newSalary = numberOfSalaries + 1;
+    Cursor cursor = openCursorOn(7);
+    assertNotNull(records.getFirst(cursor));
+    cursor.setTableEntry(null);
+    assertEquals(StatusCode.SUCCESS, records.updateRecord(cursor, new String[]{Salary}, new Object[]{newSalary}));
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    assertEquals(Collections.singleton(7L), getSSNsWithSalary(newSalary));
+
+    cursor = openCursorOn(8);
+    assertNotNull(records.getFirst(cursor));
+    cursor.setTableEntry(null);
+    assertEquals(StatusCode.TABLE_NOT_FOUND, cursor.updateCurrentRecord(new String[]{Salary, Name},
+        new Object[]{newSalary, getName(8) + "x"}));
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    assertEquals(Collections.singleton(7L), getSSNsWithSalary(newSalary));
+
+    cursor = openCursorOn(8);
+    Record rec = records.getFirst(cursor);
+    assertNotNull(rec);
+    assertEquals(getName(8), rec.getValueForGivenAttrName(Name));
+    assertEquals(getSalary(8), rec.getValueForGivenAttrName(Salary));
+    assertEquals(StatusCode.SUCCESS, records.commitCursor(cursor));
+    System.out.println("Test5 pass!");
+  }
+}
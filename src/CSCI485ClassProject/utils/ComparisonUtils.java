@@ -4,20 +4,15 @@ import CSCI485ClassProject.models.ComparisonOperator;
 
 public class ComparisonUtils {
   public static boolean compareTwoINT(Object obj1, Object obj2, ComparisonOperator cmp) {
-    long val1;
-    if (obj1 instanceof Integer) {
-      val1 = new Long((Integer) obj1);
-    } else {
-      val1 = (long) obj1;
-    }
+    // Integer and Long are both INT
+    return compareTwoLongs(((Number) obj1).longValue(), ((Number) obj2).longValue(), cmp);
+  }
 
-    long val2;
-    if (obj2 instanceof Integer) {
-      val2 = new Long((Integer) obj2);
-    } else {
-      val2 = (long) obj2;
-    }
+  public static boolean compareTwoDOUBLE(Object obj1, Object obj2, ComparisonOperator cmp) {
+    return compareTwoDoubles((double) obj1, (double) obj2, cmp);
+  }
 
+  public static boolean compareTwoLongs(long val1, long val2, ComparisonOperator cmp) {
     if (cmp == ComparisonOperator.GREATER_THAN_OR_EQUAL_TO) {
       // >=
       return val1 >= val2;
@@ -37,10 +32,7 @@ public class ComparisonUtils {
     }
   }
 
-  public static boolean compareTwoDOUBLE(Object obj1, Object obj2, ComparisonOperator cmp) {
-    double val1 = (double) obj1;
-    double val2 = (double) obj2;
-
+  public static boolean compareTwoDoubles(double val1, double val2, ComparisonOperator cmp) {
     if (cmp == ComparisonOperator.GREATER_THAN_OR_EQUAL_TO) {
       // >=
       return val1 >= val2;